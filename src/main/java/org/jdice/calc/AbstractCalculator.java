@@ -16,18 +16,35 @@
 
 package org.jdice.calc;
 
+import java.math.BigDecimal;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.jdice.calc.internal.BindExtensionProvider;
 import org.jdice.calc.internal.Bracket;
 import org.jdice.calc.internal.CList;
 import org.jdice.calc.internal.CListListener;
 import org.jdice.calc.internal.CacheExtension;
+import org.jdice.calc.internal.ExpressionValidator;
+import org.jdice.calc.internal.FastMath;
 import org.jdice.calc.internal.FunctionData;
 import org.jdice.calc.internal.InfixParser;
+import org.jdice.calc.internal.IntervalEvaluator;
 import org.jdice.calc.internal.PostfixCalculator;
+import org.jdice.calc.internal.Simplifier;
+import org.jdice.calc.internal.Specializer;
+import org.jdice.calc.internal.StepTrace;
 import org.jdice.calc.internal.UseExtension;
 
 /**
@@ -42,26 +59,57 @@ public abstract class AbstractCalculator<CALC> {
     /**
      * Detect changes in infix expression
      */
-    private CList infix = new CList(new CListListener() {
+    private final CList ownInfix = new CList(new CListListener() {
         @Override
         public void change() {
             isInfixChanged = true;
+            infixStamp = Properties.nextStamp();
         }
     });
+    private CList infix = ownInfix;
     private boolean isInfixChanged = true;
+    private long infixStamp = Properties.nextStamp();
     private InfixParser infixParser;
+    private ExpressionValidator validator;
+    private LinkedHashMap<String, Num> variables = new LinkedHashMap<String, Num>();
+    // variables parsed without values, which are not bound yet
+    private LinkedHashSet<String> undefined = new LinkedHashSet<String>();
+    // variables by slot, prepared when slot is first used
+    private Num[] slots;
+    private String[] slotNames;
     
     private final PostfixCalculator postfixCalculator = new PostfixCalculator();
     private CList postfix = new CList();
     private Num lastCalculatedValue;
     private LinkedList<Step> calculatingSteps;
+    private StepTrace stepTrace;
+    private int traceCapacity = StepTrace.DEFAULT_CAPACITY;
+    private TraceSampler traceSampler;
+    private TraceSink traceSink;
+
+    private Integer outputScale;
+    private boolean exactRational = false;
+    private boolean fastMath = false;
+    private boolean adaptivePrecision = false;
+    private boolean simplify = false;
+    private boolean cacheResult = true;
+    /**
+     * Values and nested calculators used in last calculation, with their modification stamps
+     */
+    private Object[] lastInputs;
+    private final ArrayList<Object> inputBuffer = new ArrayList<Object>();
+    private long[] lastInputStamps;
+    private long lastStamp;
 
     private Properties properties;
     /**
      * User defined extensions in scope of instance
      */
     private UseExtension useExtensions;
-    private static boolean isImplExtRegistered = false;
+    /**
+     * Calculator classes whose implemented extensions are registered in {@link CacheExtension}
+     */
+    private static final Set<Class> registeredCalculators = Collections.synchronizedSet(new HashSet<Class>());
 
     private AbstractCalculator<CALC> parentCalculator;
     private AbstractCalculator<CALC> childCalculator;
@@ -76,22 +124,27 @@ public abstract class AbstractCalculator<CALC> {
      * 
      */
     private void detectImplmentedExtension() {
-        if (isImplExtRegistered == false) {
-            Object o = getThis();
-            Class thisClass = o.getClass();
-
-            // superclass interfaces
-            Class[] declared = thisClass.getSuperclass().getInterfaces();
-            for (Class declare : declared) {
-                detectImplmentedExtension(declare);
-            }
-
-            // subclass interfaces
-            declared = thisClass.getInterfaces();
-            for (Class declare : declared) {
-                detectImplmentedExtension(declare);
+        Object o = getThis();
+        Class thisClass = o.getClass();
+
+        if (!registeredCalculators.contains(thisClass)) {
+            synchronized (registeredCalculators) {
+                if (registeredCalculators.contains(thisClass))
+                    return;
+
+                // superclass interfaces
+                Class[] declared = thisClass.getSuperclass().getInterfaces();
+                for (Class declare : declared) {
+                    detectImplmentedExtension(declare);
+                }
+
+                // subclass interfaces
+                declared = thisClass.getInterfaces();
+                for (Class declare : declared) {
+                    detectImplmentedExtension(declare);
+                }
+                registeredCalculators.add(thisClass);
             }
-            isImplExtRegistered = true;
         }
     }
 
@@ -169,6 +222,41 @@ public abstract class AbstractCalculator<CALC> {
         return getThis();
     }
 
+    /**
+     * Append value to expression, without boxing
+     * 
+     * @param value
+     * @return
+     */
+    public CALC val(long value) {
+        infix.add(new Num(value));
+        return getThis();
+    }
+
+    /**
+     * @see #val(long)
+     */
+    public CALC val(float value) {
+        infix.add(new Num(value));
+        return getThis();
+    }
+
+    /**
+     * @see #val(long)
+     */
+    public CALC val(double value) {
+        infix.add(new Num(value));
+        return getThis();
+    }
+
+    /**
+     * @see #val(long)
+     */
+    public CALC val(BigDecimal value) {
+        infix.add(new Num(value));
+        return getThis();
+    }
+
     /**
      * Append value to expression
      * 
@@ -252,6 +340,21 @@ public abstract class AbstractCalculator<CALC> {
         return getThis();
     }
 
+    /**
+     * Check if given expression can be parsed and calculated with extensions used by this calculator, without parsing it. 
+     * Expression of this calculator isn't changed, and no value is calculated.
+     * 
+     * @param expression
+     * @return
+     * @see {@link #expression(String)}
+     */
+    public Validation validate(String expression) {
+        detectImplmentedExtension();
+        if (validator == null || !validator.isPrepared(useExtensions, getProperties()))
+            validator = new ExpressionValidator(useExtensions, getProperties());
+        return validator.validate(expression);
+    }
+
     /**
      * Parse and append given expression to existing expression
      * 
@@ -266,6 +369,7 @@ public abstract class AbstractCalculator<CALC> {
             infixParser = new InfixParser();
         
         CList infix = infixParser.parse(useExtensions, getProperties(), expression);
+        addVariables(infixParser);
         expression(infix, false);
         return getThis();
     }
@@ -291,10 +395,149 @@ public abstract class AbstractCalculator<CALC> {
             infixParser = new InfixParser();
         
         CList infix = infixParser.parse(useExtensions, getProperties(), expression, values);
+        addVariables(infixParser);
         expression(infix, false);
         return getThis();
     }
 
+    private void addVariables(InfixParser parser) {
+        if (parser.getVariables() != null)
+            variables.putAll(parser.getVariables());
+        undefined.addAll(parser.getUndefinedVariables());
+        slots = null;
+    }
+
+    /**
+     * Slot of variable with given name. Slots are numbered from 0, in order in which variables first appear in expression.
+     * Slot is resolved once, and used with {@link #bind(int, Object)} to set value of variable without finding it by name.
+     * 
+     * <pre>
+     * Calculator calc = Calculator.builder("P * r / 12");
+     * int p = calc.getSlot("P");
+     * int r = calc.getSlot("r");
+     * for (Row row : rows)
+     *     result = calc.bind(p, row.principal).bind(r, row.rate).calculate();
+     * </pre>
+     * 
+     * @param name
+     * @return
+     * @throws CalculatorException if expression don't use variable with given name
+     */
+    public int getSlot(String name) {
+        prepareSlots();
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i].equals(name))
+                return i;
+        }
+        throw new CalculatorException("Expression don't use variable '" + name + "': " + getInfix());
+    }
+
+    /**
+     * <tt>Num</tt> used for variable with given name
+     * 
+     * @param name
+     * @return <tt>Num</tt> of variable, or <tt>null</tt> if expression don't use variable
+     */
+    public Num getVariable(String name) {
+        return variables.get(name);
+    }
+
+    /**
+     * Number of variables in expression
+     * 
+     * @return
+     */
+    public int getSlotCount() {
+        prepareSlots();
+        return slots.length;
+    }
+
+    /**
+     * Name of variable in given slot
+     * 
+     * @param slot
+     * @return
+     */
+    public String getSlotName(int slot) {
+        prepareSlots();
+        return slotNames[slot];
+    }
+
+    private void prepareSlots() {
+        if (slots == null) {
+            slots = variables.values().toArray(new Num[variables.size()]);
+            slotNames = variables.keySet().toArray(new String[variables.size()]);
+        }
+    }
+
+    /**
+     * Set value of variable in given slot
+     * 
+     * @param slot
+     * @param value
+     * @return
+     * @see #getSlot(String)
+     */
+    public CALC bind(int slot, long value) {
+        return bind(slot, BigDecimal.valueOf(value));
+    }
+
+    /**
+     * Set value of variable in given slot
+     * 
+     * @param slot
+     * @param value
+     * @return
+     * @see #getSlot(String)
+     */
+    public CALC bind(int slot, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new CalculatorException("Unsupported value '" + value + "' for variable '" + getSlotName(slot) + "'");
+        return bind(slot, BigDecimal.valueOf(value));
+    }
+
+    /**
+     * Set value of variable in given slot. Value is converted by its decimal representation, same as in {@link Num#set(float)}
+     * 
+     * @param slot
+     * @param value
+     * @return
+     * @see #getSlot(String)
+     */
+    public CALC bind(int slot, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value))
+            throw new CalculatorException("Unsupported value '" + value + "' for variable '" + getSlotName(slot) + "'");
+        return bind(slot, new BigDecimal(Float.toString(value)));
+    }
+
+    /**
+     * Set value of variable in given slot. Value is set to <tt>Num</tt> used for variable, 
+     * which is <tt>Num</tt> given with expression or <tt>Num</tt> created for expression parsed without values.
+     * 
+     * @param slot
+     * @param value same types as for {@link Num#set(Object)}
+     * @return
+     * @see #getSlot(String)
+     */
+    public CALC bind(int slot, Object value) {
+        prepareSlots();
+        slots[slot].set(value);
+        if (!undefined.isEmpty())
+            undefined.remove(slotNames[slot]);
+        return getThis();
+    }
+
+    /**
+     * Set value of variable with given name. For repeated binding use slot from {@link #getSlot(String)}.
+     * 
+     * @param name
+     * @param value
+     * @return
+     */
+    public CALC bind(String name, Object value) {
+        return bind(getSlot(name), value);
+    }
+
     /**
      * 
      * Copy expression from given calculator into this expression within or without brackets
@@ -304,6 +547,9 @@ public abstract class AbstractCalculator<CALC> {
      * @return
      */
     public CALC expression(AbstractCalculator expression, boolean withinBrackets) {
+        variables.putAll(expression.variables);
+        undefined.addAll(expression.undefined);
+        slots = null;
         expression(expression.infix, withinBrackets);
         return getThis();
     }
@@ -383,6 +629,8 @@ public abstract class AbstractCalculator<CALC> {
      */
     public CALC setProperties(Properties properties) {
         this.properties = properties;
+        // stamp of replaced properties can be older than last calculation
+        this.infixStamp = Properties.nextStamp();
         return getThis();
     }
 
@@ -404,6 +652,113 @@ public abstract class AbstractCalculator<CALC> {
         return getProperties().getScale();
     }
 
+    /**
+     * Set scale of calculated result, without setting scale for entire expression.
+     * <br/>
+     * If scale for expression is not set ({@link #setScale(Integer)}), divisions are calculated only with as many digits 
+     * as needed for result accurate to given scale, instead of {@link Properties#DEFAULT_SCALE}. Operand with own scale keep it.
+     * 
+     * @param outputScale scale of result, or <tt>null</tt> to calculate divisions with full precision
+     * @return
+     */
+    public CALC setOutputScale(Integer outputScale) {
+        this.outputScale = outputScale;
+        this.lastInputs = null;
+        return getThis();
+    }
+
+    /**
+     * Get scale of calculated result
+     * @return
+     * @see #setOutputScale(Integer)
+     */
+    public Integer getOutputScale() {
+        return outputScale;
+    }
+
+    /**
+     * If set to TRUE, expression with only numbers and <tt>+ - * / ^</tt> (with whole exponent) is calculated with exact fractions,
+     * and rounded only once to scale and rounding mode of calculator. Scale of divisor is not used for division.
+     * Expression with functions or other operators, and tracing of steps, use standard calculation where every division is rounded.
+     * 
+     * @param exactRational
+     * @return
+     */
+    public CALC setExactRational(boolean exactRational) {
+        this.exactRational = exactRational;
+        this.lastInputs = null;
+        return getThis();
+    }
+
+    public boolean isExactRational() {
+        return exactRational;
+    }
+
+    /**
+     * If set to TRUE, functions are calculated in double precision with fast approximations from {@link FastMath}, 
+     * instead of calculation to scale of calculator. Maximum errors of approximations are documented in {@link FastMath}.
+     * 
+     * @param fastMath
+     * @return
+     */
+    public CALC setFastMath(boolean fastMath) {
+        this.fastMath = fastMath;
+        this.lastInputs = null;
+        return getThis();
+    }
+
+    public boolean isFastMath() {
+        return fastMath;
+    }
+
+    /**
+     * If set to TRUE, expression with only numbers and <tt>+ - * /</tt> is first calculated in double interval arithmetic,
+     * and calculated with <tt>BigDecimal</tt> only if result can't be proven from interval bounds, e.g. if result is near
+     * rounding boundary of division scale. Result is always same as without this option.
+     * 
+     * @param adaptivePrecision
+     * @return
+     * @see IntervalEvaluator
+     */
+    public CALC setAdaptivePrecision(boolean adaptivePrecision) {
+        this.adaptivePrecision = adaptivePrecision;
+        this.lastInputs = null;
+        return getThis();
+    }
+
+    public boolean isAdaptivePrecision() {
+        return adaptivePrecision;
+    }
+
+    /**
+     * If set to TRUE, operations which don't change result, like <tt>x * 1</tt>, <tt>x + 0</tt>, <tt>0 * (x + y)</tt> or <tt>-(-x)</tt>,
+     * are removed from expression before calculation. Expression is simplified only if trailing zeros are stripped,
+     * so scale of removed operations can't change result. Tracing of steps use expression as it is defined.
+     * 
+     * @param simplify
+     * @return
+     * @see Simplifier
+     */
+    public CALC setSimplify(boolean simplify) {
+        this.simplify = simplify;
+        this.lastInputs = null;
+        return getThis();
+    }
+
+    public boolean isSimplify() {
+        return simplify;
+    }
+
+    /**
+     * Number of numbers, functions and operators removed from expression by simplification in last calculation
+     * 
+     * @return
+     * @see #setSimplify(boolean)
+     */
+    public int getRemovedNodes() {
+        return postfixCalculator.getRemovedNodes();
+    }
+
     /**
      * Set rounding mode for entire expression
      * @param roundingMode
@@ -490,12 +845,56 @@ public abstract class AbstractCalculator<CALC> {
     }
 
     /**
-     * Get calculation steps if {@link #isTracingSteps()} is TRUE
+     * Maximum number of traced steps. When calculation has more steps, only last steps are kept.
+     * Default is {@link StepTrace#DEFAULT_CAPACITY}
+     * 
+     * @param traceCapacity
+     * @return
+     */
+    public CALC setTraceCapacity(int traceCapacity) {
+        if (traceCapacity <= 0)
+            throw new CalculatorException("Capacity of trace must be positive: " + traceCapacity);
+        this.traceCapacity = traceCapacity;
+        return getThis();
+    }
+
+    public int getTraceCapacity() {
+        return traceCapacity;
+    }
+
+    /**
+     * Trace only calculations selected by sampler, and pass their steps to sink.
+     * Calculations which are not sampled are calculated without tracing.
+     * Sampling is not used while tracing of all calculations is enabled by {@link #setTracingSteps(boolean)}.
+     * 
+     * @param sampler e.g. {@link TraceSampler#everyNth(long)}, or <tt>null</tt> to disable sampling
+     * @param sink
+     * @return
+     */
+    public CALC setTraceSampling(TraceSampler sampler, TraceSink sink) {
+        if (sampler != null && sink == null)
+            throw new CalculatorException("Sampled steps need sink", new IllegalArgumentException());
+        this.traceSampler = sampler;
+        this.traceSink = sink;
+        return getThis();
+    }
+
+    public TraceSampler getTraceSampler() {
+        return traceSampler;
+    }
+
+    /**
+     * Get calculation steps if {@link #isTracingSteps()} is TRUE.
+     * Steps are recorded during calculation, and text of steps is created when steps are read first time.
      * 
      * @return
      * @see {@link}
      */
     public LinkedList<Step> getTracedSteps() {
+        if (calculatingSteps == null && stepTrace != null) {
+            calculatingSteps = stepTrace.getSteps();
+            stepTrace = null;
+        }
         return calculatingSteps;
     }
 
@@ -510,16 +909,308 @@ public abstract class AbstractCalculator<CALC> {
      */
     public Num calculate() {
         unbind();
+        if (!undefined.isEmpty())
+            throw new CalculatorException("Undefined values for expression (" + getInfix() + ") variables: " + undefined);
+
+        boolean sampled = traceSampler != null && !trackSteps && traceSampler.isSampled(this);
+        if (cacheResult && !trackSteps && !sampled && isUnchanged())
+            return lastCalculatedValue.clone();
+
         prepareForNewCalculation();
         
         PostfixCalculator pc = convertToPostfix();
-        Num cv = pc.calculate(this, postfix, trackSteps);
+        Num cv = null;
+        if (sampled && !exactRational && !adaptivePrecision && !simplify) {
+            cv = pc.calculate(this, postfix, true);
+        }
+        else {
+            cv = pc.calculate(this, postfix, trackSteps);
+            // traced calculation don't use modes which change calculation, so it is used only for steps
+            if (sampled)
+                pc.calculate(this, postfix, true);
+        }
 
         lastCalculatedValue = cv.clone();
+        if (cacheResult)
+            recordInputs();
+
+        if (sampled)
+            traceSink.accept(this, cv.clone(), getTracedSteps());
 
         return cv;
     }
 
+    /**
+     * Calculate prepared expression, and return error as {@link Result} instead of throwing exception.
+     * <br/>
+     * Intended for calculation of many inputs where errors are expected, e.g. validation of rows with division by zero. 
+     * Errors are detected without creating exceptions with stack trace where possible, so failed calculation 
+     * costs about same as successful one. Tracing of steps is used same as in {@link #calculate()}, but sampled tracing isn't.
+     * 
+     * @return
+     * @see {@link #calculate()}
+     */
+    public Result tryCalculate() {
+        unbind();
+        if (!undefined.isEmpty())
+            return Result.error(ErrorCode.UNDEFINED_VARIABLE, null, -1, null, "Undefined values for variables: " + undefined);
+
+        if (cacheResult && !trackSteps && isUnchanged())
+            return Result.of(lastCalculatedValue.clone());
+
+        prepareForNewCalculation();
+
+        PostfixCalculator pc;
+        try {
+            pc = convertToPostfix();
+        }
+        catch (CalculatorException e) {
+            return Result.error(ErrorCode.INVALID_EXPRESSION, null, -1, e, null);
+        }
+
+        Result result = pc.tryCalculate(this, postfix, trackSteps);
+        if (result.isSuccess()) {
+            lastCalculatedValue = result.getValue().clone();
+            if (cacheResult)
+                recordInputs();
+        }
+        return result;
+    }
+
+    /**
+     * If set to TRUE (default), {@link #calculate()} return result of previous calculation when neither expression,
+     * properties nor any used {@link Num} are changed since. 
+     * Result is reused only if all functions in expression are annotated with {@link PureFunction}.
+     * 
+     * @param cacheResult
+     * @return
+     */
+    public CALC setCacheResult(boolean cacheResult) {
+        this.cacheResult = cacheResult;
+        if (!cacheResult)
+            lastInputs = null;
+        return getThis();
+    }
+
+    public boolean isCacheResult() {
+        return cacheResult;
+    }
+
+    private long getStamp() {
+        return Math.max(infixStamp, getProperties().getStamp());
+    }
+
+    private boolean isUnchanged() {
+        if (lastInputs == null || lastCalculatedValue == null || lastStamp != getStamp())
+            return false;
+
+        for (int i = 0; i < lastInputs.length; i++) {
+            Object input = lastInputs[i];
+            long stamp = input instanceof Num ? ((Num) input).getStamp() : ((AbstractCalculator) input).getStamp();
+            if (stamp != lastInputStamps[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    private void recordInputs() {
+        ArrayList<Object> inputs = inputBuffer;
+        inputs.clear();
+        if (!collectInputs(postfix, inputs)) {
+            lastInputs = null;
+            inputs.clear();
+            return;
+        }
+
+        // arrays are reused while expression use same number of values
+        if (lastInputs == null || lastInputs.length != inputs.size()) {
+            lastInputs = new Object[inputs.size()];
+            lastInputStamps = new long[inputs.size()];
+        }
+        inputs.toArray(lastInputs);
+        inputs.clear();
+        for (int i = 0; i < lastInputs.length; i++) {
+            Object input = lastInputs[i];
+            lastInputStamps[i] = input instanceof Num ? ((Num) input).getStamp() : ((AbstractCalculator) input).getStamp();
+        }
+        lastStamp = getStamp();
+    }
+
+    /**
+     * Collect values used in postfix expression, including values of functions and nested calculators
+     * 
+     * @return FALSE if result can't be reused because expression contains function which is not pure
+     */
+    private boolean collectInputs(CList postfix, List<Object> inputs) {
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Num) {
+                inputs.add(o);
+            }
+            else if (o instanceof FunctionData) {
+                FunctionData fd = (FunctionData) o;
+                if (!fd.isPure())
+                    return false;
+
+                for (Object value : fd.getValues()) {
+                    if (value instanceof Num) {
+                        inputs.add(value);
+                    }
+                    else if (value instanceof AbstractCalculator) {
+                        AbstractCalculator<?> nested = (AbstractCalculator<?>) value;
+                        inputs.add(nested);
+                        nested.convertToPostfix();
+                        if (!collectInputs(nested.postfix, inputs))
+                            return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Create new calculator with expression where given variables have given values, and all parts of expression which depend only on
+     * those variables and numbers are calculated. Other variables stay same <tt>Num</tt>, so new calculator is calculated with their current values.
+     * <br/>
+     * e.g. <tt>x * (r + 1) / 12</tt> with <tt>r = 0.05</tt> is specialized to <tt>x * 1.05 / 12</tt>
+     * <br/>
+     * Variables are matched by names used in expression, and names which are not used in expression are ignored.
+     * Values are calculated with current properties of this calculator.
+     * 
+     * @param values values of variables by name
+     * @return new calculator of same type, with same properties
+     * @see Specializer
+     */
+    public CALC specialize(Map<String, ?> values) {
+        IdentityHashMap<Num, Num> fixed = new IdentityHashMap<Num, Num>();
+        for (Entry<String, ?> entry : values.entrySet()) {
+            Num variable = variables.get(entry.getKey());
+            if (variable == null)
+                continue;
+
+            Object value = entry.getValue();
+            fixed.put(variable, value instanceof Num ? ((Num) value).clone() : Num.toNum(value));
+        }
+        return specialize(fixed);
+    }
+
+    /**
+     * Create new calculator with expression where given values are constants with their current value, and all parts of expression
+     * which depend only on those values and numbers are calculated. 
+     * 
+     * @param values
+     * @return new calculator of same type, with same properties
+     * @see #specialize(Map)
+     */
+    public CALC specialize(Num... values) {
+        IdentityHashMap<Num, Num> fixed = new IdentityHashMap<Num, Num>();
+        for (Num value : values)
+            fixed.put(value, value.clone());
+
+        return specialize(fixed);
+    }
+
+    private CALC specialize(IdentityHashMap<Num, Num> fixed) {
+        Set<Num> variableNums = Collections.newSetFromMap(new IdentityHashMap<Num, Boolean>());
+        for (Num variable : variables.values())
+            variableNums.add(variable);
+
+        AbstractCalculator<CALC> calc = specialize(fixed, variableNums);
+        for (Entry<String, Num> entry : variables.entrySet()) {
+            if (!fixed.containsKey(entry.getValue())) {
+                calc.variables.put(entry.getKey(), entry.getValue());
+                if (undefined.contains(entry.getKey()))
+                    calc.undefined.add(entry.getKey());
+            }
+        }
+        return calc.getThis();
+    }
+
+    /**
+     * Specialize this expression, and expressions used as arguments of functions
+     * 
+     * @param fixed variables and their values
+     * @param variableNums variables of expression, without fixed variables
+     * @return
+     */
+    private AbstractCalculator<CALC> specialize(IdentityHashMap<Num, Num> fixed, Set<Num> variableNums) {
+        unbind();
+        convertToPostfix();
+
+        // numbers which are not fixed, and which are variables of expression or named values
+        Set<Num> unknown = Collections.newSetFromMap(new IdentityHashMap<Num, Boolean>());
+        CList values = new CList();
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Num) {
+                values.add(specialize((Num) o, fixed, variableNums, unknown));
+            }
+            else if (o instanceof FunctionData) {
+                FunctionData fd = (FunctionData) o;
+                Object[] fValues = new Object[fd.getValues().length];
+                for (int i = 0; i < fValues.length; i++) {
+                    Object value = fd.getValues()[i];
+                    if (value instanceof Num) {
+                        fValues[i] = specialize((Num) value, fixed, variableNums, unknown);
+                    }
+                    else {
+                        AbstractCalculator<?> nested = ((AbstractCalculator<?>) value).specialize(fixed, variableNums);
+                        Object single = nested.infix.size() == 1 ? nested.infix.get(0) : null;
+                        if (single instanceof Num && !isVariable((Num) single, fixed, variableNums))
+                            fValues[i] = nested.calculate(); // argument with properties of expression
+                        else
+                            fValues[i] = nested;
+                    }
+                }
+                values.add(new FunctionData(fd.getFunction(), fValues));
+            }
+            else {
+                values.add((Operator) o);
+            }
+        }
+
+        AbstractCalculator<CALC> calc = null;
+        try {
+            calc = getClass().newInstance();
+        }
+        catch (Exception e) {
+            throw new CalculatorException(e);
+        }
+
+        calc.getProperties().load(getProperties());
+        calc.useExtensions = useExtensions;
+        calc.outputScale = outputScale;
+        calc.exactRational = exactRational;
+        calc.fastMath = fastMath;
+        calc.adaptivePrecision = adaptivePrecision;
+        calc.simplify = simplify;
+        calc.cacheResult = cacheResult;
+        calc.trackSteps = trackSteps;
+        calc.setInfix(Specializer.specialize(this, values, unknown));
+        return calc;
+    }
+
+    private Num specialize(Num num, IdentityHashMap<Num, Num> fixed, Set<Num> variableNums, Set<Num> unknown) {
+        Num value = fixed.get(num);
+        if (value != null)
+            return value;
+
+        if (isVariable(num, fixed, variableNums))
+            unknown.add(num);
+        return num;
+    }
+
+    /**
+     * Number is variable if it is not fixed, and it is variable of parsed expression or named value
+     */
+    private boolean isVariable(Num num, IdentityHashMap<Num, Num> fixed, Set<Num> variableNums) {
+        return !fixed.containsValue(num) && (variableNums.contains(num) || num.getName() != null);
+    }
 
     /**
      * Bind another Calculator class functionalities to expression.
@@ -647,6 +1338,8 @@ public abstract class AbstractCalculator<CALC> {
      */
     public final CALC setInfix(CList infix) {
         this.infix = infix;
+        this.isInfixChanged = true;
+        this.infixStamp = Properties.nextStamp();
 
         return getThis();
     }
@@ -677,16 +1370,77 @@ public abstract class AbstractCalculator<CALC> {
             return null;
     }
 
+    /**
+     * Clear expression, variables, calculation steps and result, so calculator can be used for another expression.
+     * Properties, calculation modes and extensions of calculator are kept, and internal lists are reused.
+     * 
+     * @return
+     * @see CalculatorPool
+     */
+    public CALC reset() {
+        infix = ownInfix;
+        infix.clear();
+        variables.clear();
+        undefined.clear();
+        slots = null;
+        slotNames = null;
+
+        postfixCalculator.reset();
+        postfix = postfixCalculator.getPostfix();
+        prepareForNewCalculation();
+        lastInputs = null;
+
+        parentCalculator = null;
+        childCalculator = null;
+        isBind = false;
+        isUnbind = false;
+        return getThis();
+    }
+
+    /**
+     * Restore properties, extensions used by instance and calculation modes of new calculator.
+     * Used by {@link CalculatorPool}, so configuration of one user is not visible to next user.
+     */
+    final void resetConfiguration() {
+        properties = null;
+        useExtensions = null;
+        outputScale = null;
+        exactRational = false;
+        fastMath = false;
+        adaptivePrecision = false;
+        simplify = false;
+        cacheResult = true;
+        trackSteps = false;
+        traceCapacity = StepTrace.DEFAULT_CAPACITY;
+        traceSampler = null;
+        traceSink = null;
+        lastInputs = null;
+        infixStamp = Properties.nextStamp();
+    }
+
     /**
      * Reset result and calculation steps of previous calculation
      */
     private void prepareForNewCalculation() {
+        // inputs of previous calculation are not valid without result
         lastCalculatedValue = null;
         this.calculatingSteps = null;
+        this.stepTrace = null;
     }
 
     public final void setSteps(LinkedList<Step> calculationSteps) {
         this.calculatingSteps = calculationSteps;
+        this.stepTrace = null;
+    }
+
+    /**
+     * Set steps of calculation, which are rendered when they are read by {@link #getTracedSteps()}
+     * 
+     * @param stepTrace
+     */
+    public final void setStepTrace(StepTrace stepTrace) {
+        this.calculatingSteps = null;
+        this.stepTrace = stepTrace;
     }
 
     @Override
@@ -694,4 +1448,44 @@ public abstract class AbstractCalculator<CALC> {
         return InfixParser.toString(this.infix);
     }
 
+    /**
+     * Copy of infix expression, with copied numbers and function arguments, which isn't changed by later changes of
+     * calculator or its variables. Binded calculators are not unbinded.
+     * 
+     * @return
+     */
+    CList copyInfix() {
+        CList copy = new CList();
+        Iterator<Object> it = infix.iterator();
+        while (it.hasNext())
+            copy.add(copy.size(), copyOf(it.next()));
+        return copy;
+    }
+
+    /**
+     * Copy of number or function from expression, other objects of expression are not changed and are returned as they are
+     * 
+     * @param value
+     * @return
+     */
+    static Object copyOf(Object value) {
+        if (value instanceof Num)
+            return ((Num) value).clone();
+
+        if (value instanceof FunctionData) {
+            FunctionData fd = (FunctionData) value;
+            Object[] values = fd.getValues();
+            Object[] copies = new Object[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof AbstractCalculator)
+                    copies[i] = new Calculator().setInfix(((AbstractCalculator) values[i]).copyInfix());
+                else
+                    copies[i] = copyOf(values[i]);
+            }
+            return new FunctionData(fd.getFunction(), copies);
+        }
+
+        return value;
+    }
+
 }
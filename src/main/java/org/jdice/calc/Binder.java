@@ -0,0 +1,289 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bind variables of expression to properties of bean or keys of map.
+ * <br/>
+ * Accessor of every variable is resolved once when binder is created, so calculation for each row only read values
+ * and set them to variable slots. Primitive <tt>int</tt>, <tt>long</tt>, <tt>float</tt> and <tt>double</tt> fields are read without boxing.
+ * 
+ * <pre>
+ * Calculator calc = Calculator.builder("principal * rate / 12");
+ * Binder&lt;Loan&gt; binder = Binder.forBean(calc, Loan.class);
+ * for (Loan loan : loans)
+ *     loan.setInterest(binder.calculate(loan));
+ * </pre>
+ * 
+ * Calculator is used by binder, so binder is not thread safe.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ * @param <T>
+ */
+public class Binder<T> {
+
+    private final AbstractCalculator<?> calc;
+    private final Accessor[] accessors;
+
+    private Binder(AbstractCalculator<?> calc, Accessor[] accessors) {
+        this.calc = calc;
+        this.accessors = accessors;
+    }
+
+    /**
+     * Create binder which read variables from bean properties with same name as variable.
+     * Property is read with public getter <tt>getName()</tt> or <tt>isName()</tt>, or from public field.
+     * 
+     * @param calc
+     * @param beanClass
+     * @return
+     * @throws CalculatorException if bean don't have property for some variable
+     */
+    public static <T> Binder<T> forBean(AbstractCalculator<?> calc, Class<T> beanClass) {
+        Accessor[] accessors = new Accessor[calc.getSlotCount()];
+        for (int slot = 0; slot < accessors.length; slot++) {
+            String name = calc.getSlotName(slot);
+            accessors[slot] = getBeanAccessor(beanClass, name);
+            if (accessors[slot] == null)
+                throw new CalculatorException("Class '" + beanClass.getName() + "' don't have property for variable '" + name + "'");
+        }
+        return new Binder<T>(calc, accessors);
+    }
+
+    /**
+     * Create binder which read variables from map values with same key as variable name.
+     * 
+     * @param calc
+     * @return
+     */
+    public static Binder<Map<String, ?>> forMap(AbstractCalculator<?> calc) {
+        Accessor[] accessors = new Accessor[calc.getSlotCount()];
+        for (int slot = 0; slot < accessors.length; slot++)
+            accessors[slot] = new MapAccessor(calc.getSlotName(slot));
+
+        return new Binder<Map<String, ?>>(calc, accessors);
+    }
+
+    /**
+     * Set values from given row to variables of calculator
+     * 
+     * @param row
+     * @return
+     */
+    public Binder<T> bind(T row) {
+        try {
+            for (int slot = 0; slot < accessors.length; slot++)
+                accessors[slot].bind(calc, slot, row);
+        }
+        catch (InvocationTargetException e) {
+            throw new CalculatorException(e.getCause());
+        }
+        catch (IllegalAccessException e) {
+            throw new CalculatorException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Calculate expression with values from given row
+     * 
+     * @param row
+     * @return
+     */
+    public Num calculate(T row) {
+        return bind(row).calc.calculate();
+    }
+
+    /**
+     * Calculate expression for every row
+     * 
+     * @param rows
+     * @return results in same order as rows
+     */
+    public List<Num> calculate(Collection<? extends T> rows) {
+        List<Num> results = new ArrayList<Num>(rows.size());
+        for (T row : rows)
+            results.add(calculate(row));
+        return results;
+    }
+
+    /**
+     * Calculate expression with values from given row, and return error of calculation instead of throwing it
+     * 
+     * @param row
+     * @return
+     * @see AbstractCalculator#tryCalculate()
+     */
+    public Result tryCalculate(T row) {
+        return bind(row).calc.tryCalculate();
+    }
+
+    /**
+     * Calculate expression for every row, and return errors of calculation instead of throwing them
+     * 
+     * @param rows
+     * @return results in same order as rows
+     */
+    public List<Result> tryCalculate(Collection<? extends T> rows) {
+        List<Result> results = new ArrayList<Result>(rows.size());
+        for (T row : rows)
+            results.add(tryCalculate(row));
+        return results;
+    }
+
+    public AbstractCalculator<?> getCalculator() {
+        return calc;
+    }
+
+    private static Accessor getBeanAccessor(Class<?> beanClass, String name) {
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        Method getter = getGetter(beanClass, "get" + suffix);
+        if (getter == null)
+            getter = getGetter(beanClass, "is" + suffix);
+        if (getter != null)
+            return new MethodAccessor(getter);
+
+        Field field = null;
+        try {
+            field = beanClass.getField(name);
+        }
+        catch (NoSuchFieldException e) {
+            return null;
+        }
+        if (Modifier.isStatic(field.getModifiers()))
+            return null;
+
+        Class<?> type = field.getType();
+        if (type == int.class || type == long.class || type == short.class || type == byte.class)
+            return new LongFieldAccessor(field);
+        else if (type == double.class)
+            return new DoubleFieldAccessor(field);
+        else if (type == float.class)
+            return new FloatFieldAccessor(field);
+        else
+            return new FieldAccessor(field);
+    }
+
+    private static Method getGetter(Class<?> beanClass, String name) {
+        try {
+            Method method = beanClass.getMethod(name);
+            if (method.getReturnType() == void.class || Modifier.isStatic(method.getModifiers()))
+                return null;
+            // public method of non public class
+            method.setAccessible(true);
+            return method;
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+        catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    private static abstract class Accessor {
+        abstract void bind(AbstractCalculator<?> calc, int slot, Object row) throws IllegalAccessException, InvocationTargetException;
+    }
+
+    private static class MethodAccessor extends Accessor {
+        private final Method method;
+
+        private MethodAccessor(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        void bind(AbstractCalculator<?> calc, int slot, Object row) throws IllegalAccessException, InvocationTargetException {
+            calc.bind(slot, method.invoke(row));
+        }
+    }
+
+    private static class FieldAccessor extends Accessor {
+        protected final Field field;
+
+        private FieldAccessor(Field field) {
+            this.field = field;
+            field.setAccessible(true);
+        }
+
+        @Override
+        void bind(AbstractCalculator<?> calc, int slot, Object row) throws IllegalAccessException {
+            calc.bind(slot, field.get(row));
+        }
+    }
+
+    private static class LongFieldAccessor extends FieldAccessor {
+        private LongFieldAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void bind(AbstractCalculator<?> calc, int slot, Object row) throws IllegalAccessException {
+            calc.bind(slot, field.getLong(row));
+        }
+    }
+
+    private static class DoubleFieldAccessor extends FieldAccessor {
+        private DoubleFieldAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void bind(AbstractCalculator<?> calc, int slot, Object row) throws IllegalAccessException {
+            calc.bind(slot, field.getDouble(row));
+        }
+    }
+
+    private static class FloatFieldAccessor extends FieldAccessor {
+        private FloatFieldAccessor(Field field) {
+            super(field);
+        }
+
+        @Override
+        void bind(AbstractCalculator<?> calc, int slot, Object row) throws IllegalAccessException {
+            calc.bind(slot, field.getFloat(row));
+        }
+    }
+
+    private static class MapAccessor extends Accessor {
+        private final String key;
+
+        private MapAccessor(String key) {
+            this.key = key;
+        }
+
+        @Override
+        void bind(AbstractCalculator<?> calc, int slot, Object row) {
+            Map<?, ?> map = (Map<?, ?>) row;
+            Object value = map.get(key);
+            if (value == null && !map.containsKey(key))
+                throw new CalculatorException("Missing value for variable '" + key + "'");
+            calc.bind(slot, value);
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package org.jdice.calc;
 
+import java.math.BigDecimal;
 import java.text.ParseException;
 
 import org.jdice.calc.extension.Abs;
@@ -86,6 +87,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return operator(AddOperator.class, value);
     }
 
+    public Calculator add(long value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
+    public Calculator add(float value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
+    public Calculator add(double value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
+    public Calculator add(BigDecimal value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
     @Override
     public Calculator add(String value, char decimalSeparator) {
         return operator(AddOperator.class, value, decimalSeparator);
@@ -103,6 +120,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return operator(SubOperator.class, value);
     }
 
+    public Calculator sub(long value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
+    public Calculator sub(float value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
+    public Calculator sub(double value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
+    public Calculator sub(BigDecimal value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
     @Override
     public Calculator sub(String value, char decimalSeparator) {
         return operator(SubOperator.class, value, decimalSeparator);
@@ -119,6 +152,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return operator(DivOperator.class, value);
     }
 
+    public Calculator div(long value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
+    public Calculator div(float value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
+    public Calculator div(double value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
+    public Calculator div(BigDecimal value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
     @Override
     public Calculator div(String value, char decimalSeparator) {
         return operator(DivOperator.class, value, decimalSeparator);
@@ -135,6 +184,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return operator(MulOperator.class, value);
     }
 
+    public Calculator mul(long value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
+    public Calculator mul(float value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
+    public Calculator mul(double value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
+    public Calculator mul(BigDecimal value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
     @Override
     public Calculator mul(String value, char decimalSeparator) {
         return operator(MulOperator.class, value, decimalSeparator);
@@ -151,6 +216,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return operator(PowOperator.class, value);
     }
 
+    public Calculator pow(long value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
+    public Calculator pow(float value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
+    public Calculator pow(double value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
+    public Calculator pow(BigDecimal value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
     @Override
     public Calculator pow(String value, char decimalSeparator) {
         return operator(PowOperator.class, value, decimalSeparator);
@@ -166,6 +247,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return function(AbsFunction.class, new Num(value));
     }
 
+    public Calculator abs(long value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
+    public Calculator abs(float value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
+    public Calculator abs(double value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
+    public Calculator abs(BigDecimal value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
     @Override
     public Calculator abs(String value, char decimalSeparator) {
         return function(AbsFunction.class, new Num(value, decimalSeparator));
@@ -181,6 +278,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return function(SqrtFunction.class, new Num(value));
     }
 
+    public Calculator sqrt(long value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
+    public Calculator sqrt(float value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
+    public Calculator sqrt(double value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
+    public Calculator sqrt(BigDecimal value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
     @Override
     public Calculator sqrt(String value, char decimalSeparator) {
         return function(SqrtFunction.class, new Num(value, decimalSeparator));
@@ -196,6 +309,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return operator(ModOperator.class, value);
     }
 
+    public Calculator mod(long value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
+    public Calculator mod(float value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
+    public Calculator mod(double value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
+    public Calculator mod(BigDecimal value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
     @Override
     public Calculator mod(String value, char decimalSeparator) {
         return operator(ModOperator.class, value, decimalSeparator);
@@ -211,6 +340,22 @@ public final class Calculator extends AbstractCalculator<Calculator> implements
         return function(LogFunction.class, value);
     }
 
+    public Calculator log(long value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
+    public Calculator log(float value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
+    public Calculator log(double value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
+    public Calculator log(BigDecimal value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
     @Override
     public Calculator log(String value, char decimalSeparator) {
         return function(LogFunction.class, value, decimalSeparator);
@@ -16,6 +16,12 @@
  
 package org.jdice.calc;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.jdice.calc.internal.CList;
+import org.jdice.calc.internal.InfixParser;
+
 /**
  * Exception wrapper around RuntimeException.
  * 
@@ -26,6 +32,11 @@ public class CalculatorException extends RuntimeException {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Copy of expression which is added to message when message is read
+     */
+    private transient CList infix;
+    private String report;
     
     public CalculatorException(Throwable t) {
         super(t);
@@ -40,12 +51,42 @@ public class CalculatorException extends RuntimeException {
     }
 
     public CalculatorException(AbstractCalculator calc, String message)  {
-        this(message + (calc != null && (calc.getInfix()) != null ? "  expression:" + calc.getInfix() : ""));
+        super(message);
+        this.infix = calc.copyInfix();
     }
     
     
     public CalculatorException(AbstractCalculator calc, String message, Throwable throwable)  {
-        this(message + (calc != null && calc.getInfix() != null ? "  expression:" + calc.getInfix() : ""), throwable);
+        super(message, throwable);
+        this.infix = calc.copyInfix();
+    }
+
+    /**
+     * Message with expression of calculator, created first time when message is read
+     */
+    @Override
+    public String getMessage() {
+        if (report == null && infix != null) {
+            report = createReport(InfixParser.toString(infix), super.getMessage());
+            infix = null;
+        }
+        return report != null ? report : super.getMessage();
+    }
+
+    /**
+     * Create message of exception thrown by calculator
+     * 
+     * @param infix expression of calculator when exception is thrown
+     * @param message
+     * @return
+     */
+    protected String createReport(String infix, String message) {
+        return message + "  expression:" + infix;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        out.defaultWriteObject();
     }
     
 }
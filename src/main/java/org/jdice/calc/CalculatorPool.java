@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded pool of calculators of same class.
+ * <br/>
+ * Calculator is reset with {@link AbstractCalculator#reset()} when it is released, and its internal lists are reused
+ * by next user. Properties, extensions used by instance and calculation modes (output scale, tracing, etc.) are restored
+ * to defaults, so acquired calculator is configured same as new calculator.
+ * 
+ * <pre>
+ * CalculatorPool&lt;Calculator&gt; pool = new CalculatorPool&lt;Calculator&gt;(Calculator.class, 16);
+ * 
+ * Calculator calc = pool.acquire();
+ * try {
+ *     result = calc.expression("5 + x", x).calculate();
+ * }
+ * finally {
+ *     pool.release(calc);
+ * }
+ * </pre>
+ * 
+ * Pool can be used from multiple threads, calculator can be used only by thread which acquired it.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ * @param <CALC>
+ */
+public class CalculatorPool<CALC extends AbstractCalculator> {
+
+    private final Class<CALC> calculatorClass;
+    private final int maxSize;
+    private final ArrayDeque<CALC> idle;
+
+    /**
+     * @param calculatorClass class of pooled calculators, with public constructor without arguments
+     * @param maxSize maximum number of idle calculators kept in pool
+     */
+    public CalculatorPool(Class<CALC> calculatorClass, int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Negative size of pool: " + maxSize);
+
+        this.calculatorClass = calculatorClass;
+        this.maxSize = maxSize;
+        this.idle = new ArrayDeque<CALC>(Math.max(1, maxSize));
+    }
+
+    /**
+     * Take idle calculator from pool, or create new calculator if pool is empty
+     * 
+     * @return
+     */
+    public CALC acquire() {
+        CALC calc = null;
+        synchronized (idle) {
+            calc = idle.pollLast();
+        }
+        if (calc != null)
+            return calc;
+
+        try {
+            return calculatorClass.newInstance();
+        }
+        catch (Exception e) {
+            throw new CalculatorException(e);
+        }
+    }
+
+    /**
+     * Reset calculator and its configuration, and return it to pool. Calculator is dropped if pool is full.
+     * Calculator must not be used after release.
+     * 
+     * @param calc
+     */
+    public void release(CALC calc) {
+        if (calc == null)
+            return;
+
+        calc.reset();
+        calc.resetConfiguration();
+        synchronized (idle) {
+            if (idle.size() < maxSize)
+                idle.addLast(calc);
+        }
+    }
+
+    /**
+     * Number of idle calculators in pool
+     * 
+     * @return
+     */
+    public int size() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+/**
+ * Reason why calculation returned by {@link AbstractCalculator#tryCalculate()} failed
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public enum ErrorCode {
+
+    /**
+     * Division, modulo or negative power of zero
+     */
+    DIVISION_BY_ZERO,
+
+    /**
+     * Other arithmetic error, e.g. non-terminating decimal expansion without defined scale
+     */
+    ARITHMETIC,
+
+    /**
+     * Operator without left or right operand
+     */
+    MISSING_OPERAND,
+
+    /**
+     * Operands without operator between them, e.g. <tt>(1 + 2)(3)</tt>
+     */
+    MISSING_OPERATOR,
+
+    /**
+     * Variable of expression without value
+     */
+    UNDEFINED_VARIABLE,
+
+    /**
+     * Expression can't be parsed or converted to postfix, e.g. unbalanced brackets
+     */
+    INVALID_EXPRESSION,
+
+    /**
+     * Operator, function or character which isn't known to calculator
+     */
+    UNKNOWN_SYMBOL,
+
+    /**
+     * Function called without arguments or with more arguments than it accepts
+     */
+    INVALID_ARGUMENTS,
+
+    /**
+     * Any other error of operator or function
+     */
+    OTHER;
+
+    /**
+     * Resolve error code from exception thrown during calculation. 
+     * Code of {@link Failure} is set where error is detected, other {@link ArithmeticException} is {@link #ARITHMETIC}.
+     * 
+     * @param t
+     * @return
+     */
+    public static ErrorCode of(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof Failure)
+                return ((Failure) cause).getErrorCode();
+            if (cause instanceof ArithmeticException)
+                return ARITHMETIC;
+            if (cause.getCause() == cause)
+                break;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Exception with error code and without stack trace, used for errors detected by calculator itself. 
+     * Filling stack trace is most expensive part of creating exception, and it isn't needed 
+     * when error is expected and is returned as {@link Result}.
+     */
+    public static class Failure extends CalculatorException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ErrorCode errorCode;
+
+        public Failure(ErrorCode errorCode, String message) {
+            super(message);
+            this.errorCode = errorCode;
+        }
+
+        public ErrorCode getErrorCode() {
+            return errorCode;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
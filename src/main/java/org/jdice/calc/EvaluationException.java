@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import org.jdice.calc.internal.FunctionData;
+import org.jdice.calc.internal.StepTrace;
+import org.jdice.calc.internal.Value;
+
+/**
+ * Failure of operation during calculation of expression.
+ * <br/>
+ * Expression, operation and its operands are copied when operation fails, and readable description of failed step is created
+ * only when message is read. Message don't change if calculator or its variables are changed after failure.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ */
+public class EvaluationException extends CalculatorException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private final transient Operator operator;
+    private final transient Object left;
+    private final transient Value leftValue;
+    private final transient Object right;
+    private final transient Value rightValue;
+
+    /**
+     * @param calc calculator which calculate expression
+     * @param index position of operation in postfix expression
+     * @param operator
+     * @param left operand, {@link Value} or {@link FunctionData}, <tt>null</tt> if operand is missing
+     * @param leftValue calculated value of left operand which is function
+     * @param right operand, {@link Value} or {@link FunctionData}, <tt>null</tt> if operand is missing
+     * @param rightValue calculated value of right operand which is function
+     * @param cause
+     */
+    public EvaluationException(AbstractCalculator calc, int index, Operator operator, Object left, Value leftValue, Object right, Value rightValue, Throwable cause) {
+        super(calc, "Error during calculation. Check if expression is correct", cause);
+        this.index = index;
+        this.operator = operator;
+        this.left = AbstractCalculator.copyOf(left);
+        this.leftValue = leftValue;
+        this.right = AbstractCalculator.copyOf(right);
+        this.rightValue = rightValue;
+    }
+
+    /**
+     * Position of failed operation in postfix expression, see {@link AbstractCalculator#getPostfix()}
+     * 
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Value of left operand, or <tt>null</tt> if operand is missing or is function which is not calculated
+     * 
+     * @return
+     */
+    public Num getLeft() {
+        return toNum(left, leftValue);
+    }
+
+    /**
+     * Value of right operand, or <tt>null</tt> if operand is missing or is function which is not calculated
+     * 
+     * @return
+     */
+    public Num getRight() {
+        return toNum(right, rightValue);
+    }
+
+    private static Num toNum(Object operand, Value value) {
+        if (value != null)
+            return value.toNum();
+        else if (operand instanceof Value)
+            return ((Value) operand).toNum();
+        return null;
+    }
+
+    /**
+     * Failed step in same format as traced steps
+     * 
+     * @return
+     */
+    public Step getStep() {
+        StepTrace trace = new StepTrace(1);
+        int i = trace.begin();
+        trace.setLeft(i, left);
+        trace.setLeftValue(i, leftValue);
+        if (left != null || right != null)
+            trace.setOperator(i, operator);
+        trace.setRight(i, right);
+        trace.setRightValue(i, rightValue);
+        return trace.getLastStep();
+    }
+
+    @Override
+    protected String createReport(String infix, String message) {
+        Throwable cause = getCause();
+        return message + ": " + infix + "\n" + getStep() + "  <--- Error: " + (cause != null ? cause.getMessage() : "");
+    }
+
+}
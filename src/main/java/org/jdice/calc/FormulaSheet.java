@@ -0,0 +1,472 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.jdice.calc.internal.DagScheduler;
+import org.jdice.calc.internal.DependencyGraph;
+import org.jdice.calc.internal.InfixParser;
+
+/**
+ * Spreadsheet like collection of named values and formulas.
+ * <br/>
+ * Formula reference variables and other formulas by name. When value or formula is changed only formulas which
+ * transitively depends on it are recalculated, in order where every formula is calculated after all values it use.
+ *
+ * <pre>
+ * FormulaSheet sheet = new FormulaSheet();
+ * sheet.setValue("A", 6.5);
+ * sheet.setValue("P", 200000);
+ * sheet.setFormula("r", "A / 100 / 12");
+ * sheet.setFormula("c", "(r * P) / (1 - (1 + r) ^ -360)");
+ *
+ * sheet.setValue("A", 7);   // recalculate r and c
+ * Num c = sheet.getValue("c");
+ * </pre>
+ *
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class FormulaSheet {
+
+    private final LinkedHashMap<String, Cell> cells = new LinkedHashMap<String, Cell>();
+    private final DependencyGraph graph = new DependencyGraph();
+
+    private Properties properties;
+    private Class<? extends AbstractCalculator> calculatorClass = Calculator.class;
+
+    private static class Cell {
+        private Num value;
+        private String expression;
+        private AbstractCalculator formula;
+        private boolean defined = false;
+        private CalculatorException error;
+        /** duration of last calculation, used to schedule parallel recalculation */
+        private long nanos;
+    }
+
+    public FormulaSheet() {
+    }
+
+    /**
+     * Create sheet where formulas are calculated with given calculator implementation. e.g. {@link TrigCalculator}
+     *
+     * @param calculatorClass
+     */
+    public FormulaSheet(Class<? extends AbstractCalculator> calculatorClass) {
+        this.calculatorClass = calculatorClass;
+    }
+
+    /**
+     * Set value of variable and recalculate all formulas which depends on it
+     *
+     * @param name
+     * @param value
+     * @return
+     */
+    public FormulaSheet setValue(String name, Object value) {
+        Cell cell = getOrCreate(name);
+        if (cell.formula != null)
+            removeFormula(name, cell);
+
+        cell.value.set(value);
+        cell.defined = true;
+        cell.error = null;
+
+        recalculate(graph.getAffected(Collections.singleton(name), false));
+        return this;
+    }
+
+    /**
+     * Use given {@link Num} as variable with name defined by {@link Num#setName(String)}.
+     * After changing value of given <tt>Num</tt> call {@link #recalculate(String)}
+     *
+     * @param value
+     * @return
+     * @throws ParseException
+     */
+    public FormulaSheet setValue(Num value) throws ParseException {
+        String name = value.getName();
+        if (name == null || name.length() == 0)
+            throw new CalculatorException("Value without name can't be used in " + FormulaSheet.class.getSimpleName());
+
+        Cell cell = cells.get(name);
+        if (cell != null && cell.formula != null)
+            removeFormula(name, cell);
+
+        if (cell != null && cell.value != value) {
+            cell.value = value;
+            // formulas hold reference to previous value
+            for (String dependent : graph.getDependents(name)) {
+                Cell dCell = cells.get(dependent);
+                dCell.formula = createFormula(dCell.expression);
+            }
+        }
+        else if (cell == null) {
+            cell = new Cell();
+            cell.value = value;
+            cells.put(name, cell);
+        }
+
+        cell.defined = true;
+        cell.error = null;
+
+        recalculate(graph.getAffected(Collections.singleton(name), false));
+        return this;
+    }
+
+    /**
+     * Define formula with given name. Formula can use variables and other formulas by their names.
+     * Names which are not yet defined will be undefined until they get value.
+     *
+     * @param name
+     * @param expression
+     * @return
+     * @throws ParseException
+     * @throws CalculatorException in case of circular reference
+     */
+    public FormulaSheet setFormula(String name, String expression) throws ParseException {
+        LinkedHashSet<String> dependencies = InfixParser.getVariableNames(expression);
+
+        List<String> created = new ArrayList<String>();
+        for (String dependency : dependencies) {
+            if (!cells.containsKey(dependency)) {
+                getOrCreate(dependency);
+                created.add(dependency);
+            }
+        }
+
+        AbstractCalculator formula = null;
+        List<String> unused = null;
+        try {
+            formula = createFormula(expression);
+            unused = graph.setDependencies(name, dependencies);
+        }
+        catch (ParseException e) {
+            cells.keySet().removeAll(created);
+            throw e;
+        }
+        catch (RuntimeException e) {
+            cells.keySet().removeAll(created);
+            throw e;
+        }
+
+        removeUndefined(unused);
+
+        Cell cell = getOrCreate(name);
+        cell.formula = formula;
+        cell.expression = expression;
+
+        recalculate(graph.getAffected(Collections.singleton(name), true));
+        return this;
+    }
+
+    /**
+     * Remove variable or formula. If other formulas use it, it stays as undefined value.
+     *
+     * @param name
+     * @return
+     */
+    public FormulaSheet remove(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null)
+            return this;
+
+        if (cell.formula != null)
+            removeFormula(name, cell);
+
+        if (graph.contains(name)) {
+            cell.defined = false;
+            cell.error = null;
+            recalculate(graph.getAffected(Collections.singleton(name), false));
+        }
+        else {
+            cells.remove(name);
+        }
+        return this;
+    }
+
+    /**
+     * Remove formula from graph, together with undefined names used only by this formula
+     */
+    private void removeFormula(String name, Cell cell) {
+        cell.formula = null;
+        cell.expression = null;
+        cell.defined = false;
+        cell.error = null;
+
+        List<String> unused = graph.removeDependencies(name);
+        unused.remove(name);
+        removeUndefined(unused);
+    }
+
+    private void removeUndefined(List<String> names) {
+        for (String name : names) {
+            Cell cell = cells.get(name);
+            if (cell != null && cell.formula == null && !cell.defined)
+                cells.remove(name);
+        }
+    }
+
+    /**
+     * Recalculate all formulas which depends on variable with given name.
+     * Used when value of <tt>Num</tt> defined by {@link #setValue(Num)} is changed.
+     *
+     * @param name
+     * @return
+     */
+    public FormulaSheet recalculate(String name) {
+        Cell cell = cells.get(name);
+        if (cell != null)
+            recalculate(graph.getAffected(Collections.singleton(name), cell.formula != null));
+
+        return this;
+    }
+
+    /**
+     * Recalculate all formulas
+     *
+     * @return
+     */
+    public FormulaSheet recalculate() {
+        recalculate(graph.getTopologicalOrder());
+        return this;
+    }
+
+    /**
+     * Recalculate all formulas in parallel using given number of threads.
+     * Independent formulas are calculated at same time, and formulas on longest chain of dependencies are calculated first.
+     *
+     * @param threads
+     * @return
+     */
+    public FormulaSheet recalculate(int threads) {
+        new DagScheduler(graph, new SheetEvaluator()).execute(graph.getTopologicalOrder(), threads);
+        return this;
+    }
+
+    /**
+     * Recalculate all formulas in parallel using given executor.
+     *
+     * @param executor
+     * @return
+     * @see #recalculate(int)
+     */
+    public FormulaSheet recalculate(Executor executor) {
+        new DagScheduler(graph, new SheetEvaluator()).execute(graph.getTopologicalOrder(), executor);
+        return this;
+    }
+
+    private class SheetEvaluator implements DagScheduler.Evaluator {
+        public void evaluate(String name) {
+            calculate(name);
+        }
+
+        public long getCost(String name) {
+            Cell cell = cells.get(name);
+            if (cell == null || cell.formula == null)
+                return 0;
+            // expression length until formula is calculated at least once
+            return cell.nanos > 0 ? cell.nanos : cell.expression.length();
+        }
+    }
+
+    private void recalculate(List<String> order) {
+        for (String name : order)
+            calculate(name);
+    }
+
+    private void calculate(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null || cell.formula == null)
+            return;
+
+        cell.defined = false;
+        cell.error = null;
+
+        for (String dependency : graph.getDependencies(name)) {
+            Cell dCell = cells.get(dependency);
+            if (dCell == null || !dCell.defined)
+                return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            Num result = cell.formula.calculate();
+            cell.value.set(result);
+            cell.defined = true;
+        }
+        catch (CalculatorException e) {
+            cell.error = e;
+        }
+        cell.nanos = System.nanoTime() - start;
+    }
+
+    private AbstractCalculator createFormula(String expression) throws ParseException {
+        LinkedHashSet<String> names = InfixParser.getVariableNames(expression);
+        Object[] values = new Object[names.size()];
+        int i = 0;
+        for (String name : names)
+            values[i++] = cells.get(name).value;
+
+        AbstractCalculator calc = null;
+        try {
+            calc = calculatorClass.newInstance();
+        }
+        catch (Exception e) {
+            throw new CalculatorException(e);
+        }
+
+        if (properties != null)
+            calc.setProperties(properties);
+        calc.expression(expression, values);
+
+        return calc;
+    }
+
+    private Cell getOrCreate(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null) {
+            cell = new Cell();
+            cell.value = new Num().setName(name);
+            cells.put(name, cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Get value of variable or calculated formula.
+     *
+     * @param name
+     * @return value or <tt>null</tt> if value is not defined or can't be calculated
+     * @see #getError(String)
+     */
+    public Num getValue(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null || !cell.defined)
+            return null;
+
+        return cell.value;
+    }
+
+    /**
+     * Exception thrown during last calculation of formula
+     *
+     * @param name
+     * @return
+     */
+    public CalculatorException getError(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null)
+            return null;
+
+        return cell.error;
+    }
+
+    public boolean isDefined(String name) {
+        Cell cell = cells.get(name);
+        return cell != null && cell.defined;
+    }
+
+    public boolean isFormula(String name) {
+        Cell cell = cells.get(name);
+        return cell != null && cell.formula != null;
+    }
+
+    public String getExpression(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null)
+            return null;
+
+        return cell.expression;
+    }
+
+    /**
+     * Names of all variables and formulas, including undefined names used by formulas
+     *
+     * @return
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(cells.keySet());
+    }
+
+    /**
+     * Names of variables and formulas which given formula use directly
+     *
+     * @param name
+     * @return
+     */
+    public Set<String> getDependencies(String name) {
+        return graph.getDependencies(name);
+    }
+
+    /**
+     * Names of formulas which directly use given variable or formula
+     *
+     * @param name
+     * @return
+     */
+    public Set<String> getDependents(String name) {
+        return graph.getDependents(name);
+    }
+
+    /**
+     * Formulas which depend on given name in order of calculation
+     *
+     * @param name
+     * @return
+     */
+    public List<String> getCalculationOrder(String name) {
+        return new ArrayList<String>(graph.getAffected(Collections.singleton(name), false));
+    }
+
+    /**
+     * Properties used by all formulas
+     *
+     * @return
+     */
+    public Properties getProperties() {
+        if (properties == null)
+            setProperties(new Properties());
+
+        return properties;
+    }
+
+    /**
+     * Set properties for all formulas
+     *
+     * @param properties
+     * @return
+     */
+    public FormulaSheet setProperties(Properties properties) {
+        this.properties = properties;
+        for (Cell cell : cells.values()) {
+            if (cell.formula != null)
+                cell.formula.setProperties(properties);
+        }
+        return this;
+    }
+
+}
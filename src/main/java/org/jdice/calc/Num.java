@@ -47,9 +47,11 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	private String name;
 	private Properties properties;
 	private Object originalValue;
+	// type of primitive original value, boxed only when requested
+	private char primitive;
 
 	private BigDecimal in = BigDecimal.ZERO;
-	private BigDecimal out = BigDecimal.ZERO;
+	private transient long stamp = Properties.nextStamp();
 
     /**
      * Create Num instance with zero default value
@@ -145,10 +147,91 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 		this.name = name;
 	}
 
+	/**
+	 * Create Num instance with value of given primitive, without boxing
+	 * 
+	 * @param value
+	 */
+	public Num(int value) {
+		set(value);
+	}
+
+	/**
+	 * @see #Num(int)
+	 */
+	public Num(long value) {
+		set(value);
+	}
+
+	/**
+	 * @see #Num(int)
+	 */
+	public Num(float value) {
+		set(value);
+	}
+
+	/**
+	 * @see #Num(int)
+	 */
+	public Num(double value) {
+		set(value);
+	}
+
+	/**
+	 * Create Num instance with given value, <tt>null</tt> is zero
+	 * 
+	 * @param value
+	 */
+	public Num(BigDecimal value) {
+		set(value);
+	}
+
 	public Num set(Object value) {
 		return setValue(value, null, null);
 	}
 
+	public Num set(int value) {
+		return setPrimitive(BigDecimal.valueOf(value), 'I');
+	}
+
+	public Num set(long value) {
+		return setPrimitive(BigDecimal.valueOf(value), 'J');
+	}
+
+	public Num set(float value) {
+		if (Float.isNaN(value) || Float.isInfinite(value))
+			throw new CalculatorException("Unsupported value '" + value + "'");
+		return setPrimitive(new BigDecimal(Float.toString(value)), 'F');
+	}
+
+	public Num set(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			throw new CalculatorException("Unsupported value '" + value + "'");
+		// same value and scale as Double.toString, which print whole number below 10^7 as "n.0"
+		if (value == (long) value && Math.abs(value) < 1e7)
+			return setPrimitive(BigDecimal.valueOf((long) value * 10, 1), 'D');
+		return setPrimitive(BigDecimal.valueOf(value), 'D');
+	}
+
+	public Num set(BigDecimal value) {
+		if (value == null)
+			return set(0);
+
+		originalValue = value;
+		primitive = 0;
+		in = value;
+		stamp = Properties.nextStamp();
+		return this;
+	}
+
+	private Num setPrimitive(BigDecimal value, char primitive) {
+		this.originalValue = null;
+		this.primitive = primitive;
+		this.in = value;
+		stamp = Properties.nextStamp();
+		return this;
+	}
+
 	public Num set(Object value, Class<? extends NumConverter> converter) {
 		return setValue(value, null, converter);
 	}
@@ -160,8 +243,11 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	private Num setValue(Object value, Character decimalSeparator, Class<? extends NumConverter> converterClass) {
 		try {
 			originalValue = value;
+			primitive = 0;
 
-			if (value instanceof Short) {
+			if (value instanceof BigDecimal) {
+				in = (BigDecimal) originalValue;
+			} else if (value instanceof Short) {
 				in = new BigDecimal((Short) originalValue);
 			} else if (value instanceof Integer) {
 				in = new BigDecimal((Integer) originalValue);
@@ -173,8 +259,6 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 				in = new BigDecimal(((Double) originalValue).toString());
 			} else if (value instanceof BigInteger) { 
 				in = new BigDecimal((BigInteger) originalValue);
-			} else if (value instanceof BigDecimal) {
-				in = (BigDecimal) originalValue;
 			} else if (value instanceof String) {
 				if (decimalSeparator == null)
 					decimalSeparator = getProperties().getInputDecimalSeparator();
@@ -259,7 +343,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 			throw new CalculatorException(e);
 		}
 
-		out = in;
+		stamp = Properties.nextStamp();
 		
 		return this;
 	}
@@ -285,11 +369,33 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 		return properties;
 	}
 
+	/**
+	 * Check if properties are defined for this <tt>Num</tt>. Otherwise default properties are used.
+	 * 
+	 * @return
+	 */
+	public boolean hasProperties() {
+		return properties != null;
+	}
+
 	public Num setProperties(Properties properties) {
 		this.properties = properties;
+		stamp = Properties.nextStamp();
 		return this;
 	}
 
+	/**
+	 * Modification stamp, changed whenever value or properties of this <tt>Num</tt> are changed.
+	 * Used to detect if value is changed since last calculation.
+	 * 
+	 * @return
+	 */
+	public long getStamp() {
+		if (properties != null)
+			return Math.max(stamp, properties.getStamp());
+		return stamp;
+	}
+
 	/**
 	 * Sets the scale for division operations.
 	 * 
@@ -323,7 +429,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	 * @return
 	 */
 	public Integer getScale() {
-		return getProperties().getScale();
+		return properties != null ? properties.getScale() : Properties.getDefaultScale();
 	}
 
 	/**
@@ -345,7 +451,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	 * @return
 	 */
 	public Rounding getRoundingMode() {
-		return getProperties().getRoundingMode();
+		return properties != null ? properties.getRoundingMode() : Properties.getDefaultRoundingMode();
 	}
 
 	public Num setStripTrailingZeros(boolean stripTrailingZeros) {
@@ -354,7 +460,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	}
 
 	public boolean hasStripTrailingZeros() {
-    	return getProperties().hasStripTrailingZeros();
+    	return properties != null ? properties.hasStripTrailingZeros() : Properties.hasDefaultStripTrailingZeros();
     }
 
     /**
@@ -384,7 +490,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	 * @return BigDecimal
 	 */
 	public BigDecimal toBigDecimal() {
-	    return toBigDecimal(getProperties().getScale(), getProperties().getRoundingMode(), getProperties().hasStripTrailingZeros());
+	    return toBigDecimal(getScale(), getRoundingMode(), hasStripTrailingZeros());
 	}
 
 	/**
@@ -393,7 +499,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	 * @return BigDecimal
 	 */
 	public BigDecimal toBigDecimal(int scale) {
-	    return toBigDecimal(scale, getProperties().getRoundingMode(), getProperties().hasStripTrailingZeros());
+	    return toBigDecimal(scale, getRoundingMode(), hasStripTrailingZeros());
 	}
 	
 	/**
@@ -404,7 +510,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
      * @return BigDecimal
      */
     public BigDecimal toBigDecimal(int scale, Rounding roundingMode) {
-        return toBigDecimal(scale, roundingMode, getProperties().hasStripTrailingZeros());
+        return toBigDecimal(scale, roundingMode, hasStripTrailingZeros());
     }
 
 	/**
@@ -416,7 +522,7 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	 * @return BigDecimal
 	 */
 	public BigDecimal toBigDecimal(Integer scale, Rounding rounding, boolean stripTrailingZeros) {
-	    out = this.in;
+	    BigDecimal out = this.in;
 	    
 	    if (scale != null && rounding != null)
 	        out = out.setScale(scale, rounding.getBigDecimalRound());
@@ -459,11 +565,8 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	 * @return
 	 */
 	public boolean hasRemainder() {
-	    String out = toString();
-		if (out.contains("."))
-			return true;
-		else
-			return false;
+	    BigDecimal out = toBigDecimal();
+		return out.signum() != 0 && out.stripTrailingZeros().scale() > 0;
 	}
 
 	public boolean isZero() {
@@ -605,7 +708,18 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 	}
 
 	public Object getOriginalValue() {
-		return originalValue;
+		switch (primitive) {
+		case 'I':
+			return Integer.valueOf(in.intValue());
+		case 'J':
+			return Long.valueOf(in.longValue());
+		case 'F':
+			return Float.valueOf(in.floatValue());
+		case 'D':
+			return Double.valueOf(in.doubleValue());
+		default:
+			return originalValue;
+		}
 	}
 
 	@Override
@@ -614,10 +728,11 @@ public class Num implements Cloneable, Comparable<Num>, Serializable {
 
 		copy.name = this.name;
 		
-		copy.getProperties().load(this.getProperties());
+		if (this.properties != null)
+			copy.getProperties().load(this.properties);
 		copy.originalValue = this.originalValue;
-		copy.in = new BigDecimal(this.in.toString());
-		copy.out = new BigDecimal(this.out.toString());
+		copy.primitive = this.primitive;
+		copy.in = this.in;
 		
 		return copy;
 	}
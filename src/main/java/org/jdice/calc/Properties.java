@@ -26,6 +26,7 @@ import java.net.URL;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jdice.calc.internal.CacheExtension;
 import org.jdice.calc.internal.Objects;
@@ -182,17 +183,64 @@ public class Properties implements Serializable {
     private Character groupingSeparator = defGroupingSeparator;
     private String outputFormat = defOutputFormat;
 	
+    /**
+     * Sequence of modification stamps shared by {@link Properties} and {@link Num}
+     */
+    private static final AtomicLong stamps = new AtomicLong();
+    private transient long stamp = nextStamp();
     
     public Properties() {
         
     }
     
+    /**
+     * Scale of new {@link Properties} instance, defined by global properties file
+     * 
+     * @return
+     */
+    public static Integer getDefaultScale() {
+        return defScale;
+    }
+
+    /**
+     * Rounding mode of new {@link Properties} instance, defined by global properties file or {@link #DEFAULT_ROUNDING_MODE}
+     * 
+     * @return
+     */
+    public static Rounding getDefaultRoundingMode() {
+        return defRoundingMode;
+    }
+
+    /**
+     * Strip trailing zeros of new {@link Properties} instance, defined by global properties file or {@link #DEFAULT_STRIP_TRAILING_ZEROS}
+     * 
+     * @return
+     */
+    public static boolean hasDefaultStripTrailingZeros() {
+        return defStripTrailingZeros;
+    }
+
+    static long nextStamp() {
+        return stamps.incrementAndGet();
+    }
+
+    /**
+     * Modification stamp, changed on every change of properties. 
+     * Stamps are unique among all instances of {@link Properties} and {@link Num}.
+     * 
+     * @return
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
     public Rounding getRoundingMode() {
         return roundingMode;
     }
 
     public Properties setRoundingMode(Rounding roundingMode) {
         this.roundingMode = roundingMode;
+        stamp = nextStamp();
         return this;
     }
 
@@ -206,6 +254,7 @@ public class Properties implements Serializable {
 		else
 			this.scale = null;
 		
+        stamp = nextStamp();
         return this;
     }
 
@@ -215,6 +264,7 @@ public class Properties implements Serializable {
 
     public Properties setStripTrailingZeros(boolean stripTrailingZeros) {
         this.stripTrailingZeros = stripTrailingZeros;
+        stamp = nextStamp();
         return this;
     }
 
@@ -224,6 +274,7 @@ public class Properties implements Serializable {
 
     public Properties setOutputFormat(String outputFormat) {
         this.outputFormat = outputFormat;
+        stamp = nextStamp();
         return this;
     }
 
@@ -238,16 +289,19 @@ public class Properties implements Serializable {
     public Properties setDecimalSeparator(char inputDecimalSeparator, char outputDecimalSeparator) {
         this.decimalSeparatorIN = inputDecimalSeparator;
         this.decimalSeparatorOUT = outputDecimalSeparator;
+        stamp = nextStamp();
         return this;
     }
 
     public Properties setInputDecimalSeparator(char inputDecimalSeparator) {
         this.decimalSeparatorIN = inputDecimalSeparator;
+        stamp = nextStamp();
         return this;
     }
 
     public Properties setOutputDecimalSeparator(char outputDecimalSeparator) {
         this.decimalSeparatorOUT = outputDecimalSeparator;
+        stamp = nextStamp();
         return this;
     }
 
@@ -257,6 +311,7 @@ public class Properties implements Serializable {
 
     public void setGroupingSeparator(Character groupingSeparator) {
         this.groupingSeparator = groupingSeparator;
+        stamp = nextStamp();
     }
 
     public void load(Properties properties) {
@@ -443,6 +498,32 @@ public class Properties implements Serializable {
             return value.getScale();
     }
 
+    /**
+     * Scale of {@link AbstractCalculator} instance, or default scale {@link Properties#DEFAULT_SCALE}
+     * 
+     * @param calc
+     * @return
+     */
+    public static int getInheritedScale(AbstractCalculator calc) {
+        if (calc != null && calc.getScale() != null)
+            return calc.getScale();
+        else
+            return Properties.DEFAULT_SCALE;
+    }
+
+    /**
+     * Rounding mode of {@link AbstractCalculator} instance, or default rounding mode
+     * 
+     * @param calc
+     * @return
+     */
+    public static Rounding getInheritedRoundingMode(AbstractCalculator calc) {
+        if (calc != null && calc.getRoundingMode() != null)
+            return calc.getRoundingMode();
+        else
+            return Properties.defRoundingMode;
+    }
+
     public static String getGlobalPropertiesFile() {
         String path = null;
         try {
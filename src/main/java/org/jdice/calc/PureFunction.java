@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for {@link Function} implementation which result depends only on argument values, scale and rounding mode.
+ * Results of pure function are cached and reused when function is called again with same arguments.
+ * 
+ * @see org.jdice.calc.internal.CacheExtension#getFunctionResultCache()
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value=ElementType.TYPE)
+public @interface PureFunction {
+
+}
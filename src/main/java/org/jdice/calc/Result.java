@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+/**
+ * Result of {@link AbstractCalculator#tryCalculate()}, which is either calculated value or description of error.
+ * <br/>
+ * Error is returned instead of thrown, so expressions where error is expected (e.g. validation of many rows of input) 
+ * don't pay for creating exceptions and their stack traces. 
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public final class Result {
+
+    private final Num value;
+    private final ErrorCode errorCode;
+    private final String operator;
+    private final int index;
+    private final Throwable cause;
+    private final String description;
+    private String message;
+
+    private Result(Num value, ErrorCode errorCode, String operator, int index, Throwable cause, String description) {
+        this.value = value;
+        this.errorCode = errorCode;
+        this.operator = operator;
+        this.index = index;
+        this.cause = cause;
+        this.description = description;
+    }
+
+    public static Result of(Num value) {
+        return new Result(value, null, null, -1, null, null);
+    }
+
+    /**
+     * @param errorCode
+     * @param operator symbol of failed operator, <tt>null</tt> if error isn't caused by operator
+     * @param index position of failed operator in postfix expression, or -1
+     * @param cause exception thrown by calculation, <tt>null</tt> if error is detected without exception
+     * @param message description of error, if <tt>null</tt> message of cause is used
+     * @return
+     */
+    public static Result error(ErrorCode errorCode, String operator, int index, Throwable cause, String message) {
+        return new Result(null, errorCode, operator, index, cause, message);
+    }
+
+    /**
+     * Same error, reported at position of function whose argument failed
+     * 
+     * @param function symbol of function, used if error isn't caused by operator of argument
+     * @param index position of function in postfix expression
+     * @return
+     */
+    public Result at(String function, int index) {
+        return new Result(null, errorCode, operator != null ? operator : function, index, cause, description);
+    }
+
+    public boolean isSuccess() {
+        return errorCode == null;
+    }
+
+    /**
+     * Calculated value, or <tt>null</tt> if calculation failed
+     * 
+     * @return
+     */
+    public Num getValue() {
+        return value;
+    }
+
+    /**
+     * Calculated value
+     * 
+     * @return
+     * @throws CalculatorException if calculation failed
+     */
+    public Num getValueOrThrow() {
+        if (errorCode != null)
+            throw new CalculatorException(getMessage(), cause);
+        return value;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Symbol of failed operator or function, or <tt>null</tt>. 
+     * If argument of function failed, this is operator which failed in argument.
+     * 
+     * @return
+     */
+    public String getOperator() {
+        return operator;
+    }
+
+    /**
+     * Position of failed operator or function in postfix expression, see {@link AbstractCalculator#getPostfix()}, or -1.
+     * If argument of function failed, this is position of function.
+     * 
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Exception thrown during calculation, or <tt>null</tt> if error is detected without exception
+     * 
+     * @return
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Description of error, created first time when it is read
+     * 
+     * @return
+     */
+    public String getMessage() {
+        if (message == null && errorCode != null) {
+            if (description != null)
+                message = description;
+            else
+                message = cause != null && cause.getMessage() != null ? cause.getMessage() : errorCode.toString();
+            if (operator != null)
+                message = message + " (operator '" + operator + "' at " + index + ")";
+        }
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return errorCode == null ? String.valueOf(value) : errorCode + ": " + getMessage();
+    }
+
+}
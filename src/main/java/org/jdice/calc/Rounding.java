@@ -30,7 +30,7 @@ public enum Rounding {
     CEILING(BigDecimal.ROUND_CEILING, RoundingMode.CEILING),
     DOWN(BigDecimal.ROUND_DOWN, RoundingMode.DOWN),
     FLOOR(BigDecimal.ROUND_FLOOR, RoundingMode.FLOOR),
-    HALF_DOWN(BigDecimal.ROUND_HALF_DOWN, RoundingMode.DOWN),
+    HALF_DOWN(BigDecimal.ROUND_HALF_DOWN, RoundingMode.HALF_DOWN),
     HALF_EVEN(BigDecimal.ROUND_HALF_EVEN, RoundingMode.HALF_EVEN),
     HALF_UP(BigDecimal.ROUND_HALF_UP, RoundingMode.HALF_UP),
     UNNECESSARY(BigDecimal.ROUND_UNNECESSARY, RoundingMode.UNNECESSARY),
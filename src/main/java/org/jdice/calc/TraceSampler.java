@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decide which calculations are traced and passed to {@link TraceSink}.
+ * <br/>
+ * Calculations which are not sampled are calculated without tracing.
+ * Custom sampler can decide by values of variables, e.g. trace only large amounts:
+ * 
+ * <pre>
+ * calc.setTraceSampling(new TraceSampler() {
+ *     public boolean isSampled(AbstractCalculator&lt;?&gt; calc) {
+ *         return calc.getVariable("amount").compareTo(new Num(10000)) &gt; 0;
+ *     }
+ * }, sink);
+ * </pre>
+ * 
+ * Sampler can be shared by calculators and used from multiple threads.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ * @see AbstractCalculator#setTraceSampling(TraceSampler, TraceSink)
+ */
+public abstract class TraceSampler {
+
+    /**
+     * Called before every calculation
+     * 
+     * @param calc calculator with values which will be used in calculation
+     * @return TRUE if calculation should be traced
+     */
+    public abstract boolean isSampled(AbstractCalculator<?> calc);
+
+    /**
+     * Sample first and then every n-th calculation
+     * 
+     * @param n
+     * @return
+     */
+    public static TraceSampler everyNth(final long n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("Sampling interval must be positive: " + n);
+
+        return new TraceSampler() {
+            private final AtomicLong count = new AtomicLong();
+
+            @Override
+            public boolean isSampled(AbstractCalculator<?> calc) {
+                return count.getAndIncrement() % n == 0;
+            }
+        };
+    }
+
+    /**
+     * Sample given fraction of calculations, in evenly spaced calculations.
+     * e.g. 0.01 sample one calculation in 100
+     * 
+     * @param rate between 0 and 1
+     * @return
+     */
+    public static TraceSampler rate(final double rate) {
+        if (!(rate >= 0 && rate <= 1))
+            throw new IllegalArgumentException("Sampling rate must be between 0 and 1: " + rate);
+
+        return new TraceSampler() {
+            private final AtomicLong count = new AtomicLong();
+
+            @Override
+            public boolean isSampled(AbstractCalculator<?> calc) {
+                long k = count.getAndIncrement();
+                // sampled when k-th calculation reach next whole number of samples
+                return Math.floor((k + 1) * rate) > Math.floor(k * rate);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+import java.util.List;
+
+/**
+ * Receive steps of calculations sampled by {@link TraceSampler}, e.g. to store them for audit.
+ * <br/>
+ * Sink is called in thread which calculated expression, after calculation is finished.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ * @see AbstractCalculator#setTraceSampling(TraceSampler, TraceSink)
+ */
+public interface TraceSink {
+
+    /**
+     * 
+     * @param calc calculator which calculated expression
+     * @param result result of calculation
+     * @param steps steps of calculation
+     */
+    public void accept(AbstractCalculator<?> calc, Num result, List<Step> steps);
+
+}
@@ -16,6 +16,7 @@
 
 package org.jdice.calc;
 
+import java.math.BigDecimal;
 import java.text.ParseException;
 
 import org.jdice.calc.extension.Abs;
@@ -108,6 +109,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return operator(AddOperator.class, value);
     }
 
+    public TrigCalculator add(long value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
+    public TrigCalculator add(float value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
+    public TrigCalculator add(double value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
+    public TrigCalculator add(BigDecimal value) {
+        return operator(AddOperator.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator add(String value, char decimalSeparator) {
         return operator(AddOperator.class, value, decimalSeparator);
@@ -125,6 +142,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return operator(SubOperator.class, value);
     }
 
+    public TrigCalculator sub(long value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
+    public TrigCalculator sub(float value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
+    public TrigCalculator sub(double value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
+    public TrigCalculator sub(BigDecimal value) {
+        return operator(SubOperator.class, new Num(value));
+    }
+
 
     @Override
     public TrigCalculator sub(String value, char decimalSeparator) {
@@ -144,6 +177,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return operator(DivOperator.class, value);
     }
 
+    public TrigCalculator div(long value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
+    public TrigCalculator div(float value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
+    public TrigCalculator div(double value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
+    public TrigCalculator div(BigDecimal value) {
+        return operator(DivOperator.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator div(String value, char decimalSeparator) {
         return operator(DivOperator.class, value, decimalSeparator);
@@ -161,6 +210,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return operator(MulOperator.class, value);
     }
 
+    public TrigCalculator mul(long value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
+    public TrigCalculator mul(float value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
+    public TrigCalculator mul(double value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
+    public TrigCalculator mul(BigDecimal value) {
+        return operator(MulOperator.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator mul(String value, char decimalSeparator) {
         return operator(MulOperator.class, value, decimalSeparator);
@@ -178,6 +243,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return operator(PowOperator.class, value);
     }
 
+    public TrigCalculator pow(long value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
+    public TrigCalculator pow(float value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
+    public TrigCalculator pow(double value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
+    public TrigCalculator pow(BigDecimal value) {
+        return operator(PowOperator.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator pow(String value, char decimalSeparator) {
         return operator(PowOperator.class, value, decimalSeparator);
@@ -194,6 +275,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(AbsFunction.class, new Num(value));
     }
 
+    public TrigCalculator abs(long value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
+    public TrigCalculator abs(float value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
+    public TrigCalculator abs(double value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
+    public TrigCalculator abs(BigDecimal value) {
+        return function(AbsFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator abs(String value, char decimalSeparator) {
         return function(AbsFunction.class, new Num(value, decimalSeparator));
@@ -209,6 +306,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(SqrtFunction.class, new Num(value));
     }
 
+    public TrigCalculator sqrt(long value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sqrt(float value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sqrt(double value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sqrt(BigDecimal value) {
+        return function(SqrtFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator sqrt(String value, char decimalSeparator) {
         return function(SqrtFunction.class, new Num(value, decimalSeparator));
@@ -224,6 +337,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return operator(ModOperator.class, value);
     }
 
+    public TrigCalculator mod(long value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
+    public TrigCalculator mod(float value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
+    public TrigCalculator mod(double value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
+    public TrigCalculator mod(BigDecimal value) {
+        return operator(ModOperator.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator mod(String value, char decimalSeparator) {
         return operator(ModOperator.class, value, decimalSeparator);
@@ -242,6 +371,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(SinFunction.class, new Num(value));
     }
 
+    public TrigCalculator sin(long value) {
+        return function(SinFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sin(float value) {
+        return function(SinFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sin(double value) {
+        return function(SinFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sin(BigDecimal value) {
+        return function(SinFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator sin(String value, char decimalSeparator) {
         return function(SinFunction.class, new Num(value, decimalSeparator));
@@ -257,6 +402,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(CosFunction.class, new Num(value));
     }
 
+    public TrigCalculator cos(long value) {
+        return function(CosFunction.class, new Num(value));
+    }
+
+    public TrigCalculator cos(float value) {
+        return function(CosFunction.class, new Num(value));
+    }
+
+    public TrigCalculator cos(double value) {
+        return function(CosFunction.class, new Num(value));
+    }
+
+    public TrigCalculator cos(BigDecimal value) {
+        return function(CosFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator cos(String value, char decimalSeparator) {
         return function(CosFunction.class, new Num(value, decimalSeparator));
@@ -272,6 +433,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(TanFunction.class, new Num(value));
     }
 
+    public TrigCalculator tan(long value) {
+        return function(TanFunction.class, new Num(value));
+    }
+
+    public TrigCalculator tan(float value) {
+        return function(TanFunction.class, new Num(value));
+    }
+
+    public TrigCalculator tan(double value) {
+        return function(TanFunction.class, new Num(value));
+    }
+
+    public TrigCalculator tan(BigDecimal value) {
+        return function(TanFunction.class, new Num(value));
+    }
+
 
     @Override
     public TrigCalculator tan(String value, char decimalSeparator) {
@@ -288,6 +465,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(ArcTanFunction.class, new Num(value));
     }
 
+    public TrigCalculator atan(long value) {
+        return function(ArcTanFunction.class, new Num(value));
+    }
+
+    public TrigCalculator atan(float value) {
+        return function(ArcTanFunction.class, new Num(value));
+    }
+
+    public TrigCalculator atan(double value) {
+        return function(ArcTanFunction.class, new Num(value));
+    }
+
+    public TrigCalculator atan(BigDecimal value) {
+        return function(ArcTanFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator atan(String value, char decimalSeparator) {
         return function(ArcTanFunction.class, new Num(value, decimalSeparator));
@@ -303,6 +496,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(ArcCosFunction.class, new Num(value));
     }
 
+    public TrigCalculator acos(long value) {
+        return function(ArcCosFunction.class, new Num(value));
+    }
+
+    public TrigCalculator acos(float value) {
+        return function(ArcCosFunction.class, new Num(value));
+    }
+
+    public TrigCalculator acos(double value) {
+        return function(ArcCosFunction.class, new Num(value));
+    }
+
+    public TrigCalculator acos(BigDecimal value) {
+        return function(ArcCosFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator acos(String value, char decimalSeparator) {
         return function(ArcCosFunction.class, new Num(value, decimalSeparator));
@@ -318,6 +527,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(ArcSinFunction.class, new Num(value));
     }
 
+    public TrigCalculator asin(long value) {
+        return function(ArcSinFunction.class, new Num(value));
+    }
+
+    public TrigCalculator asin(float value) {
+        return function(ArcSinFunction.class, new Num(value));
+    }
+
+    public TrigCalculator asin(double value) {
+        return function(ArcSinFunction.class, new Num(value));
+    }
+
+    public TrigCalculator asin(BigDecimal value) {
+        return function(ArcSinFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator asin(String value, char decimalSeparator) {
         return function(ArcSinFunction.class, new Num(value, decimalSeparator));
@@ -333,6 +558,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(TanhFunction.class, new Num(value));
     }
 
+    public TrigCalculator tanh(long value) {
+        return function(TanhFunction.class, new Num(value));
+    }
+
+    public TrigCalculator tanh(float value) {
+        return function(TanhFunction.class, new Num(value));
+    }
+
+    public TrigCalculator tanh(double value) {
+        return function(TanhFunction.class, new Num(value));
+    }
+
+    public TrigCalculator tanh(BigDecimal value) {
+        return function(TanhFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator tanh(String value) {
         return function(TanhFunction.class, new Num(value));
@@ -353,6 +594,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(CoshFunction.class, new Num(value));
     }
 
+    public TrigCalculator cosh(long value) {
+        return function(CoshFunction.class, new Num(value));
+    }
+
+    public TrigCalculator cosh(float value) {
+        return function(CoshFunction.class, new Num(value));
+    }
+
+    public TrigCalculator cosh(double value) {
+        return function(CoshFunction.class, new Num(value));
+    }
+
+    public TrigCalculator cosh(BigDecimal value) {
+        return function(CoshFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator cosh(String value, char decimalSeparator) {
         return function(CoshFunction.class, new Num(value, decimalSeparator));
@@ -368,6 +625,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(SinhFunction.class, new Num(value));
     }
 
+    public TrigCalculator sinh(long value) {
+        return function(SinhFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sinh(float value) {
+        return function(SinhFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sinh(double value) {
+        return function(SinhFunction.class, new Num(value));
+    }
+
+    public TrigCalculator sinh(BigDecimal value) {
+        return function(SinhFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator sinh(String value, char decimalSeparator) {
         return function(SinhFunction.class, new Num(value, decimalSeparator));
@@ -383,6 +656,22 @@ public final class TrigCalculator extends AbstractCalculator<TrigCalculator> imp
         return function(LogFunction.class, value);
     }
 
+    public TrigCalculator log(long value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
+    public TrigCalculator log(float value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
+    public TrigCalculator log(double value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
+    public TrigCalculator log(BigDecimal value) {
+        return function(LogFunction.class, new Num(value));
+    }
+
     @Override
     public TrigCalculator log(String value, char decimalSeparator) {
         return function(LogFunction.class, value);
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc;
+
+/**
+ * Result of {@link AbstractCalculator#validate(String)}. 
+ * Valid expression can be parsed and calculated if all its variables have values.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public final class Validation {
+
+    public static final Validation VALID = new Validation(null, -1, null);
+
+    private final ErrorCode errorCode;
+    private final int position;
+    private final String symbol;
+
+    /**
+     * @param errorCode
+     * @param position position of error in expression
+     * @param symbol operator, function or character at position, or <tt>null</tt>
+     */
+    public Validation(ErrorCode errorCode, int position, String symbol) {
+        this.errorCode = errorCode;
+        this.position = position;
+        this.symbol = symbol;
+    }
+
+    public boolean isValid() {
+        return errorCode == null;
+    }
+
+    /**
+     * Error code, or <tt>null</tt> if expression is valid
+     * 
+     * @return
+     */
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Position of error in validated expression, or -1 if expression is valid
+     * 
+     * @return
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Operator, function or character at position of error, or <tt>null</tt> if error isn't caused by any of them 
+     * e.g. missing operand at end of expression
+     * 
+     * @return
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Description of error, or <tt>null</tt> if expression is valid
+     * 
+     * @return
+     */
+    public String getMessage() {
+        if (errorCode == null)
+            return null;
+
+        String at = symbol != null ? " '" + symbol + "' at " + position : " at " + position;
+        switch (errorCode) {
+            case MISSING_OPERAND:
+                return "Missing operand" + at;
+            case MISSING_OPERATOR:
+                return "Missing operator" + at;
+            case UNKNOWN_SYMBOL:
+                return "Unknown symbol" + at;
+            case INVALID_ARGUMENTS:
+                return "Invalid number of arguments of function" + at;
+            default:
+                return "Invalid expression" + at;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return errorCode == null ? "VALID" : errorCode + ": " + getMessage();
+    }
+
+}
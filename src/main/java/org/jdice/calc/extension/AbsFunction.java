@@ -19,12 +19,18 @@ package org.jdice.calc.extension;
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.PureFunction;
 
 /**
+ * Absolute value of argument.
+ * <br/>
+ * Memoizing abs saves little, but {@link PureFunction} also allows calculator to reuse result and to specialize 
+ * expressions which use abs.
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class AbsFunction implements Function {
 
     @Override
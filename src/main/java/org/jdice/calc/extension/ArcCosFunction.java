@@ -16,15 +16,21 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class ArcCosFunction implements Function {
 
     @Override
@@ -42,9 +48,14 @@ public class ArcCosFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values)  {
-        double acos = Math.acos(values[0].toBigDecimal().doubleValue());
+        if (calc != null && calc.isFastMath())
+            return new Num(Math.acos(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal acos = BigMath.acos(x, BigMath.context(scale, 1));
 
-        return new Num(acos);
+        return new Num(acos.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
 
 }
@@ -16,15 +16,21 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class ArcTanFunction implements Function {
 
     @Override
@@ -42,9 +48,14 @@ public class ArcTanFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values)  {
-        double atan = Math.atan(values[0].toBigDecimal().doubleValue());
+        if (calc != null && calc.isFastMath())
+            return new Num(Math.atan(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal atan = BigMath.atan(x, BigMath.context(scale, 1));
 
-        return new Num(atan);
+        return new Num(atan.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
 
 }
@@ -16,15 +16,22 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.FastMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class CosFunction implements Function {
 
     @Override
@@ -42,9 +49,14 @@ public class CosFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values)  {
-        double sin = Math.cos(values[0].toBigDecimal().doubleValue());
-        
-        return new Num(sin);
+        if (calc != null && calc.isFastMath())
+            return new Num(FastMath.cos(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal cos = BigMath.cos(x, BigMath.context(scale, 1));
+
+        return new Num(cos.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
 
 }
@@ -16,17 +16,26 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.FastMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class CoshFunction implements Function {
 
+    private static final double LOG10_E = Math.log10(Math.E);
+
     @Override
     public String getSymbol() {
         return "cosh";
@@ -42,9 +51,14 @@ public class CoshFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values)  {
-        double cosh = Math.cosh(values[0].toBigDecimal().doubleValue());
-        
-        return new Num(cosh);
+        if (calc != null && calc.isFastMath())
+            return new Num(FastMath.cosh(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal cosh = BigMath.cosh(x, BigMath.context(scale, (int) Math.ceil(Math.abs(x.doubleValue()) * LOG10_E)));
+
+        return new Num(cosh.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
 
 }
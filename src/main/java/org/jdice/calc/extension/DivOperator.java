@@ -16,20 +16,19 @@
  
 package org.jdice.calc.extension;
 
-import java.math.BigDecimal;
-
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
-import org.jdice.calc.Properties;
 import org.jdice.calc.Rounding;
+import org.jdice.calc.internal.Value;
+import org.jdice.calc.internal.ScaledOperator;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
-public class DivOperator implements Operator {
+public class DivOperator implements Operator, ScaledOperator {
 
     @Override
     public int getPriority() {
@@ -43,16 +42,24 @@ public class DivOperator implements Operator {
 
     @Override
     public Num calc(AbstractCalculator calc, Num value1, Num value2)  {
-        int scale = Properties.getInheritedScale(calc, value2);
-        Rounding roundingMode = Properties.getInheritedRoundingMode(calc, value2);
+        return calc(calc, Value.of(value1), Value.of(value2)).toNum();
+    }
+
+    public Num calc(AbstractCalculator calc, Num value1, Num value2, Integer scale, Rounding roundingMode)  {
+        return calc(calc, Value.of(value1), Value.of(value2), scale, roundingMode).toNum();
+    }
+
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value value2) {
+        int scale = value2.getInheritedScale(calc);
+        Rounding roundingMode = value2.getInheritedRoundingMode(calc);
 
         return calc(calc, value1, value2, scale, roundingMode);
     }
 
-    public Num calc(AbstractCalculator calc, Num value1, Num value2, Integer scale, Rounding roundingMode)  {
-        BigDecimal value = value1.toBigDecimal().divide(value2.toBigDecimal(), scale, roundingMode.getBigDecimalRound());
-        Num result = new Num(value);
-        return result;
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value value2, int scale, Rounding roundingMode) {
+        return Value.of(value1.toBigDecimal().divide(value2.toBigDecimal(), scale, roundingMode.getBigDecimalRound()));
     }
 
     @Override
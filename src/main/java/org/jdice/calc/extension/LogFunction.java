@@ -16,15 +16,22 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.FastMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class LogFunction implements Function {
 
     @Override
@@ -42,7 +49,14 @@ public class LogFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values) {
-        return new Num(Math.log(values[0].doubleValue()));
+        if (calc != null && calc.isFastMath())
+            return new Num(FastMath.log(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal log = BigMath.ln(x, BigMath.context(scale, BigMath.integerDigits(BigMath.log10(x.abs()) * Math.log(10))));
+
+        return new Num(log.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
     
     
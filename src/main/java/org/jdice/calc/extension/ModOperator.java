@@ -16,21 +16,21 @@
  
 package org.jdice.calc.extension;
 
-import java.math.BigDecimal;
 import java.math.MathContext;
 
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
-import org.jdice.calc.Properties;
 import org.jdice.calc.Rounding;
+import org.jdice.calc.internal.ScaledOperator;
+import org.jdice.calc.internal.Value;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
-public class ModOperator implements Operator {
+public class ModOperator implements Operator, ScaledOperator {
 
     @Override
     public int getPriority() {
@@ -44,17 +44,25 @@ public class ModOperator implements Operator {
 
     @Override
     public Num calc(AbstractCalculator calc, Num value1, Num value2)  {
-        int scale = Properties.getInheritedScale(calc, value2);
-        Rounding roundingMode = Properties.getInheritedRoundingMode(calc, value2);
-
-        return calc(value1, value2, scale, roundingMode);
+        return calc(calc, Value.of(value1), Value.of(value2)).toNum();
     }
 
     public Num calc(Num value1, Num value2, Integer scale, Rounding roundingMode)  {
+        return calc(null, Value.of(value1), Value.of(value2), scale, roundingMode).toNum();
+    }
+
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value value2) {
+        int scale = value2.getInheritedScale(calc);
+        Rounding roundingMode = value2.getInheritedRoundingMode(calc);
+
+        return calc(calc, value1, value2, scale, roundingMode);
+    }
+
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value value2, int scale, Rounding roundingMode) {
         MathContext mc = new MathContext(scale, roundingMode.getRoundingMode());
-        BigDecimal value = value1.toBigDecimal().remainder(value2.toBigDecimal(), mc);
-        Num result = new Num(value);
-        return result;
+        return Value.of(value1.toBigDecimal().remainder(value2.toBigDecimal(), mc));
     }
 
     @Override
@@ -16,18 +16,18 @@
  
 package org.jdice.calc.extension;
 
-import java.math.BigDecimal;
-
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
+import org.jdice.calc.internal.Value;
+import org.jdice.calc.internal.ValueOperator;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
-public class MulOperator implements Operator {
+public class MulOperator implements Operator, ValueOperator {
 
     @Override
     public int getPriority() {
@@ -42,9 +42,12 @@ public class MulOperator implements Operator {
 
     @Override
     public Num calc(AbstractCalculator calc, Num value1, Num value2)  {
-        BigDecimal value = value1.toBigDecimal().multiply(value2.toBigDecimal());
-        Num result = new Num(value);
-        return result;
+        return calc(calc, Value.of(value1), Value.of(value2)).toNum();
+    }
+
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value value2) {
+        return Value.of(value1.toBigDecimal().multiply(value2.toBigDecimal()));
     }
     
     @Override
@@ -17,19 +17,48 @@
 package org.jdice.calc.extension;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 
 import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.ErrorCode;
 import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
 import org.jdice.calc.Properties;
 import org.jdice.calc.Rounding;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.CacheExtension;
+import org.jdice.calc.internal.MemoCache;
+import org.jdice.calc.internal.ScaledOperator;
+import org.jdice.calc.internal.Value;
 
 /**
+ * Power with whole or fractional exponent.
+ * <br/>
+ * Whole positive power is exact, same as {@link BigDecimal#pow(int)}, unless it has more than {@link #EXACT_DIGITS} digits. 
+ * Multiplications of larger power and of negative exponent are rounded to as many digits as needed for result accurate 
+ * to scale of exponent (or calculator), and result of negative exponent is rounded to that scale. Result of fractional exponent is rounded to scale of calculator.
+ * Results of large and fractional exponents are cached in {@link CacheExtension#getOperatorResultCache()}.
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
-public class PowOperator implements Operator {
+public class PowOperator implements Operator, ScaledOperator {
+
+    /**
+     * Digits above requested scale used during calculation
+     */
+    private static final int GUARD_DIGITS = 5;
+
+    /**
+     * Largest whole exponent calculated without cache
+     */
+    private static final int CACHE_EXPONENT = 8;
+
+    /**
+     * Largest number of digits of whole positive power calculated exactly
+     */
+    private static final int EXACT_DIGITS = 10000;
 
     @Override
     public int getPriority() {
@@ -43,35 +72,134 @@ public class PowOperator implements Operator {
 
     @Override
     public Num calc(AbstractCalculator calc, Num value1, Num exponent)  {
-        int scale = Properties.getInheritedScale(calc, exponent);
-        Rounding roundingMode = Properties.getInheritedRoundingMode(calc, exponent);
-
-        return calc(calc, value1, exponent, scale, roundingMode);
+        return calc(calc, Value.of(value1), Value.of(exponent)).toNum();
     }
 
     public Num calc(AbstractCalculator calc, Num value1, Num exponent, Integer scale, Rounding roundingMode)  {
-        if (exponent.hasRemainder()) {
-            double result = Math.pow(value1.doubleValue(), exponent.doubleValue());
-            return new Num(result);
-        } else {
-            int ex = exponent.intValue();
-            
-            if (ex == 0)
-                return value1;
-            else if (ex < 0) {
-                BigDecimal one = BigDecimal.ONE;
-                BigDecimal value = value1.toBigDecimal().pow(ex * -1);
-                value = one.divide(value, scale, roundingMode.getBigDecimalRound());
-                
-                Num result = new Num(value);
-                return result;
-            } else {
-                BigDecimal value = value1.toBigDecimal().pow(exponent.toBigDecimal().intValue());
-                Num result = new Num(value);
-                return result;
-            }
+        return new Num(pow(value1.toBigDecimal(), exponent.toBigDecimal(), scale, roundingMode));
+    }
+
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value exponent) {
+        // scale of fractional exponent is only number of its decimals, and it's not used as scale of result
+        int scale = isInteger(exponent.toBigDecimal()) ? exponent.getInheritedScale(calc) : Properties.getInheritedScale(calc);
+        Rounding roundingMode = exponent.getInheritedRoundingMode(calc);
+
+        return calc(calc, value1, exponent, scale, roundingMode);
+    }
+
+    /**
+     * Given scale is used only for whole exponent, fractional exponent is calculated to scale of calculator
+     */
+    @Override
+    public Value calc(AbstractCalculator calc, Value value1, Value exponent, int scale, Rounding roundingMode) {
+        BigDecimal ex = exponent.toBigDecimal();
+        if (!isInteger(ex))
+            scale = Properties.getInheritedScale(calc);
+        return Value.of(pow(value1.toBigDecimal(), ex, scale, roundingMode));
+    }
+
+    private static boolean isInteger(BigDecimal value) {
+        return value.signum() == 0 || value.stripTrailingZeros().scale() <= 0;
+    }
+
+    private BigDecimal pow(BigDecimal base, BigDecimal exponent, int scale, Rounding roundingMode) {
+        boolean integer = isInteger(exponent);
+        int ex = 0;
+        if (integer && exponent.abs().compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) <= 0)
+            ex = exponent.intValue();
+        else
+            integer = false;
+
+        if (integer && ex == 0)
+            return BigDecimal.ONE;
+        if (base.signum() == 0) {
+            if (exponent.signum() < 0)
+                throw new ErrorCode.Failure(ErrorCode.DIVISION_BY_ZERO, "Division by zero");
+            return BigDecimal.ZERO;
+        }
+
+        if (integer && Math.abs(ex) <= CACHE_EXPONENT)
+            return pow(base, ex, scale, roundingMode);
+
+        MemoCache<MemoCache.Key, BigDecimal> cache = CacheExtension.getOperatorResultCache();
+        MemoCache.Key key = new MemoCache.Key(PowOperator.class, base, exponent, scale, roundingMode);
+        BigDecimal result = cache.get(key);
+        if (result == null) {
+            result = integer ? pow(base, ex, scale, roundingMode) : powFractional(base, exponent, scale, roundingMode);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Whole exponent, result of positive exponent is not rounded to scale 
+     */
+    private BigDecimal pow(BigDecimal base, int ex, int scale, Rounding roundingMode) {
+        int n = Math.abs(ex);
+        if (ex > 0 && isExact(base, n))
+            return base.pow(n);
+
+        double digits = n * BigMath.log10(base.abs());
+        // rounding error of every multiplication
+        int guard = GUARD_DIGITS + Integer.toString(n).length();
+
+        if (ex > 0)
+            return BigMath.pow(base, n, context(digits + scale + guard));
+
+        BigDecimal value = BigMath.pow(base, n, context(scale + guard - digits));
+        return BigDecimal.ONE.divide(value, scale, roundingMode.getBigDecimalRound());
+    }
+
+    /**
+     * Whole positive power calculated exactly, e.g. when power is replaced by multiplication
+     * 
+     * @param base
+     * @param n
+     * @return power, or <tt>null</tt> if power calculated by this operator would be rounded
+     */
+    public static BigDecimal powExact(BigDecimal base, int n) {
+        return isExact(base, n) ? base.pow(n) : null;
+    }
+
+    /**
+     * Power has at most {@link #EXACT_DIGITS} digits
+     */
+    private static boolean isExact(BigDecimal base, int n) {
+        return (long) n * base.precision() <= EXACT_DIGITS;
+    }
+
+    /**
+     * Fractional exponent, or whole exponent out of range of int: <tt>base^y = e^(y * ln(base))</tt>
+     */
+    private BigDecimal powFractional(BigDecimal base, BigDecimal exponent, int scale, Rounding roundingMode) {
+        int sign = 1;
+        if (base.signum() < 0) {
+            if (!isInteger(exponent))
+                throw new ArithmeticException("Fractional power of negative number");
+            if (exponent.toBigInteger().testBit(0))
+                sign = -1;
+            base = base.negate();
         }
-        
+
+        double digits = exponent.doubleValue() * BigMath.log10(base);
+        if (digits < -scale - 1)
+            return BigDecimal.ZERO.setScale(scale);
+        if (Double.isInfinite(digits) || digits > Integer.MAX_VALUE / 2)
+            throw new ArithmeticException("Overflow");
+
+        // error of exponent y * ln(base) is relative error of result
+        MathContext mc = context(digits + scale + GUARD_DIGITS);
+        double t = Math.abs(digits * Math.log(10));
+        MathContext lnMc = context(mc.getPrecision() + (t > 1 ? Math.log10(t) : 0) + 2);
+
+        BigDecimal y = exponent.multiply(BigMath.ln(base, lnMc), lnMc);
+        BigDecimal value = BigMath.exp(y, mc).setScale(scale, roundingMode.getBigDecimalRound());
+        return sign < 0 ? value.negate() : value;
+    }
+
+    private static MathContext context(double precision) {
+        return new MathContext((int) Math.max(1, Math.ceil(precision)), RoundingMode.HALF_EVEN);
     }
 
     @Override
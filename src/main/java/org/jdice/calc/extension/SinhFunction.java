@@ -16,17 +16,26 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.FastMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class SinhFunction implements Function {
 
+    private static final double LOG10_E = Math.log10(Math.E);
+
     @Override
     public String getSymbol() {
         return "sinh";
@@ -42,9 +51,14 @@ public class SinhFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values)  {
-        double sinh = Math.sinh(values[0].toBigDecimal().doubleValue());
-        
-        return new Num(sinh);
+        if (calc != null && calc.isFastMath())
+            return new Num(FastMath.sinh(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal sinh = BigMath.sinh(x, BigMath.context(scale, (int) Math.ceil(Math.abs(x.doubleValue()) * LOG10_E)));
+
+        return new Num(sinh.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
 
 }
@@ -16,15 +16,22 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.FastMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class SqrtFunction implements Function {
 
     @Override
@@ -34,16 +41,18 @@ public class SqrtFunction implements Function {
 
     @Override
     public int getFunctionAttributes() {
-        return 2;
+        return 1;
     }
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values) {
         if (values.length == 1) {
-            Num toSqrt = new Num();         
-            toSqrt.set(Math.sqrt(values[0].toBigDecimal().doubleValue()));
-            
-            return toSqrt;
+            if (calc != null && calc.isFastMath())
+                return new Num(FastMath.sqrt(values[0].toBigDecimal().doubleValue()));
+
+            int scale = Properties.getInheritedScale(calc);
+            BigDecimal x = values[0].toBigDecimal();
+            return new Num(BigMath.sqrt(x, scale, Properties.getInheritedRoundingMode(calc).getRoundingMode()));
         }
         else {
             throw new IllegalArgumentException();
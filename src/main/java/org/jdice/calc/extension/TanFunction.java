@@ -16,15 +16,22 @@
  
 package org.jdice.calc.extension;
 
+import java.math.BigDecimal;
+
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.FastMath;
 
 /**
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
+@PureFunction
 public class TanFunction implements Function {
 
     @Override
@@ -42,9 +49,14 @@ public class TanFunction implements Function {
 
     @Override
     public Num calc(AbstractCalculator calc, Num... values)  {
-        double tan = Math.tan(values[0].toBigDecimal().doubleValue());
+        if (calc != null && calc.isFastMath())
+            return new Num(FastMath.tan(values[0].toBigDecimal().doubleValue()));
+
+        int scale = Properties.getInheritedScale(calc);
+        BigDecimal x = values[0].toBigDecimal();
+        BigDecimal tan = BigMath.tan(x, BigMath.context(scale, BigMath.integerDigits(Math.tan(x.doubleValue()))));
 
-        return new Num(tan);
+        return new Num(tan.setScale(scale, Properties.getInheritedRoundingMode(calc).getBigDecimalRound()));
     }
 
 }
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Mathematical functions on {@link BigDecimal} calculated to precision of given {@link MathContext}.
+ * <br/>
+ * Results of trigonometric functions with absolute value below 1 are accurate to precision in absolute terms, 
+ * e.g. <tt>sin(pi)</tt> is zero only to given number of decimal places.
+ * Constants <tt>pi</tt>, <tt>ln(2)</tt> and <tt>ln(10)</tt> are calculated once for largest requested precision, 
+ * and rounded for smaller precisions.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class BigMath {
+
+    /**
+     * Largest argument of {@link #exp(BigDecimal, MathContext)}, result has about 43 million digits before decimal point
+     */
+    private static final BigDecimal MAX_EXP = BigDecimal.valueOf(100000000);
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    /**
+     * Digits used in calculation above requested precision
+     */
+    public static final int GUARD_DIGITS = 3;
+
+    private static final Constant PI = new Constant() {
+        @Override
+        BigDecimal compute(MathContext mc) {
+            // Machin: pi = 16 * atan(1/5) - 4 * atan(1/239)
+            return atanInverse(5, mc).multiply(BigDecimal.valueOf(16)).subtract(atanInverse(239, mc).multiply(BigDecimal.valueOf(4)), mc);
+        }
+    };
+
+    private static final Constant LN2 = new Constant() {
+        @Override
+        BigDecimal compute(MathContext mc) {
+            // ln(2) = 2 * atanh(1/3)
+            return atanhInverse(3, mc).multiply(TWO, mc);
+        }
+    };
+
+    private static final Constant LN10 = new Constant() {
+        @Override
+        BigDecimal compute(MathContext mc) {
+            // ln(10) = 3 * ln(2) + ln(1.25) = 3 * ln(2) + 2 * atanh(1/9)
+            return LN2.get(mc).multiply(BigDecimal.valueOf(3)).add(atanhInverse(9, mc).multiply(TWO), mc);
+        }
+    };
+
+    /**
+     * Constant calculated for largest requested precision
+     */
+    private static abstract class Constant {
+        private volatile BigDecimal value;
+
+        BigDecimal get(MathContext mc) {
+            BigDecimal v = value;
+            if (v == null || v.precision() < mc.getPrecision() + GUARD_DIGITS) {
+                v = compute(new MathContext(mc.getPrecision() + 2 * GUARD_DIGITS, RoundingMode.HALF_EVEN));
+                value = v;
+            }
+            return v.round(mc);
+        }
+
+        abstract BigDecimal compute(MathContext mc);
+    }
+
+    public static BigDecimal pi(MathContext mc) {
+        return PI.get(mc);
+    }
+
+    public static BigDecimal ln2(MathContext mc) {
+        return LN2.get(mc);
+    }
+
+    public static BigDecimal ln10(MathContext mc) {
+        return LN10.get(mc);
+    }
+
+    /**
+     * Context for result with given number of decimal places
+     * 
+     * @param scale decimal places of result
+     * @param integerDigits estimated number of digits before decimal point
+     * @return
+     */
+    public static MathContext context(int scale, int integerDigits) {
+        return new MathContext(Math.max(1, Math.max(0, integerDigits) + scale + GUARD_DIGITS), RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Number of digits before decimal point of approximate value, 0 if value is below 1 or not finite
+     * 
+     * @param value
+     * @return
+     */
+    public static int integerDigits(double value) {
+        double a = Math.abs(value);
+        if (!(a >= 1) || Double.isInfinite(a))
+            return 0;
+        return (int) Math.floor(Math.log10(a)) + 1;
+    }
+
+    /**
+     * Power with whole non-negative exponent, calculated by squaring where every multiplication is rounded to given precision.
+     * 
+     * @param base
+     * @param exponent
+     * @param mc
+     * @return
+     */
+    public static BigDecimal pow(BigDecimal base, int exponent, MathContext mc) {
+        if (exponent < 0)
+            throw new IllegalArgumentException("Negative exponent " + exponent);
+
+        BigDecimal result = BigDecimal.ONE;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = result.multiply(base, mc);
+            exponent >>= 1;
+            if (exponent > 0)
+                base = base.multiply(base, mc);
+        }
+        return result;
+    }
+
+    /**
+     * Exponential function <tt>e^x</tt>
+     * 
+     * @param x
+     * @param mc
+     * @return
+     * @throws ArithmeticException if result is too large
+     */
+    public static BigDecimal exp(BigDecimal x, MathContext mc) {
+        if (x.signum() == 0)
+            return BigDecimal.ONE;
+        if (x.signum() < 0) {
+            MathContext wmc = new MathContext(mc.getPrecision() + 2, RoundingMode.HALF_EVEN);
+            return BigDecimal.ONE.divide(exp(x.negate(), wmc), mc);
+        }
+        if (x.compareTo(MAX_EXP) > 0)
+            throw new ArithmeticException("Overflow");
+
+        // e^x = (e^(x / 2^k))^(2^k), where x / 2^k < 0.5. Every squaring double relative error
+        int k = 0;
+        double dx = x.doubleValue();
+        while (dx >= 0.5) {
+            dx /= 2;
+            k++;
+        }
+        int wp = mc.getPrecision() + k * 3 / 10 + 5;
+        MathContext wmc = new MathContext(wp, RoundingMode.HALF_EVEN);
+        BigDecimal r = k > 0 ? x.divide(TWO.pow(k), wmc) : x;
+
+        // Taylor series, terms are below 1 and sum is above 1
+        BigDecimal threshold = BigDecimal.ONE.movePointLeft(wp + 1);
+        BigDecimal sum = BigDecimal.ONE;
+        BigDecimal term = BigDecimal.ONE;
+        for (int i = 1; term.compareTo(threshold) > 0; i++) {
+            term = term.multiply(r, wmc).divide(BigDecimal.valueOf(i), wmc);
+            sum = sum.add(term, wmc);
+        }
+
+        for (int i = 0; i < k; i++)
+            sum = sum.multiply(sum, wmc);
+
+        return sum.round(mc);
+    }
+
+    /**
+     * Natural logarithm
+     * 
+     * @param x
+     * @param mc
+     * @return
+     * @throws ArithmeticException if <tt>x</tt> is not positive
+     */
+    public static BigDecimal ln(BigDecimal x, MathContext mc) {
+        if (x.signum() <= 0)
+            throw new ArithmeticException("Logarithm of non positive number");
+        if (x.compareTo(BigDecimal.ONE) == 0)
+            return BigDecimal.ZERO;
+
+        // ln(x) = ln(m) + k * ln(10), where 1 <= m < 10
+        int k = x.precision() - x.scale() - 1;
+        BigDecimal m = x.movePointLeft(k);
+
+        // for m close to 1 result is close to 0, and need more digits to keep relative precision
+        BigDecimal d = m.subtract(BigDecimal.ONE);
+        int zeros = d.signum() == 0 ? 0 : Math.max(0, d.scale() - d.precision());
+        int wp = mc.getPrecision() + zeros + Integer.toString(Math.abs(k)).length() + 3;
+        MathContext wmc = new MathContext(wp, RoundingMode.HALF_EVEN);
+
+        BigDecimal result = d.signum() == 0 ? BigDecimal.ZERO : lnNewton(m, wmc);
+        if (k != 0)
+            result = result.add(ln10(wmc).multiply(BigDecimal.valueOf(k), wmc), wmc);
+
+        return result.round(mc);
+    }
+
+    /**
+     * Newton iteration <tt>y = y + 2 * (m - e^y) / (m + e^y)</tt>, which triple number of correct digits in every step
+     * 
+     * @param m value between 1 and 10
+     */
+    private static BigDecimal lnNewton(BigDecimal m, MathContext mc) {
+        BigDecimal threshold = BigDecimal.ONE.movePointLeft(mc.getPrecision());
+        BigDecimal y = new BigDecimal(Math.log(m.doubleValue()));
+        for (int i = 0; i < 100; i++) {
+            BigDecimal e = exp(y, mc);
+            BigDecimal delta = TWO.multiply(m.subtract(e), mc).divide(m.add(e), mc);
+            y = y.add(delta, mc);
+            if (delta.abs().compareTo(threshold) <= 0)
+                break;
+        }
+        return y;
+    }
+
+    /**
+     * Square root, calculated by Newton iteration which double precision in every step
+     * 
+     * @param x
+     * @param mc
+     * @return
+     * @throws ArithmeticException if <tt>x</tt> is negative
+     */
+    public static BigDecimal sqrt(BigDecimal x, MathContext mc) {
+        if (x.signum() < 0)
+            throw new ArithmeticException("Square root of negative number");
+        if (x.signum() == 0)
+            return BigDecimal.ZERO;
+
+        // x = m * 10^(2k), where m is in range of double
+        int k = (x.precision() - x.scale()) / 2;
+        BigDecimal m = x.movePointLeft(2 * k);
+
+        int target = mc.getPrecision() + 2;
+        BigDecimal y = new BigDecimal(Math.sqrt(m.doubleValue()));
+        int precision = 15;
+        while (precision < target) {
+            precision = Math.min(2 * precision, target);
+            MathContext pmc = new MathContext(precision, RoundingMode.HALF_EVEN);
+            y = y.add(m.divide(y, pmc)).divide(TWO, pmc);
+        }
+        MathContext tmc = new MathContext(target, RoundingMode.HALF_EVEN);
+        y = y.add(m.divide(y, tmc)).divide(TWO, tmc);
+
+        return y.movePointRight(k).round(mc);
+    }
+
+    /**
+     * Square root correctly rounded to given scale, also when exact value is close to half of last digit.
+     * 
+     * @param x
+     * @param scale
+     * @param roundingMode
+     * @return
+     * @throws ArithmeticException if <tt>x</tt> is negative, or if rounding mode is UNNECESSARY and result is not exact
+     */
+    public static BigDecimal sqrt(BigDecimal x, int scale, RoundingMode roundingMode) {
+        if (x.signum() < 0)
+            throw new ArithmeticException("Square root of negative number");
+
+        // approximation with guard digits is enough, unless it's close to rounding boundary
+        if (x.signum() > 0 && roundingMode != RoundingMode.UNNECESSARY) {
+            BigDecimal y = sqrt(x, context(scale, (x.precision() - x.scale() + 1) / 2));
+            BigDecimal ulp = y.ulp();
+            BigDecimal result = y.subtract(ulp).setScale(scale, roundingMode);
+            if (result.compareTo(y.add(ulp).setScale(scale, roundingMode)) == 0)
+                return result;
+        }
+
+        // sqrt(x) * 10^scale = sqrt(n), q = floor(sqrt(n)) = floor(sqrt(floor(n)))
+        BigDecimal n = x.movePointRight(2 * scale);
+        BigInteger whole = n.setScale(0, RoundingMode.FLOOR).unscaledValue();
+        BigInteger q = BigInteger.ZERO;
+        if (whole.signum() > 0) {
+            MathContext mc = new MathContext(whole.toString().length() / 2 + 3, RoundingMode.HALF_EVEN);
+            q = sqrt(new BigDecimal(whole), mc).setScale(0, RoundingMode.FLOOR).unscaledValue();
+            while (q.multiply(q).compareTo(whole) > 0)
+                q = q.subtract(BigInteger.ONE);
+            while (q.add(BigInteger.ONE).pow(2).compareTo(whole) <= 0)
+                q = q.add(BigInteger.ONE);
+        }
+
+        boolean exact = new BigDecimal(q.multiply(q)).compareTo(n) == 0;
+        boolean up = false;
+        switch (roundingMode) {
+            case UP:
+            case CEILING:
+                up = !exact;
+                break;
+            case HALF_UP:
+            case HALF_DOWN:
+            case HALF_EVEN:
+                // compare sqrt(n) with q + 1/2, as 4n with (2q + 1)^2
+                BigInteger half = q.shiftLeft(1).add(BigInteger.ONE);
+                int c = n.multiply(BigDecimal.valueOf(4)).compareTo(new BigDecimal(half.multiply(half)));
+                if (c == 0)
+                    up = roundingMode == RoundingMode.HALF_UP || (roundingMode == RoundingMode.HALF_EVEN && q.testBit(0));
+                else
+                    up = c > 0;
+                break;
+            case UNNECESSARY:
+                if (!exact)
+                    throw new ArithmeticException("Rounding necessary");
+                break;
+            default:
+                break;
+        }
+
+        return new BigDecimal(up ? q.add(BigInteger.ONE) : q, scale);
+    }
+
+    public static BigDecimal sin(BigDecimal x, MathContext mc) {
+        return sinCos(x, mc, 0);
+    }
+
+    public static BigDecimal cos(BigDecimal x, MathContext mc) {
+        return sinCos(x, mc, 1);
+    }
+
+    /**
+     * @param x
+     * @param mc
+     * @return
+     * @throws ArithmeticException if cosine of <tt>x</tt> is zero at given precision
+     */
+    public static BigDecimal tan(BigDecimal x, MathContext mc) {
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        BigDecimal cos = cos(x, wmc);
+        // error of small cosine is large relative error of result
+        int extra = cos.precision() - cos.scale() < 0 ? cos.scale() - cos.precision() : 0;
+        if (cos.signum() == 0 || extra >= mc.getPrecision())
+            throw new ArithmeticException("Tangent of " + x + " is infinite");
+        if (extra > 0) {
+            wmc = new MathContext(wmc.getPrecision() + extra, RoundingMode.HALF_EVEN);
+            cos = cos(x, wmc);
+        }
+        return sin(x, wmc).divide(cos, mc);
+    }
+
+    /**
+     * Sine (<tt>quadrant</tt> 0) or cosine (<tt>quadrant</tt> 1).
+     * Argument is reduced to <tt>x = q * pi / 2 + r</tt>, where <tt>|r| &lt;= pi / 4</tt>, and result is sine or cosine of <tt>r</tt>
+     */
+    private static BigDecimal sinCos(BigDecimal x, MathContext mc, int quadrant) {
+        int integerDigits = Math.max(0, x.precision() - x.scale());
+        MathContext wmc = new MathContext(mc.getPrecision() + integerDigits + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+
+        BigDecimal halfPi = pi(wmc).divide(TWO, wmc);
+        BigInteger q = x.divide(halfPi, 0, RoundingMode.HALF_EVEN).toBigInteger();
+        BigDecimal r = x.subtract(halfPi.multiply(new BigDecimal(q)), wmc);
+
+        // sin(r + q * pi / 2), cos(x) = sin(x + pi / 2)
+        int n = q.add(BigInteger.valueOf(quadrant)).mod(BigInteger.valueOf(4)).intValue();
+        BigDecimal result = null;
+        if (n == 0)
+            result = sinSeries(r, wmc);
+        else if (n == 1)
+            result = cosSeries(r, wmc);
+        else if (n == 2)
+            result = sinSeries(r, wmc).negate();
+        else
+            result = cosSeries(r, wmc).negate();
+
+        return result.round(mc);
+    }
+
+    private static BigDecimal sinSeries(BigDecimal x, MathContext mc) {
+        BigDecimal threshold = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+        BigDecimal x2 = x.multiply(x, mc);
+        BigDecimal term = x;
+        BigDecimal sum = x;
+        for (int i = 1; term.abs().compareTo(threshold) > 0; i++) {
+            term = term.multiply(x2, mc).divide(BigDecimal.valueOf((long) (2 * i) * (2 * i + 1)), mc).negate();
+            sum = sum.add(term, mc);
+        }
+        return sum;
+    }
+
+    private static BigDecimal cosSeries(BigDecimal x, MathContext mc) {
+        BigDecimal threshold = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+        BigDecimal x2 = x.multiply(x, mc);
+        BigDecimal term = BigDecimal.ONE;
+        BigDecimal sum = BigDecimal.ONE;
+        for (int i = 1; term.abs().compareTo(threshold) > 0; i++) {
+            term = term.multiply(x2, mc).divide(BigDecimal.valueOf((long) (2 * i - 1) * (2 * i)), mc).negate();
+            sum = sum.add(term, mc);
+        }
+        return sum;
+    }
+
+    /**
+     * Arc tangent, argument is reduced with <tt>atan(x) = pi / 2 - atan(1 / x)</tt> and <tt>atan(x) = 2 * atan(x / (1 + sqrt(1 + x^2)))</tt>
+     * 
+     * @param x
+     * @param mc
+     * @return
+     */
+    public static BigDecimal atan(BigDecimal x, MathContext mc) {
+        if (x.signum() == 0)
+            return BigDecimal.ZERO;
+        if (x.signum() < 0)
+            return atan(x.negate(), mc).negate();
+
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        if (x.compareTo(BigDecimal.ONE) > 0) {
+            BigDecimal halfPi = pi(wmc).divide(TWO, wmc);
+            return halfPi.subtract(atan(BigDecimal.ONE.divide(x, wmc), wmc), mc);
+        }
+
+        int k = 0;
+        BigDecimal limit = new BigDecimal("0.1");
+        while (x.compareTo(limit) > 0) {
+            x = x.divide(BigDecimal.ONE.add(sqrt(BigDecimal.ONE.add(x.multiply(x, wmc)), wmc)), wmc);
+            k++;
+        }
+
+        BigDecimal threshold = x.movePointLeft(wmc.getPrecision() + 1);
+        BigDecimal x2 = x.multiply(x, wmc);
+        BigDecimal power = x;
+        BigDecimal sum = x;
+        BigDecimal term = x;
+        for (int i = 1; term.abs().compareTo(threshold) > 0; i++) {
+            power = power.multiply(x2, wmc).negate();
+            term = power.divide(BigDecimal.valueOf(2 * i + 1), wmc);
+            sum = sum.add(term, wmc);
+        }
+
+        return sum.multiply(TWO.pow(k)).round(mc);
+    }
+
+    /**
+     * @param x
+     * @param mc
+     * @return
+     * @throws ArithmeticException if <tt>|x| &gt; 1</tt>
+     */
+    public static BigDecimal asin(BigDecimal x, MathContext mc) {
+        int c = x.abs().compareTo(BigDecimal.ONE);
+        if (c > 0)
+            throw new ArithmeticException("Arc sine of " + x);
+
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        if (c == 0) {
+            BigDecimal halfPi = pi(wmc).divide(TWO, mc);
+            return x.signum() < 0 ? halfPi.negate() : halfPi;
+        }
+
+        // asin(x) = atan(x / sqrt(1 - x^2)), where 1 - x^2 is exact
+        BigDecimal y = x.divide(sqrt(BigDecimal.ONE.subtract(x.multiply(x)), wmc), wmc);
+        return atan(y, mc);
+    }
+
+    /**
+     * @param x
+     * @param mc
+     * @return
+     * @throws ArithmeticException if <tt>|x| &gt; 1</tt>
+     */
+    public static BigDecimal acos(BigDecimal x, MathContext mc) {
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        BigDecimal halfPi = pi(wmc).divide(TWO, wmc);
+        return halfPi.subtract(asin(x, wmc), mc);
+    }
+
+    public static BigDecimal sinh(BigDecimal x, MathContext mc) {
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        BigDecimal e = exp(x, wmc);
+        return e.subtract(BigDecimal.ONE.divide(e, wmc)).divide(TWO, mc);
+    }
+
+    public static BigDecimal cosh(BigDecimal x, MathContext mc) {
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        BigDecimal e = exp(x, wmc);
+        return e.add(BigDecimal.ONE.divide(e, wmc)).divide(TWO, mc);
+    }
+
+    public static BigDecimal tanh(BigDecimal x, MathContext mc) {
+        if (x.signum() < 0)
+            return tanh(x.negate(), mc).negate();
+        // tanh(x) = 1 - 2 / (e^(2x) + 1), which is 1 at given precision when e^(2x) has more digits than precision
+        if (x.compareTo(BigDecimal.valueOf(1.2 * (mc.getPrecision() + 1))) > 0)
+            return BigDecimal.ONE;
+
+        MathContext wmc = new MathContext(mc.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        BigDecimal e = exp(x.multiply(TWO), wmc);
+        return e.subtract(BigDecimal.ONE).divide(e.add(BigDecimal.ONE), mc);
+    }
+
+    /**
+     * <tt>atan(1 / n)</tt> as series of <tt>(-1)^k / ((2k + 1) * n^(2k + 1))</tt>
+     */
+    private static BigDecimal atanInverse(int n, MathContext mc) {
+        return inverseSeries(n, mc, true);
+    }
+
+    /**
+     * <tt>atanh(1 / n)</tt> as series of <tt>1 / ((2k + 1) * n^(2k + 1))</tt>
+     */
+    private static BigDecimal atanhInverse(int n, MathContext mc) {
+        return inverseSeries(n, mc, false);
+    }
+
+    private static BigDecimal inverseSeries(int n, MathContext mc, boolean alternate) {
+        BigDecimal threshold = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+        BigDecimal n2 = BigDecimal.valueOf((long) n * n);
+        BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), mc);
+        BigDecimal sum = power;
+        for (int k = 1; power.compareTo(threshold) > 0; k++) {
+            power = power.divide(n2, mc);
+            BigDecimal term = power.divide(BigDecimal.valueOf(2 * k + 1), mc);
+            sum = alternate && (k & 1) == 1 ? sum.subtract(term, mc) : sum.add(term, mc);
+        }
+        return sum;
+    }
+
+    /**
+     * Approximate decimal logarithm of positive number, also for numbers outside of range of double
+     * 
+     * @param x
+     * @return
+     */
+    public static double log10(BigDecimal x) {
+        int k = x.precision() - x.scale() - 1;
+        return k + Math.log10(x.movePointLeft(k).doubleValue());
+    }
+}
@@ -16,7 +16,7 @@
  
 package org.jdice.calc.internal;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Calculator;
@@ -33,7 +33,7 @@ import org.jdice.calc.Operator;
  */
 public class BindExtensionProvider {
     
-    private static HashMap<Class, Class<? extends Extension>> bind = new HashMap<Class, Class<? extends Extension>>();
+    private static ConcurrentHashMap<Class, Class<? extends Extension>> bind = new ConcurrentHashMap<Class, Class<? extends Extension>>();
     
     /**
      * Bind implemented interface used in {@link AbstractCalculator} instances with concrete implementation of {@link Operator} or {@link Function}
@@ -16,8 +16,8 @@
  
 package org.jdice.calc.internal;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -26,15 +26,15 @@ import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
 
 /**
- * List based on LinkedList that can hold object used by JCalc API.
- * Used for holding infix and postfix expressions 
+ * List based on ArrayList that can hold object used by JCalc API.
+ * Used for holding infix and postfix expressions, which are built by appending and read by iterating 
  * 
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
  */
 public class CList {
 
-    private LinkedList<Object> list = new LinkedList<Object>();
+    private ArrayList<Object> list = new ArrayList<Object>();
     private CListListener listener;
 
     public CList() {
@@ -153,6 +153,7 @@ public class CList {
     }
 
     public void clear() {
+        change();
         list.clear();
     }
 
@@ -168,14 +169,17 @@ public class CList {
     }
 
     public Object set(int index, Object element) {
+        change();
         return list.set(index, element);
     }
 
     public void add(int index, Object element) {
+        change();
         list.add(index, element);
     }
 
     public Object remove(int index) {
+        change();
         return list.remove(index);
     }
 
@@ -19,14 +19,17 @@ package org.jdice.calc.internal;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
 import org.jdice.calc.CalculatorException;
 import org.jdice.calc.Function;
+import org.jdice.calc.Num;
 import org.jdice.calc.NumConverter;
 import org.jdice.calc.Operator;
 import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
 import org.jdice.calc.SingletonExtension;
 
 /**
@@ -40,6 +43,8 @@ public class CacheExtension {
     private static volatile UseExtension cacheData = new UseExtension();
     private static volatile HashMap<Class, NumConverter> converterCache = new HashMap<Class, NumConverter>();
     private static volatile boolean numConverterPropLoaded = false;
+    private static final MemoCache<MemoCache.Key, Num> functionResultCache = new MemoCache<MemoCache.Key, Num>(MemoCache.DEFAULT_MAX_SIZE);
+    private static final MemoCache<MemoCache.Key, BigDecimal> operatorResultCache = new MemoCache<MemoCache.Key, BigDecimal>(MemoCache.DEFAULT_MAX_SIZE);
 
     public static void setOperator(Class<? extends Operator> operatorClass) {
         cacheData.registerOperator(operatorClass);
@@ -77,6 +82,24 @@ public class CacheExtension {
         return cacheData.getFunction(functionClass);
     }
 
+    /**
+     * Results of functions annotated with {@link PureFunction}, shared by all calculators
+     * 
+     * @return
+     */
+    public static MemoCache<MemoCache.Key, Num> getFunctionResultCache() {
+        return functionResultCache;
+    }
+
+    /**
+     * Results of expensive operations of built-in operators, e.g. power with fractional exponent, shared by all calculators
+     * 
+     * @return
+     */
+    public static MemoCache<MemoCache.Key, BigDecimal> getOperatorResultCache() {
+        return operatorResultCache;
+    }
+
     public static HashMap<Class<? extends Function>, Function> getFunctions() {
         return cacheData.getFunctions();
     }
@@ -101,7 +124,7 @@ public class CacheExtension {
                     
                     if (nc != null) {
                         if (converterClass.isAnnotationPresent(SingletonExtension.class))
-                            converterCache.put(customClass, nc);
+                            putNumConverter(customClass, nc);
                     }
                 }
             }
@@ -115,7 +138,7 @@ public class CacheExtension {
      * @param converter define instance which knows how to convert <tt>customClass</tt>
      */
     public static NumConverter setNumConverter(Class customClass, NumConverter converter) {
-		converterCache.put(customClass, converter);
+		putNumConverter(customClass, converter);
 		return converter;
     }
 
@@ -135,7 +158,7 @@ public class CacheExtension {
         	    synchronized (convertClass) {
     				nc = convertClass.newInstance();
     				if (convertClass.isAnnotationPresent(SingletonExtension.class))
-    					converterCache.put(customClass, nc);
+    					putNumConverter(customClass, nc);
         	    }
 			} catch (Exception e) {
 				throw new CalculatorException(e);
@@ -148,6 +171,15 @@ public class CacheExtension {
         return converterCache;
     }
 
+    /**
+     * Copy on write, so converters can be read from multiple threads without locking
+     */
+    private static synchronized void putNumConverter(Class customClass, NumConverter converter) {
+        HashMap<Class, NumConverter> converters = new HashMap<Class, NumConverter>(converterCache);
+        converters.put(customClass, converter);
+        converterCache = converters;
+    }
+
     static void loadNumConvertersFromPropertiesFile(String absolutePath) {
         if (absolutePath == null) {
         	numConverterPropLoaded = true;
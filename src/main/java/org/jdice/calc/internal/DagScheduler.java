@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdice.calc.CalculatorException;
+
+/**
+ * Evaluate nodes of {@link DependencyGraph} in parallel.
+ * <br/>
+ * Node is submitted as soon as all its dependencies are evaluated. When more nodes are ready than there are threads,
+ * nodes on longest remaining path (critical path) are evaluated first.
+ *
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class DagScheduler {
+
+    /**
+     * Callback which evaluate single node
+     */
+    public interface Evaluator {
+
+        void evaluate(String name);
+
+        /**
+         * Estimated cost of evaluation, in any unit which is same for all nodes
+         */
+        long getCost(String name);
+    }
+
+    private final DependencyGraph graph;
+    private final Evaluator evaluator;
+
+    public DagScheduler(DependencyGraph graph, Evaluator evaluator) {
+        this.graph = graph;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Evaluate nodes using pool with given number of threads, created only for this evaluation.
+     *
+     * @param order nodes in topological order
+     * @param threads
+     */
+    public void execute(List<String> order, int threads) {
+        if (threads <= 1 || order.size() <= 1) {
+            for (String name : order)
+                evaluator.evaluate(name);
+            return;
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+        try {
+            execute(order, executor);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Evaluate nodes with given executor. Method returns when all nodes are evaluated.
+     * Executor with priority queue will run nodes on critical path first.
+     * If executor reject node, nodes which are not evaluated yet are skipped and exception of executor is thrown.
+     *
+     * @param order nodes in topological order
+     * @param executor
+     */
+    public void execute(List<String> order, Executor executor) {
+        int size = order.size();
+        if (size == 0)
+            return;
+
+        HashMap<String, Integer> index = new HashMap<String, Integer>(size * 2);
+        for (String name : order)
+            index.put(name, index.size());
+
+        // dependencies and dependents inside given nodes, resolved before any node is evaluated
+        Job[] jobs = new Job[size];
+        for (int i = 0; i < size; i++)
+            jobs[i] = new Job(order.get(i));
+
+        Context context = new Context(jobs.length, executor);
+        for (int i = 0; i < size; i++) {
+            Job job = jobs[i];
+            job.context = context;
+
+            int pending = 0;
+            for (String dependency : graph.getDependencies(job.name)) {
+                if (index.containsKey(dependency))
+                    pending++;
+            }
+            job.pending.set(pending);
+
+            int d = 0;
+            job.dependents = new Job[countDependents(job.name, index)];
+            for (String dependent : graph.getDependents(job.name)) {
+                Integer di = index.get(dependent);
+                if (di != null)
+                    job.dependents[d++] = jobs[di];
+            }
+        }
+
+        // critical path, dependents are always after node in topological order
+        for (int i = size - 1; i >= 0; i--) {
+            Job job = jobs[i];
+            long max = 0;
+            for (Job dependent : job.dependents)
+                max = Math.max(max, dependent.height);
+            job.height = Math.max(1, evaluator.getCost(job.name)) + max;
+        }
+
+        // find ready nodes before submitting any, running nodes change pending counters
+        List<Job> ready = new ArrayList<Job>();
+        for (Job job : jobs) {
+            if (job.pending.get() == 0)
+                ready.add(job);
+        }
+        for (Job job : ready)
+            context.submit(job);
+
+        try {
+            context.done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CalculatorException(e);
+        }
+
+        RuntimeException failure = context.failure.get();
+        if (failure != null)
+            throw failure;
+    }
+
+    private int countDependents(String name, HashMap<String, Integer> index) {
+        int count = 0;
+        for (String dependent : graph.getDependents(name)) {
+            if (index.containsKey(dependent))
+                count++;
+        }
+        return count;
+    }
+
+    private static class Context {
+        private final CountDownLatch done;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        private final Executor executor;
+
+        private Context(int count, Executor executor) {
+            this.done = new CountDownLatch(count);
+            this.executor = executor;
+        }
+
+        private void submit(Job job) {
+            try {
+                executor.execute(job);
+            }
+            catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                skip(job);
+            }
+        }
+
+        /**
+         * Count rejected job and jobs which wait only for it as done, without evaluating them
+         */
+        private void skip(Job job) {
+            LinkedList<Job> skipped = new LinkedList<Job>();
+            skipped.add(job);
+            while (!skipped.isEmpty()) {
+                Job current = skipped.removeFirst();
+                for (Job dependent : current.dependents) {
+                    if (dependent.pending.decrementAndGet() == 0)
+                        skipped.add(dependent);
+                }
+                done.countDown();
+            }
+        }
+    }
+
+    private class Job implements Runnable, Comparable<Job> {
+        private final String name;
+        private final AtomicInteger pending = new AtomicInteger();
+        private Job[] dependents;
+        private long height;
+        private Context context;
+
+        private Job(String name) {
+            this.name = name;
+        }
+
+        public void run() {
+            try {
+                if (context.failure.get() == null)
+                    evaluator.evaluate(name);
+            }
+            catch (RuntimeException e) {
+                context.failure.compareAndSet(null, e);
+            }
+            finally {
+                for (Job dependent : dependents) {
+                    if (dependent.pending.decrementAndGet() == 0)
+                        context.submit(dependent);
+                }
+                context.done.countDown();
+            }
+        }
+
+        public int compareTo(Job o) {
+            return height > o.height ? -1 : (height < o.height ? 1 : 0);
+        }
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.jdice.calc.CalculatorException;
+
+/**
+ * Directed acyclic graph of named values, where edge A -&gt; B means that B depends on A.
+ * <br/>
+ * Graph is maintained incrementally. Adding or replacing dependencies of one node touch only edges of that node,
+ * and cycles are rejected before graph is changed.
+ *
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class DependencyGraph {
+
+    private final LinkedHashMap<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+    private static class Node {
+        private final String name;
+        private final LinkedHashSet<String> dependencies = new LinkedHashSet<String>();
+        private final LinkedHashSet<String> dependents = new LinkedHashSet<String>();
+        /** node has own dependencies set, even if it has no dependencies (e.g. constant formula) */
+        private boolean formula;
+
+        private Node(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Replace dependencies of given node. Missing nodes are created.
+     *
+     * @param name
+     * @param dependencies
+     * @return names of previous dependencies which are no longer used by any node, and are removed from graph
+     * @throws CalculatorException if new dependencies create cycle
+     */
+    public List<String> setDependencies(String name, Collection<String> dependencies) {
+        for (String dependency : dependencies) {
+            if (name.equals(dependency) || dependsOn(dependency, name))
+                throw new CalculatorException("Circular reference between '" + name + "' and '" + dependency + "'");
+        }
+
+        Node node = getOrCreate(name);
+        List<String> previous = new ArrayList<String>(node.dependencies);
+        clearDependencies(node);
+        node.formula = true;
+
+        for (String dependency : dependencies) {
+            Node dNode = getOrCreate(dependency);
+            node.dependencies.add(dependency);
+            dNode.dependents.add(name);
+        }
+
+        return removeUnused(previous);
+    }
+
+    /**
+     * Remove all dependencies of given node. Node stays in graph while other nodes depends on it.
+     *
+     * @param name
+     * @return names of nodes which was only used by removed node, and are removed from graph
+     */
+    public List<String> removeDependencies(String name) {
+        List<String> removed = new ArrayList<String>();
+        Node node = nodes.get(name);
+        if (node == null)
+            return removed;
+
+        List<String> previous = new ArrayList<String>(node.dependencies);
+        clearDependencies(node);
+        node.formula = false;
+        removed.addAll(removeUnused(previous));
+
+        if (node.dependents.isEmpty()) {
+            nodes.remove(name);
+            removed.add(name);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Remove values which are no longer used by any node. Formulas stay in graph, even without dependencies.
+     */
+    private List<String> removeUnused(List<String> names) {
+        List<String> removed = new ArrayList<String>();
+        for (String name : names) {
+            Node node = nodes.get(name);
+            if (node != null && !node.formula && node.dependents.isEmpty()) {
+                nodes.remove(name);
+                removed.add(name);
+            }
+        }
+        return removed;
+    }
+
+    private void clearDependencies(Node node) {
+        for (String dependency : node.dependencies) {
+            Node dNode = nodes.get(dependency);
+            if (dNode != null)
+                dNode.dependents.remove(node.name);
+        }
+        node.dependencies.clear();
+    }
+
+    private Node getOrCreate(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            node = new Node(name);
+            nodes.put(name, node);
+        }
+        return node;
+    }
+
+    public boolean contains(String name) {
+        return nodes.containsKey(name);
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    public Set<String> getDependencies(String name) {
+        Node node = nodes.get(name);
+        if (node == null)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(node.dependencies);
+    }
+
+    public Set<String> getDependents(String name) {
+        Node node = nodes.get(name);
+        if (node == null)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(node.dependents);
+    }
+
+    /**
+     * Check if <tt>name</tt> directly or transitively depends on <tt>other</tt>
+     *
+     * @param name
+     * @param other
+     * @return
+     */
+    public boolean dependsOn(String name, String other) {
+        Node node = nodes.get(name);
+        if (node == null)
+            return false;
+
+        HashSet<String> visited = new HashSet<String>();
+        LinkedList<Node> open = new LinkedList<Node>();
+        open.add(node);
+        while (!open.isEmpty()) {
+            Node current = open.removeFirst();
+            for (String dependency : current.dependencies) {
+                if (dependency.equals(other))
+                    return true;
+                if (visited.add(dependency))
+                    open.add(nodes.get(dependency));
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Transitive dependents of changed nodes in topological order, so every node is listed after all nodes it depends on.
+     *
+     * @param changed
+     * @param includeChanged if TRUE changed nodes are part of result
+     * @return
+     */
+    public List<String> getAffected(Collection<String> changed, boolean includeChanged) {
+        LinkedList<String> order = new LinkedList<String>();
+        HashSet<String> visited = new HashSet<String>();
+
+        for (String name : changed) {
+            if (nodes.containsKey(name))
+                visit(name, visited, order);
+        }
+
+        if (!includeChanged)
+            order.removeAll(changed);
+
+        return order;
+    }
+
+    /**
+     * All nodes in topological order
+     *
+     * @return
+     */
+    public List<String> getTopologicalOrder() {
+        LinkedList<String> order = new LinkedList<String>();
+        HashSet<String> visited = new HashSet<String>();
+
+        for (Node node : nodes.values()) {
+            if (node.dependencies.isEmpty())
+                visit(node.name, visited, order);
+        }
+
+        return order;
+    }
+
+    /**
+     * Depth first walk over dependents, every node is prepended to order after all its dependents are visited (reverse postorder).
+     */
+    private void visit(String start, HashSet<String> visited, LinkedList<String> order) {
+        if (!visited.add(start))
+            return;
+
+        LinkedList<Iterator<String>> path = new LinkedList<Iterator<String>>();
+        LinkedList<String> pathNames = new LinkedList<String>();
+        path.addLast(nodes.get(start).dependents.iterator());
+        pathNames.addLast(start);
+
+        while (!path.isEmpty()) {
+            Iterator<String> it = path.getLast();
+            if (it.hasNext()) {
+                String next = it.next();
+                if (visited.add(next)) {
+                    path.addLast(nodes.get(next).dependents.iterator());
+                    pathNames.addLast(next);
+                }
+            }
+            else {
+                path.removeLast();
+                order.addFirst(pathNames.removeLast());
+            }
+        }
+    }
+
+}
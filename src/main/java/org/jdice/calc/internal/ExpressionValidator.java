@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import org.jdice.calc.ErrorCode;
+import org.jdice.calc.Function;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Validation;
+
+/**
+ * Check if infix expression can be parsed and calculated, without creating infix or postfix expression.
+ * <br/>
+ * Expression is read once from left to right, and no {@link org.jdice.calc.Num} is created. 
+ * Rules are same as rules of {@link InfixParser} and {@link PostfixCalculator}:
+ * <ul>
+ * <li>every operator has left and right operand</li>
+ * <li>unary sign is allowed before number, or at start of expression, bracket or function argument</li>
+ * <li>function has at least one argument, and at most {@link Function#getFunctionAttributes()} arguments</li>
+ * </ul>
+ * Variables are not checked, expression is valid for any values of variables.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class ExpressionValidator {
+
+    private final UseExtension usedExtensions;
+    private final Properties properties;
+
+    // open brackets, function of bracket or null for bracket without function
+    private Function[] functions = new Function[8];
+    private int[] arguments = new int[8];
+    private int[] positions = new int[8];
+    private int depth;
+
+    public ExpressionValidator(UseExtension usedExtensions, Properties properties) {
+        this.usedExtensions = usedExtensions;
+        this.properties = properties;
+    }
+
+    /**
+     * Check if validator is created for given extensions and properties
+     */
+    public boolean isPrepared(UseExtension usedExtensions, Properties properties) {
+        return this.usedExtensions == usedExtensions && this.properties == properties;
+    }
+
+    public Validation validate(String expression) {
+        char separator = properties.getInputDecimalSeparator();
+        int length = expression.length();
+        depth = 0;
+        int inFunction = 0; // comma inside of function separate arguments
+        boolean operand = true; // operand is expected
+        boolean start = true; // start of expression, bracket or argument
+        boolean signed = false; // unary sign before expected operand
+
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            // same order as in parser: number, operator, bracket, name
+            int end = InfixParser.scanNumber(expression, i, separator, inFunction > 0);
+            if (end != -1) {
+                if (!operand)
+                    return new Validation(ErrorCode.MISSING_OPERATOR, i, expression.substring(i, end));
+                operand = false;
+                start = false;
+                signed = false;
+                i = end;
+                continue;
+            }
+
+            Operator operator = InfixParser.findOperator(usedExtensions, expression, i);
+            if (operator != null) {
+                String symbol = operator.getSymbol();
+                if (!operand) {
+                    operand = true;
+                    start = false;
+                }
+                else if (!signed && InfixParser.isUnary(operator, start, expression, i + symbol.length(), separator, inFunction > 0)) {
+                    signed = true;
+                }
+                else {
+                    return new Validation(ErrorCode.MISSING_OPERAND, i, symbol);
+                }
+                i += symbol.length();
+                continue;
+            }
+
+            if (c == '(') {
+                if (!operand)
+                    return new Validation(ErrorCode.MISSING_OPERATOR, i, "(");
+                open(null, i);
+                start = true;
+                signed = false;
+                i++;
+                continue;
+            }
+
+            if (c == ')') {
+                if (depth == 0)
+                    return new Validation(ErrorCode.INVALID_EXPRESSION, i, ")");
+                Function function = functions[depth - 1];
+                if (operand) {
+                    if (function != null && start && !signed && arguments[depth - 1] == 0)
+                        return new Validation(ErrorCode.INVALID_ARGUMENTS, positions[depth - 1], function.getSymbol());
+                    return new Validation(ErrorCode.MISSING_OPERAND, i, ")");
+                }
+                if (function != null) {
+                    int max = function.getFunctionAttributes();
+                    if (max != 0 && arguments[depth - 1] + 1 > max)
+                        return new Validation(ErrorCode.INVALID_ARGUMENTS, positions[depth - 1], function.getSymbol());
+                    inFunction--;
+                }
+                functions[--depth] = null;
+                operand = false;
+                start = false;
+                i++;
+                continue;
+            }
+
+            if (c == ',' && depth > 0 && functions[depth - 1] != null) {
+                if (operand)
+                    return new Validation(ErrorCode.MISSING_OPERAND, i, ",");
+                arguments[depth - 1]++;
+                operand = true;
+                start = true;
+                signed = false;
+                i++;
+                continue;
+            }
+
+            if (InfixParser.isLetter(c)) {
+                end = i;
+                while (end < length && InfixParser.isLetterOrDigit(expression.charAt(end)))
+                    end++;
+                int next = skipSpaces(expression, end);
+                if (next < length && expression.charAt(next) == '(') {
+                    String name = expression.substring(i, end);
+                    Function function = InfixParser.findFunction(usedExtensions, name);
+                    if (function == null)
+                        return new Validation(ErrorCode.UNKNOWN_SYMBOL, i, name);
+                    if (!operand)
+                        return new Validation(ErrorCode.MISSING_OPERATOR, i, name);
+                    open(function, i);
+                    inFunction++;
+                    start = true;
+                    signed = false;
+                    i = next + 1;
+                    continue;
+                }
+
+                // variable name has only letters
+                end = i;
+                while (end < length && InfixParser.isLetter(expression.charAt(end)))
+                    end++;
+                if (!operand)
+                    return new Validation(ErrorCode.MISSING_OPERATOR, i, expression.substring(i, end));
+                operand = false;
+                start = false;
+                signed = false;
+                i = end;
+                continue;
+            }
+
+            return new Validation(ErrorCode.UNKNOWN_SYMBOL, i, String.valueOf(c));
+        }
+
+        if (operand)
+            return new Validation(ErrorCode.MISSING_OPERAND, length, null);
+        if (depth > 0) {
+            Function function = functions[depth - 1];
+            return new Validation(ErrorCode.INVALID_EXPRESSION, positions[depth - 1], function != null ? function.getSymbol() : "(");
+        }
+        return Validation.VALID;
+    }
+
+    private void open(Function function, int position) {
+        if (depth == functions.length) {
+            int size = depth * 2;
+            Function[] f = new Function[size];
+            System.arraycopy(functions, 0, f, 0, depth);
+            functions = f;
+            int[] a = new int[size];
+            System.arraycopy(arguments, 0, a, 0, depth);
+            arguments = a;
+            int[] p = new int[size];
+            System.arraycopy(positions, 0, p, 0, depth);
+            positions = p;
+        }
+        functions[depth] = function;
+        arguments[depth] = 0;
+        positions[depth] = position;
+        depth++;
+    }
+
+    private static int skipSpaces(String expression, int i) {
+        while (i < expression.length() && Character.isWhitespace(expression.charAt(i)))
+            i++;
+        return i;
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+/**
+ * Fast double precision approximations of functions, used by calculator with fast math mode.
+ * <br/>
+ * Maximum error against exact result, measured on random arguments against {@link BigMath} (see <tt>FastMathBenchmark</tt> in tests):
+ * <ul>
+ * <li><tt>sin</tt>, <tt>cos</tt>: 0.82 ulp for <tt>|x| &lt; 100000</tt>, larger arguments use {@link Math}</li>
+ * <li><tt>exp</tt>: 1.16 ulp</li>
+ * <li><tt>log</tt>: 1.15 ulp</li>
+ * <li><tt>sqrt</tt>: correctly rounded, same as {@link Math#sqrt(double)}</li>
+ * </ul>
+ * <tt>tan</tt>, <tt>sinh</tt>, <tt>cosh</tt> and <tt>tanh</tt> are calculated from these functions, and add error of few arithmetic operations.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class FastMath {
+
+    /**
+     * Largest argument of sin and cos reduced with 3 part pi / 2
+     */
+    private static final double MAX_REDUCED = 100000;
+
+    private static final double TWO_OVER_PI = 6.36619772367581382433e-01;
+    // pi / 2 = PIO2_1 + PIO2_2 + PIO2_3, where first two parts have 33 bits
+    private static final double PIO2_1 = 1.57079632673412561417e+00;
+    private static final double PIO2_2 = 6.07710050630396597660e-11;
+    private static final double PIO2_3 = 2.02226624879595063154e-21;
+
+    private static final double S1 = -1.66666666666666324348e-01;
+    private static final double S2 = 8.33333333332248946124e-03;
+    private static final double S3 = -1.98412698298579493134e-04;
+    private static final double S4 = 2.75573137070700676789e-06;
+    private static final double S5 = -2.50507602534068634195e-08;
+    private static final double S6 = 1.58969099521155010221e-10;
+
+    private static final double C1 = 4.16666666666666019037e-02;
+    private static final double C2 = -1.38888888888741095749e-03;
+    private static final double C3 = 2.48015872894767294178e-05;
+    private static final double C4 = -2.75573143513906633035e-07;
+    private static final double C5 = 2.08757232129817482790e-09;
+    private static final double C6 = -1.13596475577881948265e-11;
+
+    // ln(2) = LN2_HI + LN2_LO, where LN2_HI has 32 bits
+    private static final double LN2_HI = 6.93147180369123816490e-01;
+    private static final double LN2_LO = 1.90821492927058770002e-10;
+
+    private static final int EXP_BITS = 5;
+    private static final int EXP_SIZE = 1 << EXP_BITS;
+    private static final double EXP_N_OVER_LN2 = EXP_SIZE / Math.log(2);
+    private static final double EXP_MAX = 709.782712893383973096;
+    private static final double EXP_MIN = -745.13321910194110842;
+    /** 2^(j / 32) */
+    private static final double[] EXP_TABLE = new double[EXP_SIZE];
+
+    private static final int LOG_BITS = 7;
+    private static final int LOG_SIZE = 1 << LOG_BITS;
+    /** center of interval j: 1 + (j + 0.5) / 128, its inverse and logarithm */
+    private static final double[] LOG_C = new double[LOG_SIZE];
+    private static final double[] LOG_INV_C = new double[LOG_SIZE];
+    private static final double[] LOG_LOG_C = new double[LOG_SIZE];
+    /** first interval above sqrt(2), where logarithm of c / 2 is used, so exponent is 0 for x between 0.707 and 1.414 */
+    private static final int LOG_HALF_INDEX;
+    private static final double TWO_54 = 1.80143985094819840000e+16;
+
+    static {
+        for (int j = 0; j < EXP_SIZE; j++)
+            EXP_TABLE[j] = StrictMath.pow(2, (double) j / EXP_SIZE);
+
+        int half = LOG_SIZE;
+        for (int j = LOG_SIZE - 1; j >= 0; j--) {
+            LOG_C[j] = 1 + (j + 0.5) / LOG_SIZE;
+            LOG_INV_C[j] = 1 / LOG_C[j];
+            if (LOG_C[j] > Math.sqrt(2)) {
+                LOG_LOG_C[j] = StrictMath.log(LOG_C[j] / 2);
+                half = j;
+            }
+            else
+                LOG_LOG_C[j] = StrictMath.log(LOG_C[j]);
+        }
+        LOG_HALF_INDEX = half;
+    }
+
+    public static double sin(double x) {
+        if (!(Math.abs(x) < MAX_REDUCED))
+            return Math.sin(x);
+        return sinCos(x, 0);
+    }
+
+    public static double cos(double x) {
+        if (!(Math.abs(x) < MAX_REDUCED))
+            return Math.cos(x);
+        return sinCos(x, 1);
+    }
+
+    public static double tan(double x) {
+        return sin(x) / cos(x);
+    }
+
+    /**
+     * Sine (<tt>quadrant</tt> 0) or cosine (<tt>quadrant</tt> 1) of <tt>x = n * pi / 2 + r</tt>, where <tt>|r| &lt;= pi / 4</tt>
+     */
+    private static double sinCos(double x, int quadrant) {
+        int n = (int) Math.rint(x * TWO_OVER_PI);
+
+        // r = hi + lo, products with first two parts of pi / 2 are exact for |n| < 2^20
+        double r1 = x - n * PIO2_1;
+        double w = n * PIO2_2;
+        double r = r1 - w;
+        double tail = ((r1 - r) - w) - n * PIO2_3;
+        double hi = r + tail;
+        double lo = tail - (hi - r);
+
+        switch ((n + quadrant) & 3) {
+        case 0:
+            return kernelSin(hi, lo);
+        case 1:
+            return kernelCos(hi, lo);
+        case 2:
+            return -kernelSin(hi, lo);
+        default:
+            return -kernelCos(hi, lo);
+        }
+    }
+
+    /**
+     * Sine of <tt>x + y</tt> on <tt>[-pi/4, pi/4]</tt>, where <tt>y</tt> is tail of <tt>x</tt>
+     */
+    private static double kernelSin(double x, double y) {
+        double z = x * x;
+        double v = z * x;
+        double r = S2 + z * (S3 + z * (S4 + z * (S5 + z * S6)));
+        return x - ((z * (0.5 * y - v * r) - y) - v * S1);
+    }
+
+    /**
+     * Cosine of <tt>x + y</tt> on <tt>[-pi/4, pi/4]</tt>, where <tt>y</tt> is tail of <tt>x</tt>
+     */
+    private static double kernelCos(double x, double y) {
+        double ax = Math.abs(x);
+        double z = x * x;
+        double r = z * (C1 + z * (C2 + z * (C3 + z * (C4 + z * (C5 + z * C6)))));
+        if (ax < 0.3)
+            return 1 - (0.5 * z - (z * r - x * y));
+
+        // 1 - qx is exact, and 0.5 * z - qx is small
+        double qx = ax > 0.78125 ? 0.28125 : Double.longBitsToDouble((Double.doubleToRawLongBits(ax) - 0x0020000000000000L) & 0xffffffff00000000L);
+        double hz = 0.5 * z - qx;
+        double a = 1 - qx;
+        return a - (hz - (z * r - x * y));
+    }
+
+    /**
+     * <tt>e^x = 2^k * 2^(j / 32) * e^r</tt>, where <tt>|r| &lt;= ln(2) / 64</tt>
+     */
+    public static double exp(double x) {
+        if (x != x)
+            return x;
+        if (x > EXP_MAX)
+            return Double.POSITIVE_INFINITY;
+        if (x < EXP_MIN)
+            return 0;
+
+        int n = (int) Math.rint(x * EXP_N_OVER_LN2);
+        double r = (x - n * (LN2_HI / EXP_SIZE)) - n * (LN2_LO / EXP_SIZE);
+        double p = r + r * r * (1.0 / 2 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120 + r * (1.0 / 720)))));
+        double t = EXP_TABLE[n & (EXP_SIZE - 1)];
+        return Math.scalb(t + t * p, n >> EXP_BITS);
+    }
+
+    /**
+     * Natural logarithm, <tt>log(x) = k * ln(2) + log(c) + log(1 + r)</tt>, where <tt>x = 2^k * m</tt>, 
+     * <tt>c</tt> is center of one of 128 intervals of <tt>m</tt> (or half of center above sqrt(2)) and <tt>r = m / c - 1</tt>
+     */
+    public static double log(double x) {
+        if (x != x || x < 0)
+            return Double.NaN;
+        if (x == 0)
+            return Double.NEGATIVE_INFINITY;
+        if (x == Double.POSITIVE_INFINITY)
+            return x;
+
+        // near 1 result is small, and series is used directly
+        double f = x - 1;
+        if (Math.abs(f) < 1.0 / 64)
+            return log1pSeries(f);
+
+        int k = 0;
+        if (x < Double.MIN_NORMAL) {
+            x *= TWO_54;
+            k = -54;
+        }
+        long bits = Double.doubleToRawLongBits(x);
+        k += (int) ((bits >>> 52) & 0x7ff) - 1023;
+        double m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+        int j = (int) ((bits >>> (52 - LOG_BITS)) & (LOG_SIZE - 1));
+        if (j >= LOG_HALF_INDEX)
+            k++;
+
+        double r = (m - LOG_C[j]) * LOG_INV_C[j];
+        double p = r - r * r * (1.0 / 2 - r * (1.0 / 3 - r * (1.0 / 4 - r * (1.0 / 5 - r * (1.0 / 6 - r * (1.0 / 7))))));
+        return (k * LN2_HI + LOG_LOG_C[j]) + (k * LN2_LO + p);
+    }
+
+    private static double log1pSeries(double f) {
+        double p = 1.0 / 12;
+        for (int i = 11; i >= 2; i--)
+            p = 1.0 / i - f * p;
+        return f - f * f * p;
+    }
+
+    public static double sqrt(double x) {
+        return Math.sqrt(x);
+    }
+
+    public static double sinh(double x) {
+        if (Math.abs(x) < 0.5)
+            return Math.sinh(x); // cancellation of e^x - e^-x
+        double e = exp(x);
+        return (e - 1 / e) / 2;
+    }
+
+    public static double cosh(double x) {
+        double e = exp(x);
+        return (e + 1 / e) / 2;
+    }
+
+    public static double tanh(double x) {
+        if (Math.abs(x) < 0.5)
+            return Math.tanh(x);
+        if (Math.abs(x) > 20)
+            return Math.signum(x);
+        double e = exp(2 * x);
+        return (e - 1) / (e + 1);
+    }
+}
@@ -20,6 +20,8 @@ import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.CalculatorException;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.PureFunction;
 
 /**
  * Holding data for given function. 
@@ -30,16 +32,17 @@ import org.jdice.calc.Num;
 public class FunctionData {
 
     private Function function;
+    private boolean pure;
     private Object[] values;
     private Num result;
 
     public FunctionData(Class<? extends Function> function, Object... values)  {
-        this.function = CacheExtension.getFunction(function);
-        setValues(values);
+        this(CacheExtension.getFunction(function), values);
     }
 
     public FunctionData(Function function, Object ... values) {
         this.function = function;
+        this.pure = function.getClass().isAnnotationPresent(PureFunction.class);
         setValues(values);
     }
 
@@ -60,6 +63,15 @@ public class FunctionData {
         return function;
     }
 
+    /**
+     * Check if function is annotated with {@link PureFunction}
+     * 
+     * @return
+     */
+    public boolean isPure() {
+        return pure;
+    }
+
     public Object[] getValues() {
         return values;
     }
@@ -80,16 +92,61 @@ public class FunctionData {
                 allValues[i] = ac.calculate();
             }
         }
-        
+        return calculate(calc, allValues);
+    }
+
+    /**
+     * Calculate function with already calculated arguments
+     * 
+     * @param calc
+     * @param allValues value of every argument
+     * @return
+     */
+    public Num calculate(AbstractCalculator calc, Num[] allValues) {
+        MemoCache.Key key = null;
+        if (pure) {
+            key = createKey(calc, allValues);
+            Num cached = CacheExtension.getFunctionResultCache().get(key);
+            if (cached != null) {
+                result = cached.clone();
+                return result;
+            }
+        }
+
         try {
             result = function.calc(calc, allValues);
         }
+        catch (RuntimeException e) {
+            throw e;
+        }
         catch (Exception e) {
             throw new CalculatorException(e);
         }
+
+        if (key != null && result != null)
+            CacheExtension.getFunctionResultCache().put(key, result.clone());
+
         return result;
     }
 
+    /**
+     * Key of pure function result: function, value with effective scale and rounding mode of every argument, and calculator fast math mode, scale and rounding mode
+     */
+    private MemoCache.Key createKey(AbstractCalculator calc, Num[] args) {
+        Object[] parts = new Object[4 + args.length * 3];
+        int i = 0;
+        parts[i++] = function.getClass();
+        parts[i++] = calc != null && calc.isFastMath();
+        parts[i++] = calc != null ? calc.getScale() : null;
+        parts[i++] = calc != null ? calc.getRoundingMode() : null;
+        for (Num arg : args) {
+            parts[i++] = arg.toBigDecimal(null, null, false);
+            parts[i++] = Properties.getInheritedScale(calc, arg);
+            parts[i++] = Properties.getInheritedRoundingMode(calc, arg);
+        }
+        return new MemoCache.Key(parts);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
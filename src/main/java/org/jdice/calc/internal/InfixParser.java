@@ -17,8 +17,11 @@
 package org.jdice.calc.internal;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,11 +29,11 @@ import java.util.regex.Pattern;
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Calculator;
 import org.jdice.calc.CalculatorException;
-import org.jdice.calc.Extension;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
 import org.jdice.calc.Properties;
+import org.jdice.calc.extension.AddOperator;
 import org.jdice.calc.extension.SubOperator;
 
 /**
@@ -42,15 +45,14 @@ import org.jdice.calc.extension.SubOperator;
 public class InfixParser {
 
     private static final String REGEX_VARIABLE_NAMES = "([a-zA-Z]+)\\b(?!\\s*\\()";
-    private static final String REGEX_FUNCTIONS = "[a-zA-Z0-9]+\\(((?<=(?:[(]))[^(].*?(?=[)]))"; // e.g. abs(..) <- function | abs <- name, no open brackets
 
     private static final Pattern pVariableNames  = Pattern.compile(REGEX_VARIABLE_NAMES);
-    private static final Pattern pFunctions = Pattern.compile(REGEX_FUNCTIONS);;
 
     private CList infixNotation = new CList();
+    private LinkedHashMap<String, Num> variables;
+    private LinkedHashSet<String> undefined = new LinkedHashSet<String>();
     private Properties properties;
     private UseExtension usedExtensions;
-    private Pattern pUsedExtensions;
 
     public InfixParser() {
     }
@@ -60,7 +62,6 @@ public class InfixParser {
     }
 
     public InfixParser(UseExtension operationRegister, Properties properties) {
-        pUsedExtensions = null;
         this.usedExtensions = operationRegister;
         this.properties = properties;
     }
@@ -75,7 +76,6 @@ public class InfixParser {
      * @throws ParseException
      */
     public CList parse(UseExtension operationRegister, Properties properties, String infixExpression, Object... values) throws ParseException {
-        pUsedExtensions = null;
         this.usedExtensions = operationRegister;
         this.properties = properties;
 
@@ -90,211 +90,368 @@ public class InfixParser {
      * @throws ParseException
      */
     public CList parse(String infixExpression, Object... values) throws ParseException {
+        // parser is reused by calculator
+        infixNotation.clear();
+        undefined.clear();
         // get variable names
         LinkedHashMap<String, Num> vNames = mapValues(infixExpression, values);
+        variables = vNames;
 
         return parse(infixExpression, vNames);
     }
 
+    /**
+     * Variables of last parsed expression, matched with their values
+     * 
+     * @return variables by name, or <tt>null</tt> if expression don't have variables
+     */
+    public LinkedHashMap<String, Num> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Names of variables of last parsed expression which are parsed without values
+     * 
+     * @return
+     */
+    public LinkedHashSet<String> getUndefinedVariables() {
+        return undefined;
+    }
+
     private CList parse(String infixExpression, LinkedHashMap<String, Num> vNames) throws ParseException {
-        //
-        // Separate formulas and non formula parts
-        //
-        infixExpression = infixExpression.replace(" ", "");
-        int infixLength = infixExpression.length();
-        // separate function and reminders in groups
-        Matcher mat = pFunctions.matcher(infixExpression);
-
-        int gc = mat.groupCount() + 1;
-        int[][] mf = new int[gc + gc + 1][];
-        int count = 0;
-
-        int firstIndex = 0;
-        int lastIndex = 0;
-        while (mat.find()) {
-            String group = mat.group();
-            // before
-            if (firstIndex != mat.start())
-                mf[count++] = new int[] { firstIndex, mat.start(), 0 };
-
-            // middle
-            firstIndex = mat.start();
-            lastIndex = mat.end() + countOccurrences(group, '(');
-            mf[count++] = new int[] { firstIndex, lastIndex, 1 };
-            firstIndex = lastIndex;
-        }
+        char separator = properties != null ? properties.getInputDecimalSeparator() : '.';
+        boolean hasVariableNames = (vNames != null && vNames.size() != 0) ? true : false;
+        int length = infixExpression.length();
 
-        // last
-        if (lastIndex != infixLength)
-            mf[count++] = new int[] { lastIndex, infixLength, 0 };
+        // tokens are added to expression, or to argument of innermost open function
+        ArrayList<FunctionFrame> functions = null;
+        FunctionFrame frame = null;
+        CList target = infixNotation;
+        // last two tokens of target, e.g. to recognize negative number
+        Object prev = null;
+        Object prev2 = null;
+        // same rules as in ExpressionValidator
+        boolean operand = true; // operand is expected
+        boolean start = true; // start of expression, bracket or argument
+        boolean signed = false; // unary sign before expected operand
+        int brackets = 0; // open brackets outside of functions
+
+        int i = 0;
+        while (i < length) {
+            char c = infixExpression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
 
-        for (int i = 0; i < mf.length; i++) {
-            if (mf[i] != null) {
-                int[] section = mf[i];
-                String group = infixExpression.substring(section[0], section[1]);
+            Object token = null;
+            int end = scanNumber(infixExpression, i, separator, frame != null);
+            if (end != -1) {
+                String number = infixExpression.substring(i, end);
+                if (!operand)
+                    throw missingOperator(infixExpression, number, i);
+                // parse negative number from expression 
+                // e.g. 1 + -8 will parse -8. 
+                //      1 - 8 and (1 + 2) - 8 will parse only 8
+                if (prev instanceof SubOperator && (target.size() == 1 || prev2 instanceof Operator || prev2 == Bracket.OPEN)) {
+                    number = "-" + number;
+                    target.remove(target.size() - 1);
+                    prev = prev2;
+                    prev2 = null;
+                }
+                Num value = new Num(number);
+                target.add(value);
+                token = value;
+                operand = false;
+                start = false;
+                signed = false;
+                i = end;
+            }
+            else if ((token = findOperator(usedExtensions, infixExpression, i)) != null) {
+                Operator operator = (Operator) token;
+                String symbol = operator.getSymbol();
+                if (!operand) {
+                    operand = true;
+                    start = false;
+                }
+                else if (!signed && isUnary(operator, start, infixExpression, i + symbol.length(), separator, frame != null)) {
+                    signed = true;
+                }
+                else {
+                    throw new ParseException("Exception while parsing '" + infixExpression + "'. Missing operand of operator '" + symbol + "'", i);
+                }
+                target.add(operator);
+                i += symbol.length();
+            }
+            else if (c == '(') {
+                if (!operand)
+                    throw missingOperator(infixExpression, "(", i);
+                if (frame != null)
+                    frame.depth++;
+                else
+                    brackets++;
+                target.add(Bracket.OPEN);
+                token = Bracket.OPEN;
+                start = true;
+                signed = false;
+                i++;
+            }
+            else if (c == ')' && frame != null && frame.depth == 0) {
+                // end of function
+                if (operand && !target.isEmpty())
+                    throw missingOperand(infixExpression, ")", i);
+                frame.addArgument(target, infixExpression);
+                FunctionData fd = frame.toFunctionData(infixExpression);
+                target = frame.parent;
+                prev = frame.prev;
+                prev2 = frame.prev2;
+                functions.remove(functions.size() - 1);
+                frame = functions.isEmpty() ? null : functions.get(functions.size() - 1);
+
+                target.add(fd);
+                token = fd;
+                operand = false;
+                start = false;
+                signed = false;
+                i++;
+            }
+            else if (c == ')') {
+                if (frame == null && brackets == 0)
+                    throw new ParseException("Exception while parsing '" + infixExpression + "'. Close bracket without open bracket", i);
+                if (operand)
+                    throw missingOperand(infixExpression, ")", i);
+                if (frame != null)
+                    frame.depth--;
+                else
+                    brackets--;
+                target.add(Bracket.CLOSE);
+                token = Bracket.CLOSE;
+                operand = false;
+                start = false;
+                i++;
+            }
+            else if (c == ',' && frame != null && frame.depth == 0) {
+                if (operand && !target.isEmpty())
+                    throw missingOperand(infixExpression, ",", i);
+                frame.addArgument(target, infixExpression);
+                target = new CList();
+                prev = null;
+                prev2 = null;
+                operand = true;
+                start = true;
+                signed = false;
+                i++;
+                continue;
+            }
+            else if (isLetter(c)) {
+                end = i;
+                while (end < length && isLetterOrDigit(infixExpression.charAt(end)))
+                    end++;
+                int next = end;
+                while (next < length && Character.isWhitespace(infixExpression.charAt(next)))
+                    next++;
+
+                if (next < length && infixExpression.charAt(next) == '(') {
+                    String name = infixExpression.substring(i, end);
+                    Function function = findFunction(usedExtensions, name);
+                    if (function == null)
+                        throw new CalculatorException("Can't find '" + name + "' function implementation class used in expression " + infixExpression);
+                    if (!operand)
+                        throw missingOperator(infixExpression, name, i);
+
+                    if (functions == null)
+                        functions = new ArrayList<FunctionFrame>();
+                    frame = new FunctionFrame(function, name, target, prev, prev2);
+                    functions.add(frame);
+                    target = new CList();
+                    prev = null;
+                    prev2 = null;
+                    start = true;
+                    signed = false;
+                    i = next + 1;
+                    continue;
+                }
 
-                if (section[2] == 1) { // function
-                    String function = group.substring(0, group.indexOf("("));
+                // variable name has only letters
+                end = i;
+                while (end < length && isLetter(infixExpression.charAt(end)))
+                    end++;
+                String name = infixExpression.substring(i, end);
+                Num variable = hasVariableNames ? vNames.get(name) : null;
+                if (variable == null)
+                    throw new ParseException("Exception while parsing '" + infixExpression + "'. Can't find extension '" + name + "' or " + Num.class.getName() + " with name '" + name + "'", i);
+                if (!operand)
+                    throw missingOperator(infixExpression, name, i);
+                target.add(variable);
+                token = variable;
+                operand = false;
+                start = false;
+                signed = false;
+                i = end;
+            }
+            else {
+                throw new ParseException("Exception while parsing '" + infixExpression + "'. Unknown symbol '" + c + "'", i);
+            }
 
-                    Extension op = null;
-                    // local scope
-                    if (usedExtensions != null)
-                        op = usedExtensions.getFunction(function);
+            prev2 = prev;
+            prev = token;
+        }
 
-                    // global scope
-                    if (op == null)
-                        op = CacheExtension.getFunction(function);
+        if (frame != null || brackets > 0)
+            throw new CalculatorException("To many open bracket. " + infixExpression);
+        if (operand)
+            throw new ParseException("Exception while parsing '" + infixExpression + "'. Missing operand at end of expression", length);
 
-                    if (op == null)
-                        throw new CalculatorException("Can't find '" + function + "' function implementation class used in expression " + infixExpression);
+        return infixNotation;
+    }
 
-                    Function f = (Function) op;
-                    String _expression = group.substring(group.indexOf("(") + 1, group.length() - 1);
-                    String[] expressions = _expression.split(",");
-                    Object[] values = new Object[expressions.length];
+    private static ParseException missingOperator(String infixExpression, String symbol, int i) {
+        return new ParseException("Exception while parsing '" + infixExpression + "'. Missing operator before '" + symbol + "'", i);
+    }
 
-                    for (int e = 0; e < expressions.length; e++) {
-                        String expression = expressions[e];
+    private static ParseException missingOperand(String infixExpression, String symbol, int i) {
+        return new ParseException("Exception while parsing '" + infixExpression + "'. Missing operand before '" + symbol + "'", i);
+    }
 
-                        InfixParser tmp = new InfixParser(properties);
-                        CList fInfix = tmp.parse(expression, vNames);
-                        if (fInfix.size() == 1 && fInfix.get(0) instanceof Num) {
-                            Num n = (Num) fInfix.get(0);
-                            values[e] = n;
-                        }
-                        else {
-                            Calculator calc = new Calculator();
-                            calc.setInfix(fInfix);
+    /**
+     * Function which arguments are parsed
+     */
+    private static class FunctionFrame {
+        private final Function function;
+        private final String name;
+        private final ArrayList<Object> values = new ArrayList<Object>(2);
+        // expression and tokens before function
+        private final CList parent;
+        private final Object prev;
+        private final Object prev2;
+        // open brackets inside of current argument
+        private int depth;
+
+        private FunctionFrame(Function function, String name, CList parent, Object prev, Object prev2) {
+            this.function = function;
+            this.name = name;
+            this.parent = parent;
+            this.prev = prev;
+            this.prev2 = prev2;
+        }
 
-                            values[e] = calc;
-                        }
-                    }
-                    FunctionData fd = new FunctionData(f, values);
+        private void addArgument(CList argument, String infixExpression) throws ParseException {
+            if (argument.isEmpty())
+                throw new ParseException("Missing argument of function '" + name + "' in expression " + infixExpression, 0);
 
-                    infixNotation.add(fd);
-                }
-                else {
-                    parseInfixGroup(group, vNames);
-                }
+            if (argument.size() == 1 && argument.get(0) instanceof Num) {
+                values.add(argument.get(0));
+            }
+            else {
+                Calculator calc = new Calculator();
+                calc.setInfix(argument);
+                values.add(calc);
             }
         }
 
-        return infixNotation;
+        private FunctionData toFunctionData(String infixExpression) throws ParseException {
+            int max = function.getFunctionAttributes();
+            if (max != 0 && values.size() > max)
+                throw new ParseException("Function '" + name + "' accepts at most " + max + " arguments, but " + values.size() + " are used in expression " + infixExpression, 0);
+            return new FunctionData(function, values.toArray());
+        }
     }
 
-    
-    private CList parseInfixGroup(String infix, LinkedHashMap<String, Num> vNames) throws ParseException {
-    	final String REGEX_NUMBER = getRegexNumber();
-    	
-    	if (pUsedExtensions == null) {
-            StringBuilder regex = new StringBuilder();
-            regex.append(REGEX_NUMBER);
-
-            // OPERATORS
-            for (Entry<String, Class<? extends Operator>> op : CacheExtension.getOperatorSymbols().entrySet()) {
-                String symbol = op.getKey();
-                if (".+-*^$?|()".contains(symbol))
-                    regex.append("|(\\" + symbol + ")");
-                else
-                    regex.append("|(" + symbol + ")");
-            }
+    /**
+     * Find end of number at given position, which is digits with optional decimal separator and decimal digits. 
+     * Outside of functions digits before decimal separator can be grouped with comma, e.g. 1,000.5
+     * 
+     * @return end of number, or -1 if number don't start at position
+     */
+    static int scanNumber(String expression, int i, char separator, boolean inFunction) {
+        int length = expression.length();
+        // inside of function comma separate arguments
+        boolean grouping = !inFunction && separator != ',';
+        boolean digits = false;
+        int end = i;
+        while (end < length) {
+            char c = expression.charAt(end);
+            if (c >= '0' && c <= '9')
+                digits = true;
+            else if (c != ',' || !grouping)
+                break;
+            end++;
+        }
 
-            if (usedExtensions != null) {
-                for (Entry<String, Class<? extends Operator>> op : usedExtensions.getOperatorSymbols().entrySet()) {
-                    String symbol = op.getKey();
-                    if (".+-*^$?|()".contains(symbol))
-                        regex.append("|(\\" + symbol + ")");
-                    else
-                        regex.append("|(" + symbol + ")");
-                }
+        if (end < length && expression.charAt(end) == separator && !(inFunction && separator == ',')) {
+            end++;
+            while (end < length && expression.charAt(end) >= '0' && expression.charAt(end) <= '9') {
+                digits = true;
+                end++;
             }
+            return digits ? end : -1;
+        }
 
-            // Brackets
-            for (Bracket bracket : Bracket.values()) {
-                String symbol = bracket.getSymbol();
-                if (".+-*^$?|()".contains(symbol))
-                    regex.append("|(\\" + symbol + ")");
-                else
-                    regex.append("|(" + symbol + ")");
-            }
-            regex.append("|([a-zA-Z]+)"); // for expression with variable name
+        end = i;
+        while (end < length && expression.charAt(end) >= '0' && expression.charAt(end) <= '9')
+            end++;
+        return end > i ? end : -1;
+    }
+
+    /**
+     * Find operator with longest symbol at given position, in local and global scope
+     */
+    static Operator findOperator(UseExtension usedExtensions, String expression, int i) {
+        String symbol = null;
+        if (usedExtensions != null)
+            symbol = findSymbol(usedExtensions.getOperatorSymbols(), expression, i, null);
+        symbol = findSymbol(CacheExtension.getOperatorSymbols(), expression, i, symbol);
+        if (symbol == null)
+            return null;
+
+        Operator operator = null;
+        if (usedExtensions != null)
+            operator = usedExtensions.getOperator(symbol);
+        if (operator == null)
+            operator = CacheExtension.getOperator(symbol);
+        return operator;
+    }
 
-            pUsedExtensions = Pattern.compile(regex.toString());
+    private static String findSymbol(HashMap<String, ?> symbols, String expression, int i, String found) {
+        for (String symbol : symbols.keySet()) {
+            if ((found == null || symbol.length() > found.length()) && expression.startsWith(symbol, i))
+                found = symbol;
         }
+        return found;
+    }
 
-        boolean hasVariableNames = (vNames != null && vNames.size() != 0) ? true : false;
-        Object prev = null;
-        
-        Matcher mat = pUsedExtensions.matcher(infix);
-        while (mat.find()) {
-            String group = mat.group();
+    /**
+     * Find function by name, in local and global scope
+     */
+    static Function findFunction(UseExtension usedExtensions, String name) {
+        Function function = null;
+        if (usedExtensions != null)
+            function = usedExtensions.getFunction(name);
+        if (function == null)
+            function = CacheExtension.getFunction(name);
+        return function;
+    }
 
-            if (group.matches(REGEX_NUMBER)) {
-                // parse negative number from expression 
-                // e.g. 1 + -8 will parse -8. 
-                //      1 - 8 will parse only 8
-                if (prev != null && prev instanceof SubOperator) {
-                    Object prev2 = null;
-                    int size = infixNotation.size();
-                    boolean isNegative = false;
-                    
-                    if (size >= 2) {
-                        prev2 = infixNotation.get(infixNotation.size() - 2);
-                        if (prev2 != null && (prev2 instanceof Operator || prev2 instanceof Bracket))
-                            isNegative = true;
-                    } else if (size == 1) {
-                        isNegative = true;
-                    }
-                    
-                    if (isNegative) {
-                        group = "-" + group;
-                        infixNotation.remove(infixNotation.size() - 1);
-                    }
-                }
-                
-                Num value = new Num(group);
-                infixNotation.add(value);
-                
-                prev = value;
-            }
-            else if (group.matches(Bracket.OPEN.getRegex())) {
-                infixNotation.add(Bracket.OPEN);
-                prev = Bracket.OPEN;
-            }
-            else if (group.matches(Bracket.CLOSE.getRegex())) {
-                infixNotation.add(Bracket.CLOSE);
-                prev = Bracket.CLOSE;
-            }
-            else {
-                boolean isExists = false;
-                Extension op = null;
-                
-                // local scope
-                if (usedExtensions != null)
-                    op = usedExtensions.getOperator(group);
-
-                // global scope
-                if (op == null)
-                    op = CacheExtension.getOperator(group);
-
-                // append...
-                if (op != null && op instanceof Operator) {
-                    infixNotation.add((Operator) op);
-                    isExists = true;
-                    prev = op;
-                }
-                else if (hasVariableNames) { // find variable by name
-                    Num variable = vNames.get(group);
-                    infixNotation.add(variable);
-                    isExists = true;
-                    prev = variable;
-                }
+    /**
+     * Unary minus before number is parsed as negative number, and other unary sign is calculated with zero as left operand
+     * which is correct only at start of expression, bracket or function argument
+     */
+    static boolean isUnary(Operator operator, boolean start, String expression, int next, char separator, boolean inFunction) {
+        if (!(operator instanceof SubOperator || operator instanceof AddOperator))
+            return false;
+        if (start)
+            return true;
+        while (next < expression.length() && Character.isWhitespace(expression.charAt(next)))
+            next++;
+        return operator instanceof SubOperator && scanNumber(expression, next, separator, inFunction) != -1;
+    }
 
-                if (!isExists)
-                    throw new ParseException("Exception while parsing '" + infix + "'. Can't find extension '" + group + "' or " + Num.class.getName() + " with name '" + group + "'", 0);
-            }
-        }
-        return infixNotation;
+    static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
     }
 
     
@@ -310,17 +467,17 @@ public class InfixParser {
      * @return
      */
     public static String toString(CList infixNotation, boolean showDetails) {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(infixNotation.size() * 4);
         Iterator<Object> it = infixNotation.iterator();
         while (it.hasNext()) {
             Object value = it.next();
             if (value instanceof Operator) {
                 Operator op = (Operator) value;
-                sb.append(op.getSymbol() + " ");
+                sb.append(op.getSymbol()).append(' ');
             }
             else if (value instanceof FunctionData) {
                 FunctionData fd = (FunctionData) value;
-                sb.append(fd.getFunction().getSymbol() + "(");
+                sb.append(fd.getFunction().getSymbol()).append('(');
                 int count = 0;
                 for (Object fObject : fd.getValues()) {
                     if (count++ != 0)
@@ -353,31 +510,37 @@ public class InfixParser {
                 if (showDetails == true && name != null && name.length() != 0)
                     sb.append(name + "[" + cv.toString() + "] ");
                 else
-                    sb.append(cv.toString() + " ");
+                    sb.append(cv.toString()).append(' ');
             }
             else if (value instanceof Bracket) {
                 Bracket bracket = (Bracket) value;
-                sb.append(bracket.getSymbol() + " ");
+                sb.append(bracket.getSymbol()).append(' ');
             }
             else {
                 sb.append("? ");
             }
         }
 
-        return sb.toString().trim();
+        // remove last space
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ')
+            sb.setLength(sb.length() - 1);
+        return sb.toString();
     }
 
-    private Num findValue(String name, boolean remove, Object... values) {
-        for (int i = 0; i < values.length; i++) {
-            Object o = values[i];
-            if (o instanceof Num && name.equals(((Num) o).getName())) {
-                if (remove)
-                    values[i] = null;
-                return (Num) o;
-            }
-        }
+    /**
+     * Find names of unknown variables used in expression, in order of first appearance
+     * e.g. X + 5 - (2 * X - Y) => X, Y
+     *
+     * @param infixExpression
+     * @return
+     */
+    public static LinkedHashSet<String> getVariableNames(String infixExpression) {
+        LinkedHashSet<String> names = new LinkedHashSet<String>();
+        Matcher mat = pVariableNames.matcher(infixExpression);
+        while (mat.find())
+            names.add(mat.group());
 
-        return null;
+        return names;
     }
 
     /**
@@ -391,6 +554,18 @@ public class InfixParser {
     private LinkedHashMap<String, Num> mapValues(String infix, Object... values) {
         LinkedHashMap<String, Num> vNames = null;
         int remain = 0;
+
+        // position of first value with given name
+        HashMap<String, Integer> named = null;
+        for (int i = 0; i < values.length; i++) {
+            Object o = values[i];
+            if (o instanceof Num && ((Num) o).getName() != null) {
+                if (named == null)
+                    named = new HashMap<String, Integer>();
+                if (!named.containsKey(((Num) o).getName()))
+                    named.put(((Num) o).getName(), i);
+            }
+        }
       
         Matcher mat = pVariableNames.matcher(infix);
         while (mat.find()) {
@@ -400,7 +575,12 @@ public class InfixParser {
             String vName = mat.group();
             if (!vNames.containsKey(vName)) {
                 remain++;
-                Num num = findValue(vName, true, values);
+                Num num = null;
+                Integer position = named != null ? named.get(vName) : null;
+                if (position != null) {
+                    num = (Num) values[position];
+                    values[position] = null;
+                }
                 vNames.put(vName, num);
 
                 if (num != null)
@@ -408,27 +588,32 @@ public class InfixParser {
             }
         }
 
-        // pair names with values without name
+        // expression without values, variables get new values which are defined later
+        if (values.length == 0 && vNames != null) {
+            for (Entry<String, Num> entry : vNames.entrySet()) {
+                entry.setValue(new Num().setName(entry.getKey()));
+                undefined.add(entry.getKey());
+            }
+            return vNames;
+        }
+
+        // pair names with remaining values without name, in order; named value is used only for variable with same name
         if (vNames != null) {
             int lastPos = 0;
             for (Entry<String, Num> entry : vNames.entrySet()) {
                 if (entry.getValue() == null) {
                     for (int i = lastPos; i < values.length; i++) {
                         Object v = values[i];
-                        if (v != null) {
-                            if (v instanceof Num) {
-                                Num n = (Num) v;
-                                if (n.getName() == null)
-                                    entry.setValue(n);
-                                else if (n.getName().equals(entry.getValue()))
-                                    entry.setValue(n);
-                            }
+                        if (v != null && !(v instanceof Num && ((Num) v).getName() != null)) {
+                            if (v instanceof Num)
+                                entry.setValue((Num) v);
                             else
                                 entry.setValue(Num.toNum(v));
 
                             values[i] = null;
-                            lastPos = i;
+                            lastPos = i + 1;
                             remain--;
+                            break;
                         }
                     }
                 }
@@ -451,27 +636,4 @@ public class InfixParser {
 
         return vNames;
     }
-
-    /**
-     * Count how many time needle appears in haystack
-     * @param haystack
-     * @param needle
-     * @return
-     */
-    private int countOccurrences(String haystack, char needle) {
-        int count = 0;
-        for (int i = 0; i < haystack.length(); i++) {
-            if (haystack.charAt(i) == needle)
-                count++;
-        }
-        return count;
-    }
-
-    /**
-     * Get regular expression for parsing number from string
-     * @return
-     */
-    private String getRegexNumber() {
-    	return "([\\d, ]*\\" + properties.getInputDecimalSeparator() + "\\d*)|(\\d+)";
-    }
 }
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Iterator;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Rounding;
+import org.jdice.calc.extension.AddOperator;
+import org.jdice.calc.extension.DivOperator;
+import org.jdice.calc.extension.MulOperator;
+import org.jdice.calc.extension.PowOperator;
+import org.jdice.calc.extension.SubOperator;
+
+/**
+ * Calculation from postfix in double interval arithmetic, which give same result as {@link PostfixCalculator}
+ * or {@link RationalCalculator} when result can be proven from interval bounds.
+ * <br/>
+ * Every intermediate value is kept as interval [lo, hi] rounded outward, so exact value is always inside interval.
+ * Value which is rounded (result of division, or result of exact calculation) is accepted only if both bounds are rounded
+ * to same number, otherwise calculation return <tt>null</tt> and expression should be calculated with <tt>BigDecimal</tt>.
+ * <br/>
+ * Result of <tt>+ - *</tt> is exact decimal number with known scale, same as scale of <tt>BigDecimal</tt> result,
+ * so result is accepted only if interval contain single number with that scale.
+ *
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class IntervalEvaluator {
+
+    /**
+     * Numbers up to 2^52 have fraction part exactly representable in double
+     */
+    private static final double MAX_EXACT = 4503599627370496.0;
+
+    /**
+     * Largest scale for which 10^scale is exact in double
+     */
+    private static final int MAX_SCALE = 22;
+
+    /**
+     * Largest absolute value of exponent in exact calculation
+     */
+    private static final int MAX_EXPONENT = 64;
+
+    private static final double[] POW10 = new double[MAX_SCALE + 1];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    /**
+     * Calculate postfix expression with same rules as {@link PostfixCalculator},
+     * or as {@link RationalCalculator} if calculator use exact rational calculation.
+     *
+     * @param calc
+     * @param postfix
+     * @return result or <tt>null</tt> if expression is not supported or result can't be proven in double precision
+     */
+    public static Num calculate(AbstractCalculator calc, CList postfix) {
+        // default scale would round every intermediate value
+        if (Properties.getDefaultScale() != null)
+            return null;
+
+        boolean exact = calc.isExactRational();
+        boolean strip = Properties.hasDefaultStripTrailingZeros();
+        Integer outputScale = calc.getOutputScale();
+        boolean budget = !exact && outputScale != null && calc.getScale() == null;
+        int[] scales = budget ? PrecisionBudget.getScales(postfix, outputScale) : null;
+
+        int size = postfix.size();
+        double[] lo = new double[size];
+        double[] hi = new double[size];
+        // exact value of intermediate result is unscaled * 10^-scale
+        double[] unscaled = new double[size];
+        int[] scale = new int[size];
+        // scale of value when used as operand, intermediate result is stripped as in Value.toBigDecimal()
+        int[] operandScale = new int[size];
+        // operand of expression, or null for intermediate result
+        Value[] operand = new Value[size];
+        int top = 0;
+
+        Iterator<Object> it = postfix.iterator();
+        int index = -1;
+        while (it.hasNext()) {
+            Object o = it.next();
+            index++;
+            if (o instanceof Num) {
+                Value value = Value.of((Num) o);
+                BigDecimal bd = null;
+                try {
+                    bd = value.toBigDecimal();
+                }
+                catch (ArithmeticException e) {
+                    return null; // reported by BigDecimal calculation
+                }
+                if (!setNumber(bd, lo, hi, top))
+                    return null;
+                operandScale[top] = bd.scale();
+                operand[top] = value;
+                top++;
+                continue;
+            }
+            if (!isSupported(o, exact) || top == 0)
+                return null;
+
+            Operator operator = (Operator) o;
+            int r = --top;
+            double rLo = lo[r], rHi = hi[r];
+            int rScale = operandScale[r];
+            Value rOperand = operand[r];
+
+            int l = top;
+            if (top > 0) {
+                l = --top;
+            }
+            else if (operator instanceof AddOperator || operator instanceof SubOperator) {
+                lo[l] = hi[l] = 0;
+                operandScale[l] = 0;
+            }
+            else {
+                return null;
+            }
+
+            double a = lo[l], b = hi[l];
+            int s = 0;
+            double n = Double.NaN;
+            if (operator instanceof AddOperator) {
+                lo[l] = down(a + rLo);
+                hi[l] = up(b + rHi);
+                s = Math.max(operandScale[l], rScale);
+            }
+            else if (operator instanceof SubOperator) {
+                lo[l] = down(a - rHi);
+                hi[l] = up(b - rLo);
+                s = Math.max(operandScale[l], rScale);
+            }
+            else if (operator instanceof MulOperator) {
+                multiply(lo, hi, l, rLo, rHi);
+                s = operandScale[l] + rScale;
+            }
+            else if (operator instanceof DivOperator) {
+                if (!divide(lo, hi, l, rLo, rHi))
+                    return null;
+
+                if (!exact) {
+                    // rounded as in PostfixCalculator, with scale and rounding mode of divisor
+                    Value divisor = rOperand != null ? rOperand : Value.ZERO;
+                    s = divisor.getInheritedScale(calc);
+                    if (scales != null && scales[index] != PrecisionBudget.NOT_BUDGETED && divisor.getScale() == null)
+                        s = scales[index];
+                    n = round(lo[l], hi[l], s, divisor.getInheritedRoundingMode(calc));
+                    if (Double.isNaN(n))
+                        return null;
+                }
+            }
+            else {
+                // power with whole exponent, only in exact calculation
+                BigDecimal exponent = rOperand != null ? rOperand.toBigDecimal() : null;
+                if (exponent == null || !isInteger(exponent))
+                    return null;
+                if (!pow(lo, hi, l, exponent.intValue()))
+                    return null;
+            }
+
+            if (!exact) {
+                // result of + - * is exact decimal with known scale, so interval must contain only one number with that scale
+                if (Double.isNaN(n))
+                    n = unscaled(lo[l], hi[l], s);
+                if (Double.isNaN(n))
+                    return null;
+                setScaled(lo, hi, l, n, s);
+                unscaled[l] = n;
+                scale[l] = s;
+                operandScale[l] = strip ? stripTrailingZeros(n, s) : s;
+            }
+            operand[l] = null;
+            top++;
+        }
+
+        if (top != 1)
+            return null;
+
+        if (exact) {
+            Integer s = calc.getScale();
+            boolean useOutputScale = s == null && outputScale != null;
+            if (s == null)
+                s = useOutputScale ? outputScale : Properties.DEFAULT_SCALE;
+            Rounding roundingMode = calc.getRoundingMode();
+            if (roundingMode == null)
+                roundingMode = Properties.getDefaultRoundingMode();
+
+            double n = round(lo[0], hi[0], s, roundingMode);
+            if (Double.isNaN(n))
+                return null;
+
+            Num result = new Num(BigDecimal.valueOf((long) n, s));
+            result.getProperties().load(calc.getProperties());
+            if (useOutputScale)
+                result.setScale(s);
+            return result;
+        }
+
+        BigDecimal value = operand[0] != null ? operand[0].getValue() : BigDecimal.valueOf((long) unscaled[0], scale[0]);
+        if (scales != null && !PrecisionBudget.isRoundedExactly(value, outputScale, calc.getRoundingMode()))
+            return null;
+        Num result = new Num(value);
+        result.getProperties().load(calc.getProperties());
+        if (budget)
+            result.setScale(outputScale);
+        return result;
+    }
+
+    private static boolean isSupported(Object o, boolean exact) {
+        Class<?> c = o.getClass();
+        return c == AddOperator.class || c == SubOperator.class || c == MulOperator.class || c == DivOperator.class || (exact && c == PowOperator.class);
+    }
+
+    private static boolean isInteger(BigDecimal value) {
+        return value.signum() == 0 || (value.scale() <= 0 || value.stripTrailingZeros().scale() <= 0) && value.abs().compareTo(BigDecimal.valueOf(MAX_EXPONENT)) <= 0;
+    }
+
+    /**
+     * Interval of number. Number with few digits is converted exactly, or with single rounding.
+     */
+    private static boolean setNumber(BigDecimal bd, double[] lo, double[] hi, int i) {
+        int s = bd.scale();
+        if (bd.precision() <= 15 && s >= 0 && s <= MAX_SCALE) {
+            setScaled(lo, hi, i, bd.unscaledValue().longValue(), s);
+            return true;
+        }
+
+        double d = bd.doubleValue();
+        if (Double.isInfinite(d))
+            return false;
+        lo[i] = down(down(d));
+        hi[i] = up(up(d));
+        return true;
+    }
+
+    private static void multiply(double[] lo, double[] hi, int i, double c, double d) {
+        double a = lo[i], b = hi[i];
+        double p1 = a * c, p2 = a * d, p3 = b * c, p4 = b * d;
+        lo[i] = down(Math.min(Math.min(p1, p2), Math.min(p3, p4)));
+        hi[i] = up(Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+    }
+
+    private static boolean divide(double[] lo, double[] hi, int i, double c, double d) {
+        // division by zero is reported by BigDecimal calculation
+        if (!(c > 0 || d < 0))
+            return false;
+        double a = lo[i], b = hi[i];
+        double q1 = a / c, q2 = a / d, q3 = b / c, q4 = b / d;
+        lo[i] = down(Math.min(Math.min(q1, q2), Math.min(q3, q4)));
+        hi[i] = up(Math.max(Math.max(q1, q2), Math.max(q3, q4)));
+        return true;
+    }
+
+    private static boolean pow(double[] lo, double[] hi, int i, int exponent) {
+        double a = lo[i], b = hi[i];
+        lo[i] = hi[i] = 1;
+        for (int n = Math.abs(exponent); n > 0; n--)
+            multiply(lo, hi, i, a, b);
+
+        if (exponent < 0) {
+            double c = lo[i], d = hi[i];
+            lo[i] = hi[i] = 1;
+            return divide(lo, hi, i, c, d);
+        }
+        return true;
+    }
+
+    /**
+     * Round interval to given scale
+     * 
+     * @return rounded number multiplied by 10^scale, or NaN if bounds of interval are not rounded to same number
+     */
+    private static double round(double lo, double hi, int scale, Rounding roundingMode) {
+        if (scale < 0 || scale > MAX_SCALE)
+            return Double.NaN;
+
+        double a = down(lo * POW10[scale]);
+        double b = up(hi * POW10[scale]);
+        if (!(Math.abs(a) < MAX_EXACT && Math.abs(b) < MAX_EXACT))
+            return Double.NaN;
+
+        RoundingMode mode = RoundingMode.valueOf(roundingMode.getBigDecimalRound());
+        double n = round(a, mode);
+        if (n != round(b, mode))
+            return Double.NaN;
+        return n;
+    }
+
+    /**
+     * Whole number n, if interval contains only one number n * 10^-scale
+     * 
+     * @return n or NaN if interval is too wide
+     */
+    private static double unscaled(double lo, double hi, int scale) {
+        if (Math.abs(scale) > MAX_SCALE)
+            return Double.NaN;
+
+        double a = scale >= 0 ? down(lo * POW10[scale]) : down(lo / POW10[-scale]);
+        double b = scale >= 0 ? up(hi * POW10[scale]) : up(hi / POW10[-scale]);
+        if (!(Math.abs(a) < MAX_EXACT && Math.abs(b) < MAX_EXACT))
+            return Double.NaN;
+
+        double n = Math.ceil(a);
+        return n == Math.floor(b) ? n : Double.NaN;
+    }
+
+    /**
+     * Interval of whole number multiplied by 10^-scale
+     */
+    private static void setScaled(double[] lo, double[] hi, int i, double n, int scale) {
+        if (scale == 0) {
+            lo[i] = hi[i] = n;
+        }
+        else {
+            double d = scale > 0 ? n / POW10[scale] : n * POW10[-scale];
+            lo[i] = down(d);
+            hi[i] = up(d);
+        }
+    }
+
+    /**
+     * Scale of n * 10^-scale after {@link BigDecimal#stripTrailingZeros()}
+     */
+    private static int stripTrailingZeros(double n, int scale) {
+        if (n == 0)
+            return BigDecimal.valueOf(0, scale).stripTrailingZeros().scale();
+
+        long unscaled = (long) n;
+        while (unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+        return scale;
+    }
+
+    /**
+     * Round number to whole number. Every rounding mode is non decreasing function,
+     * so if both bounds of interval are rounded to same number all numbers inside are rounded to it.
+     */
+    private static double round(double x, RoundingMode mode) {
+        double abs = Math.abs(x);
+        double floor = Math.floor(abs);
+        double fraction = abs - floor;
+        double n;
+        switch (mode) {
+            case CEILING:
+                return Math.ceil(x);
+            case FLOOR:
+                return Math.floor(x);
+            case UP:
+                n = fraction > 0 ? floor + 1 : floor;
+                break;
+            case DOWN:
+                n = floor;
+                break;
+            case HALF_UP:
+                n = fraction >= 0.5 ? floor + 1 : floor;
+                break;
+            case HALF_DOWN:
+                n = fraction > 0.5 ? floor + 1 : floor;
+                break;
+            case HALF_EVEN:
+                n = fraction > 0.5 || (fraction == 0.5 && floor % 2 != 0) ? floor + 1 : floor;
+                break;
+            default:
+                return Double.NaN;
+        }
+        return x < 0 ? -n : n;
+    }
+
+    private static double down(double x) {
+        return Math.nextAfter(x, Double.NEGATIVE_INFINITY);
+    }
+
+    private static double up(double x) {
+        return Math.nextAfter(x, Double.POSITIVE_INFINITY);
+    }
+}
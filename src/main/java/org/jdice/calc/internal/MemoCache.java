@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of calculated results, safe for use from multiple threads.
+ * <br/>
+ * Entries are spread over independently locked segments, and each segment evict least recently used entry when it is full.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MemoCache<K, V> {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile boolean enabled = true;
+    private volatile int maxSize;
+
+    @SuppressWarnings("unchecked")
+    public MemoCache(int maxSize) {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment<K, V>(evictions);
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Key composed of multiple values, e.g. function class and argument values
+     */
+    public static final class Key {
+        private final Object[] parts;
+        private final int hash;
+
+        public Key(Object... parts) {
+            this.parts = parts;
+            this.hash = Arrays.hashCode(parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(parts, other.parts);
+        }
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final AtomicLong evictions;
+        private int maxSize;
+
+        private Segment(AtomicLong evictions) {
+            super(16, 0.75f, true);
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private Segment<K, V> segment(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Get cached value and update statistics
+     * 
+     * @param key
+     * @return cached value or <tt>null</tt>
+     */
+    public V get(K key) {
+        if (!enabled)
+            return null;
+
+        Segment<K, V> segment = segment(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+
+        if (value == null)
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        return value;
+    }
+
+    public void put(K key, V value) {
+        if (!enabled)
+            return;
+
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Set maximum number of cached values. Existing values above new limit are evicted on next insert in their segment.
+     * 
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Negative cache size " + maxSize);
+
+        this.maxSize = maxSize;
+        int segmentSize = (maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.maxSize = segmentSize;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable cache. Disabled cache is not cleared, and don't count hits and misses.
+     * 
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Ratio of hits in all lookups since last {@link #resetStatistics()}
+     * 
+     * @return value between 0 and 1
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+}
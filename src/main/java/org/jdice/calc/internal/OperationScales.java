@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jdice.calc.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Rounding;
+
+/**
+ * Scale and rounding mode of every {@link ScaledOperator} in postfix expression, resolved once before calculation.
+ * <br/>
+ * Scale and rounding mode are inherited from right operand, or from calculator if operand don't define them,
+ * same as {@link Value#getInheritedScale(AbstractCalculator)}. Operation with function as right operand is not resolved,
+ * because properties of function result are known only after function is calculated.
+ * <br/>
+ * Resolved values are valid until properties of calculator or of any right operand are changed, 
+ * which is detected with modification stamps of {@link Properties}.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class OperationScales {
+
+    /**
+     * Stack marker for result of operation
+     */
+    private static final Object INTERMEDIATE = new Object();
+
+    private final CList postfix;
+    private final Properties calcProperties;
+    private final long calcStamp;
+
+    private final boolean[] resolved;
+    private final int[] scales;
+    private final Rounding[] roundingModes;
+    private final boolean[] operandScales;
+
+    // right operands, with their properties and stamps at time of resolving
+    private final Num[] sources;
+    private final Properties[] sourceProperties;
+    private final long[] sourceStamps;
+
+    private OperationScales(AbstractCalculator calc, CList postfix) {
+        this.postfix = postfix;
+        this.calcProperties = calc.getProperties();
+        this.calcStamp = calcProperties.getStamp();
+
+        int size = postfix.size();
+        resolved = new boolean[size];
+        scales = new int[size];
+        roundingModes = new Rounding[size];
+        operandScales = new boolean[size];
+
+        ArrayList<Num> nums = new ArrayList<Num>();
+        Object[] stack = new Object[size];
+        int top = 0;
+        int index = -1;
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            index++;
+            if (!(o instanceof Operator)) {
+                stack[top++] = o;
+                continue;
+            }
+
+            Object right = top > 0 ? stack[--top] : null;
+            if (top > 0)
+                top--;
+            stack[top++] = INTERMEDIATE;
+
+            if (!(o instanceof ScaledOperator) || right == null || !(right == INTERMEDIATE || right instanceof Num))
+                continue;
+
+            Properties properties = null;
+            if (right instanceof Num) {
+                Num num = (Num) right;
+                nums.add(num);
+                properties = num.hasProperties() ? num.getProperties() : null;
+            }
+
+            Integer scale = properties != null ? properties.getScale() : Properties.getDefaultScale();
+            Rounding roundingMode = properties != null ? properties.getRoundingMode() : Properties.getDefaultRoundingMode();
+
+            resolved[index] = true;
+            operandScales[index] = scale != null;
+            scales[index] = scale != null ? scale : Properties.getInheritedScale(calc);
+            roundingModes[index] = roundingMode != null ? roundingMode : Properties.getInheritedRoundingMode(calc);
+        }
+
+        sources = nums.toArray(new Num[nums.size()]);
+        sourceProperties = new Properties[sources.length];
+        sourceStamps = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i].hasProperties()) {
+                sourceProperties[i] = sources[i].getProperties();
+                sourceStamps[i] = sourceProperties[i].getStamp();
+            }
+        }
+    }
+
+    /**
+     * Resolve scale and rounding mode of operations in given postfix expression
+     * 
+     * @param calc
+     * @param postfix
+     * @return
+     */
+    public static OperationScales resolve(AbstractCalculator calc, CList postfix) {
+        return new OperationScales(calc, postfix);
+    }
+
+    /**
+     * Check if resolved values can be used for calculation of given postfix expression
+     * 
+     * @param calc
+     * @param postfix
+     * @return FALSE if postfix is different, or properties of calculator or right operands are changed
+     */
+    public boolean isValid(AbstractCalculator calc, CList postfix) {
+        if (this.postfix != postfix || resolved.length != postfix.size())
+            return false;
+
+        Properties properties = calc.getProperties();
+        if (properties != calcProperties || properties.getStamp() != calcStamp)
+            return false;
+
+        for (int i = 0; i < sources.length; i++) {
+            properties = sources[i].hasProperties() ? sources[i].getProperties() : null;
+            if (properties != sourceProperties[i] || (properties != null && properties.getStamp() != sourceStamps[i]))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if scale and rounding mode are resolved for operation at given position of postfix expression
+     * 
+     * @param index
+     * @return
+     */
+    public boolean isResolved(int index) {
+        return resolved[index];
+    }
+
+    public int getScale(int index) {
+        return scales[index];
+    }
+
+    public Rounding getRoundingMode(int index) {
+        return roundingModes[index];
+    }
+
+    /**
+     * Check if scale of operation is defined by right operand, instead of inherited from calculator
+     * 
+     * @param index
+     * @return
+     */
+    public boolean hasOperandScale(int index) {
+        return operandScales[index];
+    }
+}
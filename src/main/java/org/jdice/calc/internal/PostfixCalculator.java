@@ -16,17 +16,20 @@
  
 package org.jdice.calc.internal;
 
-import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Stack;
 
 import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.CalculatorException;
+import org.jdice.calc.ErrorCode;
+import org.jdice.calc.EvaluationException;
 import org.jdice.calc.Num;
 import org.jdice.calc.Operator;
-import org.jdice.calc.Step;
+import org.jdice.calc.Result;
+import org.jdice.calc.Rounding;
 import org.jdice.calc.extension.AddOperator;
+import org.jdice.calc.extension.DivOperator;
+import org.jdice.calc.extension.ModOperator;
+import org.jdice.calc.extension.PowOperator;
 import org.jdice.calc.extension.SubOperator;
 
 /**
@@ -37,13 +40,27 @@ import org.jdice.calc.extension.SubOperator;
  */
 public class PostfixCalculator {
 
-    private Stack<Object> stack = new Stack<Object>();
+    // operators and brackets during conversion to postfix
+    private Object[] operators = new Object[16];
+    private int operatorCount = 0;
     private CList postfix = new CList();
+    // intermediate values, or functions which are calculated when used as operand, and their positions in postfix
+    private Object[] values = new Object[16];
+    private int[] positions = new int[16];
+    private int valueCount = 0;
     private int bCount = 0;
-    LinkedList<Object> step = null;
-    private LinkedList<Step> steps = null;
+    private StepTrace trace;
+    private OperationScales operationScales;
+    private StrengthReduction reduction;
+    private Simplifier simplifier;
+    private int removedNodes = 0;
+    // if set, failed operation is recorded to failure instead of thrown
+    private boolean collectErrors = false;
+    private Result failure;
 
     public void toPostfix(CList infix) {
+        reset();
+
         Iterator<Object> it = infix.iterator();
         while (it.hasNext()) {
             Object current = it.next();
@@ -59,25 +76,28 @@ public class PostfixCalculator {
                 }
 
                 int currentPriority = getPriority(current);
-                if (stack.size() == 0)
-                    stack.push(current);
-                else if (stack.size() > 0 && Bracket.CLOSE.equals(current)) {
-                    while (stack.size() > 0 && !Bracket.OPEN.equals(stack.peek())) {
-                        postfix.add((Operator) stack.pop());
+                if (operatorCount == 0)
+                    pushOperator(current);
+                else if (Bracket.CLOSE.equals(current)) {
+                    while (operatorCount > 0 && !Bracket.OPEN.equals(operators[operatorCount - 1])) {
+                        postfix.add((Operator) popOperator());
                     }
-                    stack.pop();
+                    // missing open bracket is reported after conversion
+                    if (operatorCount > 0)
+                        popOperator();
                 }
-                else if (stack.size() > 0) {
-                    if (Bracket.OPEN.equals(current) && Bracket.OPEN.equals(stack.peek()) || (!Bracket.OPEN.equals(current) && getPriority(stack.peek()) >= currentPriority)) {
-                        while (stack.size() > 0 && !Bracket.OPEN.equals(stack.peek()) && getPriority(stack.peek()) >= currentPriority) {
-                            Object o = stack.pop();
+                else {
+                    Object peek = operators[operatorCount - 1];
+                    if (Bracket.OPEN.equals(current) && Bracket.OPEN.equals(peek) || (!Bracket.OPEN.equals(current) && getPriority(peek) >= currentPriority)) {
+                        while (operatorCount > 0 && !Bracket.OPEN.equals(operators[operatorCount - 1]) && getPriority(operators[operatorCount - 1]) >= currentPriority) {
+                            Object o = popOperator();
                             if (o instanceof Operator)
                                 postfix.add((Operator) o);
                         }
-                        stack.push(current);
+                        pushOperator(current);
                     }
-                    else if (getPriority(stack.peek()) < currentPriority) {
-                        stack.push(current);
+                    else if (getPriority(peek) < currentPriority) {
+                        pushOperator(current);
                     }
                 }
             }
@@ -104,22 +124,78 @@ public class PostfixCalculator {
     }
 
     private void popAll()  {
-        Enumeration<Object> e = stack.elements();
-        while (e.hasMoreElements()) {
-            Object peek = stack.peek();
-            Bracket peekBracket = peek instanceof Bracket ? (Bracket) peek : null;
-
-            if (peekBracket != null)
-                stack.pop();
-            else
-                postfix.add((Operator) stack.pop());
+        while (operatorCount > 0) {
+            Object o = popOperator();
+            if (!(o instanceof Bracket))
+                postfix.add((Operator) o);
         }
     }
 
+    private void pushOperator(Object o) {
+        if (operatorCount == operators.length) {
+            Object[] a = new Object[operatorCount * 2];
+            System.arraycopy(operators, 0, a, 0, operatorCount);
+            operators = a;
+        }
+        operators[operatorCount++] = o;
+    }
+
+    private Object popOperator() {
+        return operators[--operatorCount];
+    }
+
+    private void pushValue(Object o, int position) {
+        if (valueCount == values.length) {
+            Object[] a = new Object[valueCount * 2];
+            System.arraycopy(values, 0, a, 0, valueCount);
+            values = a;
+            int[] p = new int[valueCount * 2];
+            System.arraycopy(positions, 0, p, 0, valueCount);
+            positions = p;
+        }
+        positions[valueCount] = position;
+        values[valueCount++] = o;
+    }
+
+    private Object popValue() {
+        Object o = values[--valueCount];
+        values[valueCount] = null;
+        return o;
+    }
+
+    private void clearValues() {
+        while (valueCount > 0)
+            values[--valueCount] = null;
+    }
+
+    /**
+     * Clear postfix expression and state of last calculation, and keep allocated lists for next expression
+     */
+    public void reset() {
+        operatorCount = 0;
+        clearValues();
+        postfix.clear();
+        bCount = 0;
+        // prepared for previous content of postfix list
+        operationScales = null;
+        reduction = null;
+        simplifier = null;
+        removedNodes = 0;
+    }
+
     public CList getPostfix() {
         return postfix;
     }
 
+    /**
+     * Number of nodes removed from postfix expression by {@link Simplifier} in last calculation
+     * 
+     * @return
+     */
+    public int getRemovedNodes() {
+        return removedNodes;
+    }
+
     public Num calculate(AbstractCalculator calc, CList postfix)  {
         return calculate(calc, postfix, false);
     }
@@ -128,187 +204,319 @@ public class PostfixCalculator {
         try {
             return calculation(calc, postfix, trackSteps);
         }
-        catch (Exception e) {
-            if (trackSteps == false) { // retrack steps to find problem
-                try {
-                    calculation(calc, postfix, true);
-                } catch(Exception e2) {}
-            }
-            StringBuilder sb = new StringBuilder();
-            if (steps != null) {
-                int count = 0;
-                int sSize = steps.size();
-                for (Step s : steps) {
-                    count++;
-                    sb.append(s);
-
-                    if (count >= sSize)
-                        sb.append("  <--- OK\n");
-                    else
-                        sb.append("\n");
-                }
-
-                Step es = trackStep(step);
-                sb.append(es + "  <--- Error: " + e.getMessage());
-            }
+        catch (EvaluationException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            throw new CalculatorException(calc, "Error during calculation. Check if expression is correct", e);
+        }
+    }
 
-            throw new CalculatorException("Error during calculation. Check if expression is correct: " + calc.getInfix() + "\n" + sb.toString(), e);
+    /**
+     * Calculate postfix expression, and return error instead of throwing exception.
+     * Division by zero is detected before operation is calculated, and other errors detected by calculator 
+     * are thrown without stack trace, so failed calculation isn't slower than successful one.
+     * 
+     * @param calc
+     * @param postfix
+     * @param trackSteps
+     * @return
+     */
+    public Result tryCalculate(AbstractCalculator calc, CList postfix, boolean trackSteps) {
+        collectErrors = true;
+        try {
+            Num result = calculation(calc, postfix, trackSteps);
+            if (result == null && failure != null)
+                return failure;
+            return Result.of(result);
+        }
+        catch (RuntimeException e) {
+            return Result.error(ErrorCode.of(e), null, -1, e, null);
+        }
+        finally {
+            collectErrors = false;
+            failure = null;
         }
     }
 
     private Num calculation(AbstractCalculator calc, CList postfix, boolean trackSteps)  {
+        if (trackSteps) {
+            int capacity = calc.getTraceCapacity();
+            if (trace == null || trace.getCapacity() != capacity)
+                trace = new StepTrace(capacity);
+            trace.clear();
+        }
+
+        removedNodes = 0;
+        if (calc.isSimplify() && !trackSteps && Simplifier.isApplicable(calc)) {
+            if (simplifier == null || !simplifier.isValid(postfix))
+                simplifier = Simplifier.simplify(postfix);
+            postfix = simplifier.getPostfix();
+            removedNodes = simplifier.getRemoved();
+        }
+
+        if (calc.isAdaptivePrecision() && !trackSteps) {
+            Num result = IntervalEvaluator.calculate(calc, postfix);
+            if (result != null)
+                return result;
+        }
+
+        if (calc.isExactRational() && !trackSteps) {
+            Num result = RationalCalculator.calculate(calc, postfix);
+            if (result != null)
+                return result;
+        }
+
+        // scale of divisions, if only result scale is defined
+        Integer outputScale = calc.getOutputScale();
+        boolean budget = outputScale != null && calc.getScale() == null;
+        int[] scales = null;
+        if (budget)
+            scales = PrecisionBudget.getScales(postfix, outputScale);
+
+        Value value = evaluate(calc, postfix, scales, trackSteps);
+        if (value != null && scales != null && !PrecisionBudget.isRoundedExactly(value.getValue(), outputScale, calc.getRoundingMode())) {
+            // only steps of calculation with full precision are traced
+            if (trackSteps)
+                trace.clear();
+            value = evaluate(calc, postfix, null, trackSteps);
+        }
+
         if (trackSteps)
-            steps = new LinkedList<Step>();
+            calc.setStepTrace(trace);
+        if (value == null && failure != null)
+            return null;
+
+        Num result = new Num(value.getValue());
+        result.getProperties().load(calc.getProperties());
+        if (budget)
+            result.setScale(outputScale);
+        return result;
+    }
+
+    /**
+     * Calculate postfix expression with standard calculation, without exact rational or interval evaluation, and without budget of division scales.
+     * Result is not rounded to scale of calculator, same as intermediate value during calculation.
+     * 
+     * @param calc
+     * @param postfix
+     * @return
+     */
+    public Value calculateValue(AbstractCalculator calc, CList postfix) {
+        return evaluate(calc, postfix, null, false);
+    }
 
-        Stack<Object> values = new Stack<Object>();
+    private Value evaluate(AbstractCalculator calc, CList postfix, int[] scales, boolean trackSteps) {
+        if (operationScales == null || !operationScales.isValid(calc, postfix))
+            operationScales = OperationScales.resolve(calc, postfix);
+        if (reduction == null || !reduction.isValid(postfix))
+            reduction = StrengthReduction.prepare(postfix);
+
+        clearValues();
+        StepTrace trace = trackSteps ? this.trace : null;
+        int step = -1;
         Iterator<Object> e = postfix.iterator();
+        int index = -1;
         while (e.hasNext()) {
 
             Object o = e.next();
+            index++;
             if (o instanceof Num) {
                 Num value = (Num) o;
-                values.push(value);
+                pushValue(Value.of(value), index);
             }
             else if (o instanceof FunctionData) {
                 FunctionData function = (FunctionData) o;
-                values.push(function);
+                pushValue(function, index);
             }
             else if (o instanceof Operator) {
-                if (trackSteps)
-                    step = new LinkedList<Object>();
+                if (trace != null)
+                    step = trace.begin();
 
                 Operator operator = (Operator) o;
 
-                Num left = null;
-                Num right = null;
-
-                //
-                // Pop values from stack. First is right and second is left
-                //
+                Value left = null;
+                Value right = null;
                 Object oRight = null;
-                try {
-                    oRight = values.pop();
-                } catch(Exception eR) {
-                    throw new CalculatorException("Missing right operand");
-                }
-
                 Object oLeft = null;
+                Value result = null;
                 try {
-                    oLeft = values.pop();
-                } catch(Exception eL) {
-                    if (operator instanceof SubOperator || operator instanceof AddOperator) {
-                        oLeft = new Num(0);
-                    } else {
-                        throw new CalculatorException("Missing operand to the left of the operator '" + operator.getSymbol() + "'");
+                    //
+                    // Pop values from stack. First is right and second is left
+                    //
+                    if (valueCount == 0)
+                        throw new ErrorCode.Failure(ErrorCode.MISSING_OPERAND, "Missing right operand");
+                    int rightPosition = positions[valueCount - 1];
+                    oRight = popValue();
+
+                    int leftPosition = -1;
+                    if (valueCount != 0) {
+                        leftPosition = positions[valueCount - 1];
+                        oLeft = popValue();
+                    }
+                    else if (operator instanceof SubOperator || operator instanceof AddOperator)
+                        oLeft = Value.ZERO;
+                    else
+                        throw new ErrorCode.Failure(ErrorCode.MISSING_OPERAND, "Missing operand to the left of the operator '" + operator.getSymbol() + "'");
+
+                    if (trace != null)
+                        trace.setLeft(step, oLeft);
+                    if (oLeft instanceof FunctionData) {
+                        FunctionData fLeft = (FunctionData) oLeft;
+                        left = calculateFunction(calc, fLeft, leftPosition);
+                        if (left == null)
+                            return null;
+                        if (trace != null)
+                            trace.setLeftValue(step, left);
+                    }
+                    else {
+                        left = (Value) oLeft;
                     }
-                }
-
-                if (oLeft instanceof FunctionData) {
-                    FunctionData fLeft = (FunctionData) oLeft;
-                    trackStep(step, fLeft);
-                    left = fLeft.calculate(calc);
-                    trackStep(step, ":", left, null);
-                }
-                else {
-                    left = (Num) oLeft;
-                    trackStep(step, left);
-                }
 
-                trackStep(step, operator);
+                    if (trace != null) {
+                        trace.setOperator(step, operator);
+                        trace.setRight(step, oRight);
+                    }
+                    if (oRight instanceof FunctionData) {
+                        FunctionData fRight = (FunctionData) oRight;
+                        right = calculateFunction(calc, fRight, rightPosition);
+                        if (right == null)
+                            return null;
+                        if (trace != null)
+                            trace.setRightValue(step, right);
+                    }
+                    else {
+                        right = (Value) oRight;
+                    }
 
-                if (oRight instanceof FunctionData) {
-                    FunctionData fRight = (FunctionData) oRight;
-                    trackStep(step, fRight);
-                    right = fRight.calculate(calc);
-                    trackStep(step, ":", right, null);
-                }
-                else {
-                    right = (Num) oRight;
-                    trackStep(step, right);
-                }
+                    if (collectErrors && isDivisionByZero(operator, left, right)) {
+                        failure = Result.error(ErrorCode.DIVISION_BY_ZERO, operator.getSymbol(), index, null, "Division by zero");
+                        return null;
+                    }
 
-                Num result = null;
-                try {
-                    result = operator.calc(calc, left, right);
+                    result = operate(calc, operator, index, left, right, scales);
                 }
-                catch (Exception e1) {
-                    throw new CalculatorException(calc, "Error during calculation.", e1);
+                catch (RuntimeException ex) {
+                    if (collectErrors) {
+                        failure = Result.error(ErrorCode.of(ex), operator.getSymbol(), index, ex, null);
+                        return null;
+                    }
+                    // operands are captured, message is created when it is read
+                    throw new EvaluationException(calc, index, operator, oLeft, oLeft instanceof FunctionData ? left : null, 
+                            oRight, oRight instanceof FunctionData ? right : null, ex);
                 }
                 if (result == null)
-                    result = new Num();
+                    result = Value.ZERO;
 
-                trackStep(step, "\t = ", result, "");
+                if (trace != null)
+                    trace.setResult(step, result);
 
-                values.push(result);
-
-                if (steps != null)
-                    steps.add(trackStep(step));
+                pushValue(result, index);
             }
 
         }
 
-        Object oResult = values.pop();
-        Num result = null;
-        if (oResult instanceof Num)
-            result = (Num) oResult;
+        // operands without operator between them, e.g. (1 + 2)(3)
+        if (valueCount != 1)
+            throw new ErrorCode.Failure(valueCount == 0 ? ErrorCode.MISSING_OPERAND : ErrorCode.MISSING_OPERATOR, 
+                    valueCount == 0 ? "Missing operand" : "Missing operator between operands");
+
+        int position = positions[0];
+        Object oResult = popValue();
+        Value value = null;
+        if (oResult instanceof Value)
+            value = (Value) oResult;
         else if (oResult instanceof FunctionData) {
             FunctionData fd = (FunctionData)oResult;
-            result = fd.calculate(calc);
+            value = calculateFunction(calc, fd, position);
         }
-
-        if (trackSteps)
-            calc.setSteps(steps);
-
-        result.getProperties().load(calc.getProperties());
-        return result;
+        return value;
     }
 
-    private Step trackStep(LinkedList<Object> step)  {
-        StringBuilder sb = new StringBuilder();
-        StringBuilder sbDetail = new StringBuilder();
-        
-        if (step != null)
-            for (Object o : step) {
-                if (o instanceof Num) {
-                    Num d = (Num) o;
-                    sbDetail.append("[" + d.getProperties().toString() + "] " + d.toString());
-                    sb.append(d.toString());
-                }
-                else if (o instanceof FunctionData) {
-                    FunctionData fd = (FunctionData) o;
-                    sbDetail.append(fd.toStringWithDetail());
-                    sb.append(fd.toString());
-                }
-                else if (o instanceof Operator) {
-                    Operator op = (Operator) o;
-                    sb.append("\t" + op.getSymbol() + "  ");
-                }
-                else if (o instanceof String) {
-                    String s = (String) o;
-                    sb.append(s);
-                }
-                else {
-                    sb.append(o.toString());
+    /**
+     * Calculate function used as operand or as result of expression.
+     * If errors are collected, failure of argument or of function is recorded with position of function in postfix, 
+     * and operator which failed in argument or symbol of function.
+     * 
+     * @return value of function, or <tt>null</tt> if failure is recorded
+     */
+    private Value calculateFunction(AbstractCalculator calc, FunctionData fd, int position) {
+        if (!collectErrors)
+            return Value.of(fd.calculate(calc));
+
+        String symbol = fd.getFunction().getSymbol();
+        Object[] arguments = fd.getValues();
+        Num[] allValues = new Num[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] instanceof AbstractCalculator) {
+                Result argument = ((AbstractCalculator) arguments[i]).tryCalculate();
+                if (!argument.isSuccess()) {
+                    failure = argument.at(symbol, position);
+                    return null;
                 }
+                allValues[i] = argument.getValue();
             }
+            else {
+                allValues[i] = (Num) arguments[i];
+            }
+        }
 
-        return new Step(sb.toString(), sbDetail.toString());
+        try {
+            return Value.of(fd.calculate(calc, allValues));
+        }
+        catch (RuntimeException e) {
+            failure = Result.error(ErrorCode.of(e), symbol, position, e, null);
+            return null;
+        }
     }
 
-    private void trackStep(LinkedList<Object> step, Object o) {
-        trackStep(step, null, o, null);
+    private static boolean isDivisionByZero(Operator operator, Value left, Value right) {
+        if (operator instanceof DivOperator || operator instanceof ModOperator)
+            return right.getValue().signum() == 0;
+        if (operator instanceof PowOperator)
+            return left.getValue().signum() == 0 && right.getValue().signum() < 0;
+        return false;
     }
 
-    private void trackStep(LinkedList<Object> step, String before, Object o, String after) {
-        if (step != null) {
-            if (before != null && before.length() != 0)
-                step.add(before);
-
-            step.add(o);
-
-            if (after != null && after.length() != 0)
-                step.add(after);
+    /**
+     * Calculate single operation
+     */
+    private Value operate(AbstractCalculator calc, Operator operator, int index, Value left, Value right, int[] scales) {
+        Value result = null;
+        try {
+            if (operator instanceof ScaledOperator && operationScales.isResolved(index)) {
+                int scale = operationScales.getScale(index);
+                if (scales != null && scales[index] != PrecisionBudget.NOT_BUDGETED && !operationScales.hasOperandScale(index))
+                    scale = scales[index];
+                Rounding roundingMode = operationScales.getRoundingMode(index);
+                if (reduction.isReduced(index))
+                    result = reduction.calc(calc, index, left, right, scale, roundingMode);
+                if (result == null)
+                    result = ((ScaledOperator) operator).calc(calc, left, right, scale, roundingMode);
+            }
+            else if (scales != null && scales[index] != PrecisionBudget.NOT_BUDGETED && operator instanceof ScaledOperator && right.getScale() == null) {
+                result = ((ScaledOperator) operator).calc(calc, left, right, scales[index], right.getInheritedRoundingMode(calc));
+            }
+            else if (operator instanceof ValueOperator) {
+                if (reduction.isReduced(index))
+                    result = reduction.calc(calc, index, left, right, 0, null);
+                if (result == null)
+                    result = ((ValueOperator) operator).calc(calc, left, right);
+            }
+            else {
+                // custom operator works with Num
+                Num nResult = operator.calc(calc, left.toNum(), right.toNum());
+                if (nResult != null)
+                    result = Value.of(nResult);
+            }
+        }
+        catch (RuntimeException e) {
+            throw e;
         }
+        catch (Exception e) {
+            throw new CalculatorException(e);
+        }
+        return result;
     }
 
     private void missingBracketDetection(CList infix) throws CalculatorException {
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Rounding;
+import org.jdice.calc.extension.AddOperator;
+import org.jdice.calc.extension.DivOperator;
+import org.jdice.calc.extension.MulOperator;
+import org.jdice.calc.extension.PowOperator;
+import org.jdice.calc.extension.SubOperator;
+
+/**
+ * Calculate scale of every division in postfix expression, needed for result accurate to given output scale.
+ * <br/>
+ * First pass estimate lower and upper bound of absolute value of every operation.
+ * Second pass start from allowed error of result and split it to operands of every operation, by their influence on result.
+ * Division get scale for its part of allowed error. 
+ * Operations with unknown bounds (functions, custom operators) require full precision {@link Properties#DEFAULT_SCALE} from their operands.
+ * <br/>
+ * Result is within tolerance of exact result, but rounding to output scale can still differ if result is near rounding tie. 
+ * Such result is checked with {@link #isRoundedExactly(BigDecimal, int, Rounding)} and calculated again with full precision.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class PrecisionBudget {
+
+    /**
+     * Digits added to output scale, to cover approximation of bounds and keep rounding of result correct
+     */
+    public static final int GUARD_DIGITS = 3;
+
+    /**
+     * Scale of operation which is not calculated with budget
+     */
+    public static final int NOT_BUDGETED = -1;
+
+    private static final double EPS = 1e-12;
+
+    /**
+     * @param postfix
+     * @param outputScale
+     * @return scale for every element of postfix, {@link #NOT_BUDGETED} for elements which are not division, or <tt>null</tt> if expression is not valid
+     */
+    public static int[] getScales(CList postfix, int outputScale) {
+        Object[] items = postfix.toArray();
+        int n = items.length;
+
+        double[] hi = new double[n];
+        double[] lo = new double[n];
+        int[] left = new int[n];
+        int[] right = new int[n];
+        int[] stack = new int[n];
+        int sp = 0;
+
+        // bounds of absolute value, operands are always before operation
+        for (int i = 0; i < n; i++) {
+            Object o = items[i];
+            left[i] = -1;
+            right[i] = -1;
+
+            if (o instanceof Num) {
+                double v = Math.abs(((Num) o).doubleValue());
+                hi[i] = v * (1 + EPS) + Double.MIN_NORMAL;
+                lo[i] = Double.isInfinite(v) ? Double.MAX_VALUE : v * (1 - EPS);
+            }
+            else if (o instanceof Operator) {
+                if (sp == 0)
+                    return null;
+                right[i] = stack[--sp];
+                left[i] = sp > 0 ? stack[--sp] : -1; // unary minus, left is zero
+                bounds((Operator) o, i, items, left[i], right[i], hi, lo);
+            }
+            else {
+                hi[i] = Double.POSITIVE_INFINITY;
+                lo[i] = 0;
+            }
+            stack[sp++] = i;
+        }
+
+        if (sp != 1)
+            return null;
+
+        int[] scales = new int[n];
+        Arrays.fill(scales, NOT_BUDGETED);
+
+        double[] tolerance = new double[n];
+        tolerance[stack[0]] = 0.5 * Math.pow(10, -(outputScale + GUARD_DIGITS));
+
+        // operation is always after its operands, allowed error of operation is known before its operands
+        for (int i = n - 1; i >= 0; i--) {
+            if (!(items[i] instanceof Operator))
+                continue;
+
+            Operator operator = (Operator) items[i];
+            double t = tolerance[i];
+            int l = left[i];
+            int r = right[i];
+            double hiL = l >= 0 ? hi[l] : 0;
+            double loR = lo[r];
+
+            if (operator instanceof AddOperator || operator instanceof SubOperator) {
+                setTolerance(tolerance, l, t / 2);
+                setTolerance(tolerance, r, t / 2);
+            }
+            else if (operator instanceof MulOperator) {
+                setTolerance(tolerance, l, t / (2 * hi[r]));
+                setTolerance(tolerance, r, t / (2 * hiL));
+            }
+            else if (operator instanceof DivOperator) {
+                // error of left operand, error of right operand and rounding of division.
+                // Error of divisor is at most half of its value, so divisor stays above loR / 2
+                scales[i] = toScale(t / 3);
+                setTolerance(tolerance, l, t / 3 * loR);
+                setTolerance(tolerance, r, Math.min(loR / 2, t / 3 * loR * loR / (2 * hiL)));
+            }
+            else if (operator instanceof PowOperator && getExponent(items, r) != null) {
+                int ex = getExponent(items, r);
+                double loL = l >= 0 ? lo[l] : 0;
+                // upper bound of derivative ex * left^(ex - 1), while error of base is at most half (ex < 0) or whole (ex > 0) of its value
+                if (ex < 0) {
+                    double derivative = -ex / Math.pow(loL / 2, 1 - ex);
+                    scales[i] = toScale(t / 2);
+                    setTolerance(tolerance, l, Math.min(loL / 2, t / 2 / derivative));
+                }
+                else if (ex > 0) {
+                    double derivative = ex * Math.pow(2 * hiL, ex - 1);
+                    setTolerance(tolerance, l, Math.min(hiL, t / derivative));
+                }
+            }
+            // other operations keep zero tolerance for operands, which means full precision
+        }
+
+        return scales;
+    }
+
+    /**
+     * Check if result calculated with budget is rounded to output scale same as any value within tolerance of it,
+     * which include exact result. 
+     * 
+     * @param value result calculated with scales from {@link #getScales(CList, int)}
+     * @param outputScale
+     * @param roundingMode rounding mode of result, or <tt>null</tt> for default rounding mode
+     * @return <tt>false</tt> if result is near rounding tie (or near boundary of directed rounding), and should be calculated with full precision
+     */
+    public static boolean isRoundedExactly(BigDecimal value, int outputScale, Rounding roundingMode) {
+        if (roundingMode == null)
+            roundingMode = Properties.getDefaultRoundingMode();
+        if (roundingMode == Rounding.UNNECESSARY)
+            return false;
+
+        // tolerance of result is 0.5 * 10^-(outputScale + GUARD_DIGITS)
+        BigDecimal tolerance = BigDecimal.valueOf(5, outputScale + GUARD_DIGITS + 1);
+        BigDecimal lo = value.subtract(tolerance).setScale(outputScale, roundingMode.getRoundingMode());
+        BigDecimal hi = value.add(tolerance).setScale(outputScale, roundingMode.getRoundingMode());
+        return lo.compareTo(hi) == 0;
+    }
+
+    private static void bounds(Operator operator, int i, Object[] items, int l, int r, double[] hi, double[] lo) {
+        double hiL = l >= 0 ? hi[l] : 0;
+        double loL = l >= 0 ? lo[l] : 0;
+        double hiR = hi[r];
+        double loR = lo[r];
+
+        double h;
+        double w;
+        if (operator instanceof AddOperator || operator instanceof SubOperator) {
+            h = hiL + hiR;
+            w = Math.max(0, Math.max(loL - hiR, loR - hiL));
+        }
+        else if (operator instanceof MulOperator) {
+            h = hiL * hiR;
+            w = loL * loR;
+        }
+        else if (operator instanceof DivOperator) {
+            h = loR > 0 ? hiL / loR : Double.POSITIVE_INFINITY;
+            w = hiR > 0 ? loL / hiR : 0;
+        }
+        else if (operator instanceof PowOperator && getExponent(items, r) != null) {
+            int ex = getExponent(items, r);
+            if (ex > 0) {
+                h = Math.pow(hiL, ex);
+                w = Math.pow(loL, ex);
+            }
+            else if (ex < 0) {
+                h = loL > 0 ? 1 / Math.pow(loL, -ex) : Double.POSITIVE_INFINITY;
+                w = 1 / Math.pow(hiL, -ex);
+            }
+            else {
+                h = 1;
+                w = 1;
+            }
+        }
+        else {
+            h = Double.POSITIVE_INFINITY;
+            w = 0;
+        }
+
+        hi[i] = Double.isNaN(h) ? Double.POSITIVE_INFINITY : h * (1 + EPS);
+        lo[i] = Double.isNaN(w) ? 0 : w * (1 - EPS);
+    }
+
+    /**
+     * Integer exponent given as constant
+     */
+    private static Integer getExponent(Object[] items, int index) {
+        if (!(items[index] instanceof Num))
+            return null;
+
+        BigDecimal exponent = ((Num) items[index]).toBigDecimal();
+        if (exponent.signum() != 0 && exponent.stripTrailingZeros().scale() > 0)
+            return null;
+        if (exponent.abs().compareTo(BigDecimal.valueOf(999)) > 0)
+            return null;
+
+        return exponent.intValue();
+    }
+
+    private static void setTolerance(double[] tolerance, int index, double value) {
+        if (index >= 0)
+            tolerance[index] = value > 0 ? value : 0; // also NaN
+    }
+
+    private static int toScale(double tolerance) {
+        if (!(tolerance > 0))
+            return Properties.DEFAULT_SCALE;
+
+        double digits = Math.ceil(-Math.log10(tolerance));
+        if (digits < 0)
+            return 0;
+        return (int) Math.min(digits, Properties.DEFAULT_SCALE);
+    }
+}
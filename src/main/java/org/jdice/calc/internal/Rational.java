@@ -0,0 +1,274 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Immutable exact fraction <tt>numerator / denominator</tt>.
+ * <br/>
+ * Numerator and denominator are stored as <tt>long</tt> while they fit, otherwise as {@link BigInteger}.
+ * Fraction is not reduced after every operation, only when it's needed to stay in <tt>long</tt> range or to limit size of {@link BigInteger}.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public final class Rational {
+
+    public static final Rational ZERO = new Rational(0, 1);
+    public static final Rational ONE = new Rational(1, 1);
+
+    /** Bit length of big denominator after which fraction is reduced */
+    private static final int REDUCE_BIT_LENGTH = 256;
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final long num;
+    private final long den;
+    /** not null if fraction don't fit in long */
+    private final BigInteger bigNum;
+    private final BigInteger bigDen;
+
+    private Rational(long num, long den) {
+        this.num = num;
+        this.den = den;
+        this.bigNum = null;
+        this.bigDen = null;
+    }
+
+    private Rational(BigInteger num, BigInteger den) {
+        this.num = 0;
+        this.den = 0;
+        this.bigNum = num;
+        this.bigDen = den;
+    }
+
+    /**
+     * Create fraction, denominator must be positive
+     */
+    private static Rational of(BigInteger num, BigInteger den) {
+        if (fitsLong(num) && fitsLong(den))
+            return new Rational(num.longValue(), den.longValue());
+
+        if (den.bitLength() > REDUCE_BIT_LENGTH) {
+            BigInteger gcd = num.gcd(den);
+            if (gcd.bitLength() > 1) {
+                num = num.divide(gcd);
+                den = den.divide(gcd);
+                if (fitsLong(num) && fitsLong(den))
+                    return new Rational(num.longValue(), den.longValue());
+            }
+        }
+        return new Rational(num, den);
+    }
+
+    public static Rational valueOf(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        int scale = value.scale();
+        if (scale <= 0)
+            return of(unscaled.multiply(BigInteger.TEN.pow(-scale)), BigInteger.ONE);
+
+        if (scale < 19 && unscaled.bitLength() < 64)
+            return new Rational(unscaled.longValue(), TEN_POWERS[scale]).reduce();
+        return of(unscaled, BigInteger.TEN.pow(scale));
+    }
+
+    private static final long[] TEN_POWERS = new long[19];
+    static {
+        TEN_POWERS[0] = 1;
+        for (int i = 1; i < TEN_POWERS.length; i++)
+            TEN_POWERS[i] = TEN_POWERS[i - 1] * 10;
+    }
+
+    private static boolean fitsLong(BigInteger value) {
+        return value.bitLength() < 64;
+    }
+
+    /**
+     * Check if both values are in range where product fit in long
+     */
+    private static boolean small(long a, long b) {
+        return ((Math.abs(a) | Math.abs(b)) >>> 31) == 0;
+    }
+
+    private boolean isBig() {
+        return bigNum != null;
+    }
+
+    private BigInteger bigNum() {
+        return bigNum != null ? bigNum : BigInteger.valueOf(num);
+    }
+
+    private BigInteger bigDen() {
+        return bigDen != null ? bigDen : BigInteger.valueOf(den);
+    }
+
+    private static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Reduced fraction, only for fraction in <tt>long</tt> range
+     */
+    private Rational reduce() {
+        if (isBig() || num == Long.MIN_VALUE)
+            return this;
+        long g = gcd(num, den);
+        if (g <= 1)
+            return this;
+        return new Rational(num / g, den / g);
+    }
+
+    public int signum() {
+        return isBig() ? bigNum.signum() : (num > 0 ? 1 : (num < 0 ? -1 : 0));
+    }
+
+    public Rational negate() {
+        if (!isBig() && num != Long.MIN_VALUE)
+            return new Rational(-num, den);
+        return of(bigNum().negate(), bigDen());
+    }
+
+    public Rational add(Rational other) {
+        if (!isBig() && !other.isBig()) {
+            if (den == other.den && small(num, other.num))
+                return new Rational(num + other.num, den);
+
+            Rational a = this;
+            Rational b = other;
+            if (!small(a.num, b.den) || !small(b.num, a.den) || !small(a.den, b.den)) {
+                a = a.reduce();
+                b = b.reduce();
+            }
+            if (small(a.num, b.den) && small(b.num, a.den) && small(a.den, b.den))
+                return new Rational(a.num * b.den + b.num * a.den, a.den * b.den);
+        }
+        return of(bigNum().multiply(other.bigDen()).add(other.bigNum().multiply(bigDen())), bigDen().multiply(other.bigDen()));
+    }
+
+    public Rational subtract(Rational other) {
+        return add(other.negate());
+    }
+
+    public Rational multiply(Rational other) {
+        if (!isBig() && !other.isBig()) {
+            Rational a = this;
+            Rational b = other;
+            if (!small(a.num, b.num) || !small(a.den, b.den)) {
+                a = a.reduce();
+                b = b.reduce();
+            }
+            if (small(a.num, b.num) && small(a.den, b.den))
+                return new Rational(a.num * b.num, a.den * b.den);
+        }
+        return of(bigNum().multiply(other.bigNum()), bigDen().multiply(other.bigDen()));
+    }
+
+    /**
+     * @param other
+     * @return
+     * @throws ArithmeticException in case of division by zero
+     */
+    public Rational divide(Rational other) {
+        return multiply(other.reciprocal());
+    }
+
+    public Rational reciprocal() {
+        int signum = signum();
+        if (signum == 0)
+            throw new ArithmeticException("Division by zero");
+
+        if (!isBig() && num != Long.MIN_VALUE)
+            return signum > 0 ? new Rational(den, num) : new Rational(-den, -num);
+
+        BigInteger n = bigNum();
+        BigInteger d = bigDen();
+        return signum > 0 ? of(d, n) : of(d.negate(), n.negate());
+    }
+
+    public Rational pow(int exponent) {
+        if (exponent == 0)
+            return ONE;
+        if (exponent < 0)
+            return reciprocal().pow(-exponent);
+
+        // exponentiation by squaring
+        Rational result = ONE;
+        Rational base = this;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1)
+                result = result.multiply(base);
+            exponent >>= 1;
+            if (exponent > 0)
+                base = base.multiply(base);
+        }
+        return result;
+    }
+
+    /**
+     * Check if fraction is whole number
+     */
+    public boolean isInteger() {
+        if (!isBig())
+            return den == 1 || num % den == 0;
+        return bigNum.mod(bigDen).signum() == 0;
+    }
+
+    /**
+     * Decimal value rounded to given scale
+     * 
+     * @param scale
+     * @param roundingMode
+     * @return
+     */
+    public BigDecimal toBigDecimal(int scale, RoundingMode roundingMode) {
+        if (!isBig() && den == 1)
+            return BigDecimal.valueOf(num).setScale(scale, roundingMode);
+        if (!isBig())
+            return BigDecimal.valueOf(num).divide(BigDecimal.valueOf(den), scale, roundingMode);
+        return new BigDecimal(bigNum).divide(new BigDecimal(bigDen), scale, roundingMode);
+    }
+
+    /**
+     * Integer part of fraction, if it's in range of int
+     * 
+     * @return
+     * @throws ArithmeticException if fraction is not whole number in range of int
+     */
+    public int intValueExact() {
+        if (!isInteger())
+            throw new ArithmeticException("Rounding necessary");
+        BigInteger value = isBig() ? bigNum.divide(bigDen) : BigInteger.valueOf(num / den);
+        if (value.compareTo(BigInteger.valueOf(Integer.MIN_VALUE)) < 0 || value.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0)
+            throw new ArithmeticException("Overflow");
+        return value.intValue();
+    }
+
+    @Override
+    public String toString() {
+        return isBig() ? bigNum + "/" + bigDen : num + "/" + den;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Rounding;
+import org.jdice.calc.extension.AddOperator;
+import org.jdice.calc.extension.DivOperator;
+import org.jdice.calc.extension.MulOperator;
+import org.jdice.calc.extension.PowOperator;
+import org.jdice.calc.extension.SubOperator;
+
+/**
+ * Calculation from postfix with exact fractions ({@link Rational}), where result is rounded only once.
+ * <br/>
+ * Only numbers and operators <tt>+ - * /</tt> and <tt>^</tt> with whole exponent are supported. 
+ * For other expressions calculation return <tt>null</tt>, and expression should be calculated with {@link PostfixCalculator}.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class RationalCalculator {
+
+    /**
+     * Largest absolute value of exponent
+     */
+    private static final int MAX_EXPONENT = 999;
+
+    /**
+     * Check if postfix contains only numbers and supported operators
+     * 
+     * @param postfix
+     * @return
+     */
+    public static boolean isSupported(CList postfix) {
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (!(o instanceof Num) && !isSupported(o))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isSupported(Object o) {
+        Class<?> c = o.getClass();
+        return c == AddOperator.class || c == SubOperator.class || c == MulOperator.class || c == DivOperator.class || c == PowOperator.class;
+    }
+
+    /**
+     * Calculate postfix expression. Result is rounded to scale of calculator, or to output scale if calculator don't define scale.
+     * 
+     * @param calc
+     * @param postfix
+     * @return result or <tt>null</tt> if expression is not supported, or if it divides by zero
+     */
+    public static Num calculate(AbstractCalculator calc, CList postfix) {
+        if (!isSupported(postfix))
+            return null;
+
+        Rational[] stack = new Rational[postfix.size()];
+        int top = 0;
+
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Num) {
+                stack[top++] = Rational.valueOf(Value.of((Num) o).toBigDecimal());
+                continue;
+            }
+
+            Operator operator = (Operator) o;
+            if (top == 0)
+                return null;
+            Rational right = stack[--top];
+            Rational left = null;
+            if (top > 0)
+                left = stack[--top];
+            else if (operator instanceof AddOperator || operator instanceof SubOperator)
+                left = Rational.ZERO;
+            else
+                return null; // missing operand, reported by standard calculation
+
+            if (right.signum() == 0 && operator instanceof DivOperator || left.signum() == 0 && right.signum() < 0 && operator instanceof PowOperator)
+                return null; // division by zero, reported with position of operator by standard calculation
+
+            Rational result = null;
+            if (operator instanceof AddOperator)
+                result = left.add(right);
+            else if (operator instanceof SubOperator)
+                result = left.subtract(right);
+            else if (operator instanceof MulOperator)
+                result = left.multiply(right);
+            else if (operator instanceof DivOperator)
+                result = left.divide(right);
+            else {
+                if (!right.isInteger())
+                    return null;
+                int exponent = right.intValueExact();
+                if (Math.abs(exponent) > MAX_EXPONENT)
+                    return null;
+                result = left.pow(exponent);
+            }
+            stack[top++] = result;
+        }
+
+        if (top != 1)
+            return null;
+
+        Integer scale = calc.getScale();
+        boolean outputScale = scale == null && calc.getOutputScale() != null;
+        if (scale == null)
+            scale = outputScale ? calc.getOutputScale() : Properties.DEFAULT_SCALE;
+        Rounding roundingMode = calc.getRoundingMode();
+        if (roundingMode == null)
+            roundingMode = Properties.getDefaultRoundingMode();
+
+        BigDecimal value = stack[0].toBigDecimal(scale, roundingMode.getRoundingMode());
+        Num result = new Num(value);
+        result.getProperties().load(calc.getProperties());
+        if (outputScale)
+            result.setScale(scale);
+        return result;
+    }
+}
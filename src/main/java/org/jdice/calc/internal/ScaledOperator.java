@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Rounding;
+
+/**
+ * {@link ValueOperator} which result depends on scale, e.g. division. 
+ * Used when scale of operation is defined by calculation, instead of inherited from operand or calculator.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public interface ScaledOperator extends ValueOperator {
+
+    /**
+     * Calculate value with given scale and rounding mode
+     * 
+     * @param calc
+     * @param left
+     * @param right
+     * @param scale
+     * @param roundingMode
+     * @return
+     */
+    public Value calc(AbstractCalculator calc, Value left, Value right, int scale, Rounding roundingMode);
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.extension.AddOperator;
+import org.jdice.calc.extension.DivOperator;
+import org.jdice.calc.extension.ModOperator;
+import org.jdice.calc.extension.MulOperator;
+import org.jdice.calc.extension.PowOperator;
+import org.jdice.calc.extension.SubOperator;
+
+/**
+ * Algebraic simplification of postfix expression.
+ * <ul>
+ * <li>identity: <tt>x + 0</tt>, <tt>0 + x</tt>, <tt>+x</tt>, <tt>x - 0</tt>, <tt>x * 1</tt>, <tt>1 * x</tt> are replaced with <tt>x</tt></li>
+ * <li>annihilator: <tt>0 * x</tt> and <tt>x * 0</tt> are replaced with <tt>0</tt>, if <tt>x</tt> contains only numbers and <tt>+ - *</tt></li>
+ * <li>double negation: <tt>-(-x)</tt> and <tt>0 - (0 - x)</tt> are replaced with <tt>x</tt></li>
+ * </ul>
+ * Brackets are not part of postfix expression, so redundant brackets are already removed by conversion to postfix.
+ * <br/>
+ * Simplified expression has same result only if trailing zeros of intermediate values and of result are stripped,
+ * so scale of removed operation can't be seen. See {@link #isApplicable(AbstractCalculator)}.
+ * Operand with own properties, or function, replace operation only if it is operand of <tt>+ - *</tt>,
+ * where its scale and rounding mode are not used.
+ * <br/>
+ * Simplification is valid until value or properties of any number in expression are changed, which is detected with modification stamps.
+ * <br/>
+ * Tree of long expression is deep, so it is walked in postfix order or with explicit stack, without recursion.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class Simplifier {
+
+    // position of node
+    private static final int ROOT = 0;
+    private static final int ARITHMETIC = 1; // operand of + - *
+    private static final int SCALED = 2; // operand of / % ^
+    private static final int OTHER = 3; // operand of custom operator
+
+    private static class Node {
+        // Num, FunctionData or Operator
+        private final Object item;
+        // null for missing left operand of + or -
+        private Node left;
+        private Node right;
+        // position of node in its operation
+        private int position = ROOT;
+        // simplified node, which replaces this node
+        private Node replacement = this;
+        // node can be removed without changing result or error of calculation
+        private boolean arithmetic;
+
+        private Node(Object item) {
+            this.item = item;
+        }
+    }
+
+    private final CList postfix;
+    private final int size;
+    private final CList simplified;
+    private final int removed;
+
+    // numbers in expression, with their stamps at time of simplification
+    private final Num[] sources;
+    private final long[] sourceStamps;
+
+    private Simplifier(CList postfix) {
+        this.postfix = postfix;
+        this.size = postfix.size();
+
+        ArrayList<Num> nums = new ArrayList<Num>();
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            if (o instanceof Num)
+                nums.add((Num) o);
+        }
+        sources = nums.toArray(new Num[nums.size()]);
+        sourceStamps = new long[sources.length];
+        for (int i = 0; i < sources.length; i++)
+            sourceStamps[i] = sources[i].getStamp();
+
+        Node[] nodes = new Node[size];
+        Node root = toTree(postfix, nodes);
+        if (root != null) {
+            simplified = new CList();
+            toPostfix(simplify(nodes), simplified);
+        }
+        else {
+            simplified = postfix; // reported by calculation
+        }
+        removed = postfix.size() - simplified.size();
+    }
+
+    /**
+     * Build tree in same order as operands are taken during calculation
+     * 
+     * @param nodes filled with nodes in postfix order
+     * @return root node or <tt>null</tt> if expression can't be calculated
+     */
+    private static Node toTree(CList postfix, Node[] nodes) {
+        Node[] stack = new Node[postfix.size()];
+        int top = 0;
+        int index = 0;
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            Node node = new Node(o);
+            if (o instanceof Operator) {
+                if (top == 0)
+                    return null;
+                node.right = stack[--top];
+
+                if (top > 0)
+                    node.left = stack[--top];
+                else if (!(o instanceof AddOperator || o instanceof SubOperator))
+                    return null;
+            }
+            stack[top++] = node;
+            nodes[index++] = node;
+        }
+        return top == 1 ? stack[0] : null;
+    }
+
+    /**
+     * Write tree in postfix order, which is reverse of order where node is written before its right and left operand
+     */
+    private static void toPostfix(Node root, CList out) {
+        ArrayList<Node> reversed = new ArrayList<Node>();
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            reversed.add(node);
+            if (node.left != null)
+                stack.push(node.left);
+            if (node.right != null)
+                stack.push(node.right);
+        }
+
+        for (int i = reversed.size() - 1; i >= 0; i--) {
+            Node node = reversed.get(i);
+            if (node.item instanceof Num)
+                out.add((Num) node.item);
+            else if (node.item instanceof FunctionData)
+                out.add((FunctionData) node.item);
+            else
+                out.add((Operator) node.item);
+        }
+    }
+
+    private static int getOperandPosition(Node node) {
+        Class<?> c = node.item.getClass();
+        if (c == AddOperator.class || c == SubOperator.class || c == MulOperator.class)
+            return ARITHMETIC;
+        else if (c == DivOperator.class || c == ModOperator.class || c == PowOperator.class)
+            return SCALED;
+        return OTHER;
+    }
+
+    /**
+     * Simplify nodes in postfix order, so operands are simplified before their operation
+     * 
+     * @param nodes tree in postfix order, last node is root
+     * @return simplified root
+     */
+    private static Node simplify(Node[] nodes) {
+        // position of operand is known from its operator, which is after operand in postfix
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            Node node = nodes[i];
+            if (node.item instanceof Operator) {
+                int operandPosition = getOperandPosition(node);
+                if (node.left != null)
+                    node.left.position = operandPosition;
+                node.right.position = operandPosition;
+            }
+        }
+
+        for (Node node : nodes) {
+            if (!(node.item instanceof Operator)) {
+                node.arithmetic = node.item instanceof Num && toBigDecimal(node) != null;
+                continue;
+            }
+
+            if (node.left != null)
+                node.left = node.left.replacement;
+            node.right = node.right.replacement;
+
+            Class<?> c = node.item.getClass();
+            if (getOperandPosition(node) != ARITHMETIC)
+                continue;
+
+            node.arithmetic = (node.left == null || node.left.arithmetic) && node.right.arithmetic;
+            Node reduced = reduce(c, node);
+            if (reduced != null && canReplace(reduced, node.position))
+                node.replacement = reduced;
+        }
+        return nodes[nodes.length - 1].replacement;
+    }
+
+    private static Node reduce(Class<?> operator, Node node) {
+        Node left = node.left;
+        Node right = node.right;
+
+        if (operator == AddOperator.class) {
+            if (left == null || isConstant(right, BigDecimal.ZERO))
+                return left == null ? right : left;
+            if (isConstant(left, BigDecimal.ZERO))
+                return right;
+        }
+        else if (operator == SubOperator.class) {
+            if (left != null && isConstant(right, BigDecimal.ZERO))
+                return left;
+            if (isNegation(node) && isNegation(right))
+                return right.right;
+        }
+        else if (operator == MulOperator.class) {
+            if (isConstant(right, BigDecimal.ONE))
+                return left;
+            if (isConstant(left, BigDecimal.ONE))
+                return right;
+            if (isConstant(right, BigDecimal.ZERO) && left.arithmetic)
+                return right;
+            if (isConstant(left, BigDecimal.ZERO) && right.arithmetic)
+                return left;
+        }
+        return null;
+    }
+
+    /**
+     * Check if node is <tt>-x</tt> or <tt>0 - x</tt>
+     */
+    private static boolean isNegation(Node node) {
+        return node.item.getClass() == SubOperator.class && (node.left == null || isConstant(node.left, BigDecimal.ZERO));
+    }
+
+    private static boolean isConstant(Node node, BigDecimal constant) {
+        BigDecimal value = toBigDecimal(node);
+        return value != null && value.compareTo(constant) == 0;
+    }
+
+    private static BigDecimal toBigDecimal(Node node) {
+        if (!(node.item instanceof Num))
+            return null;
+
+        try {
+            return Value.of((Num) node.item).toBigDecimal();
+        }
+        catch (ArithmeticException e) {
+            return null; // reported by calculation
+        }
+    }
+
+    /**
+     * Check if node can replace operation at given position.
+     * Result of operation don't have properties, so it is same as result of another operation or number without properties.
+     */
+    private static boolean canReplace(Node node, int position) {
+        if (position == OTHER)
+            return false;
+
+        if (node.item instanceof Operator || (node.item instanceof Num && !((Num) node.item).hasProperties()))
+            return true;
+
+        return position == ARITHMETIC;
+    }
+
+    /**
+     * Simplify given postfix expression
+     * 
+     * @param postfix
+     * @return
+     */
+    public static Simplifier simplify(CList postfix) {
+        return new Simplifier(postfix);
+    }
+
+    /**
+     * Check if simplified expression has same result as original expression for given calculator.
+     * <br/>
+     * Trailing zeros of intermediate values and of result must be stripped, default scale must not be defined,
+     * and scale of divisions must not be calculated from output scale, because it depends on structure of expression.
+     * 
+     * @param calc
+     * @return
+     */
+    public static boolean isApplicable(AbstractCalculator calc) {
+        return Properties.hasDefaultStripTrailingZeros() && Properties.getDefaultScale() == null && calc.hasStripTrailingZeros()
+                && (calc.getOutputScale() == null || calc.getScale() != null);
+    }
+
+    /**
+     * Check if simplification can be used for given postfix expression
+     * 
+     * @param postfix
+     * @return FALSE if postfix is different, or value or properties of any number are changed
+     */
+    public boolean isValid(CList postfix) {
+        if (this.postfix != postfix || size != postfix.size())
+            return false;
+
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i].getStamp() != sourceStamps[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Simplified postfix expression, or original expression if it can't be simplified
+     * 
+     * @return
+     */
+    public CList getPostfix() {
+        return simplified;
+    }
+
+    /**
+     * Number of numbers, functions and operators removed from postfix expression
+     * 
+     * @return
+     */
+    public int getRemoved() {
+        return removed;
+    }
+}
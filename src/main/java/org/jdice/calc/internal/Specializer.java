@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jdice.calc.internal;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.CalculatorException;
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.extension.AddOperator;
+import org.jdice.calc.extension.MulOperator;
+import org.jdice.calc.extension.SubOperator;
+
+/**
+ * Partial evaluation of postfix expression. Parts of expression which don't depend on variables are calculated,
+ * and expression is converted back to infix with calculated values.
+ * <br/>
+ * Part of expression is calculated with standard calculation of {@link PostfixCalculator}, and replaced with its result
+ * without properties, same as intermediate value. Function is calculated only if it is {@link org.jdice.calc.PureFunction}
+ * and all its arguments are numbers. Part which can't be calculated, e.g. because of division by zero, stays in expression,
+ * so error is reported when specialized expression is calculated.
+ * <br/>
+ * Exact rational calculation and budget of division scales use whole expression, so with those options only parts
+ * with numbers and <tt>+ - *</tt> are calculated, because their result is exact, and functions stay in expression
+ * because they decide if expression is calculated with exact fractions.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class Specializer {
+
+    private static class Node {
+        // Num, FunctionData or Operator
+        private final Object item;
+        // null for missing left operand of + or -
+        private Node left;
+        private Node right;
+        private boolean fixed;
+        // positions of first and last item of node's subexpression in postfix
+        private int start;
+        private int end;
+
+        private Node(Object item) {
+            this.item = item;
+        }
+    }
+
+    private final AbstractCalculator calc;
+    private final Set<Num> variables;
+    private final boolean exact;
+    // nodes in postfix order, so operands are before their operator
+    private Node[] nodes;
+
+    private Specializer(AbstractCalculator calc, Set<Num> variables) {
+        this.calc = calc;
+        this.variables = variables;
+        this.exact = calc.isExactRational() || (calc.getOutputScale() != null && calc.getScale() == null);
+    }
+
+    /**
+     * Calculate parts of postfix expression which don't use given variables
+     * 
+     * @param calc calculator with properties used for calculation
+     * @param postfix
+     * @param variables numbers which are variables, all other numbers are constants
+     * @return infix expression
+     */
+    public static CList specialize(AbstractCalculator calc, CList postfix, Set<Num> variables) {
+        Specializer specializer = new Specializer(calc, variables);
+        Node root = specializer.toTree(postfix);
+        if (root == null)
+            throw new CalculatorException("Can't specialize expression. Check if expression is correct: " + calc.getInfix());
+
+        specializer.mark();
+
+        CList infix = new CList();
+        toInfix(specializer.fold(root), infix);
+        return infix;
+    }
+
+    /**
+     * Build tree in same order as operands are taken during calculation.
+     * Tree of long expression is deep, so it is walked without recursion.
+     * 
+     * @return root node or <tt>null</tt> if expression can't be calculated
+     */
+    private Node toTree(CList postfix) {
+        nodes = new Node[postfix.size()];
+        Node[] stack = new Node[postfix.size()];
+        int top = 0;
+        int index = 0;
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            Node node = new Node(o);
+            node.start = index;
+            node.end = index;
+            if (o instanceof Operator) {
+                if (top == 0)
+                    return null;
+                node.right = stack[--top];
+                node.start = node.right.start;
+
+                if (top > 0) {
+                    node.left = stack[--top];
+                    node.start = node.left.start;
+                }
+                else if (!(o instanceof AddOperator || o instanceof SubOperator))
+                    return null;
+            }
+            stack[top++] = node;
+            nodes[index++] = node;
+        }
+        return top == 1 ? stack[0] : null;
+    }
+
+    private void mark() {
+        for (Node node : nodes) {
+            if (node.item instanceof Num) {
+                node.fixed = !variables.contains(node.item);
+            }
+            else if (node.item instanceof FunctionData) {
+                FunctionData fd = (FunctionData) node.item;
+                node.fixed = fd.isPure() && !exact;
+                for (Object value : fd.getValues()) {
+                    if (!(value instanceof Num) || variables.contains(value))
+                        node.fixed = false;
+                }
+            }
+            else {
+                // operands are marked before operator
+                Class<?> c = node.item.getClass();
+                boolean allowed = !exact || c == AddOperator.class || c == SubOperator.class || c == MulOperator.class;
+                node.fixed = allowed && (node.left == null || node.left.fixed) && node.right.fixed;
+            }
+        }
+    }
+
+    /**
+     * Replace largest fixed parts of expression with calculated values
+     */
+    private Node fold(Node root) {
+        Node value = calculated(root);
+        if (value != null)
+            return value;
+
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (!(node.item instanceof Operator))
+                continue;
+
+            if (node.left != null) {
+                value = calculated(node.left);
+                if (value != null)
+                    node.left = value;
+                else
+                    stack.push(node.left);
+            }
+            value = calculated(node.right);
+            if (value != null)
+                node.right = value;
+            else
+                stack.push(node.right);
+        }
+        return root;
+    }
+
+    /**
+     * @return node with calculated value of fixed part of expression, or <tt>null</tt> if node isn't calculated
+     */
+    private Node calculated(Node node) {
+        if (!node.fixed || node.item instanceof Num)
+            return null;
+        Num value = calculate(node);
+        return value != null ? new Node(value) : null;
+    }
+
+    private Num calculate(Node node) {
+        try {
+            if (node.item instanceof FunctionData) {
+                Num result = ((FunctionData) node.item).calculate(calc);
+                return result != null ? result.clone() : null;
+            }
+
+            // calculated node isn't changed by folding, so its subexpression is still in postfix order
+            CList postfix = new CList();
+            for (int i = node.start; i <= node.end; i++)
+                add(nodes[i].item, postfix);
+            return new Num(new PostfixCalculator().calculateValue(calc, postfix).getValue());
+        }
+        catch (RuntimeException e) {
+            return null; // reported by calculation of specialized expression
+        }
+    }
+
+    /**
+     * Write tree in infix notation, with brackets only where they are needed to keep same order of calculation.
+     * Stack contains nodes which are not written yet, and items (operators and brackets) which are written as they are.
+     */
+    private static void toInfix(Node root, CList out) {
+        ArrayDeque<Object> stack = new ArrayDeque<Object>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Object o = stack.pop();
+            if (!(o instanceof Node)) {
+                add(o, out);
+                continue;
+            }
+
+            Node node = (Node) o;
+            if (!(node.item instanceof Operator)) {
+                add(node.item, out);
+                continue;
+            }
+
+            // pushed in reverse order of writing: left operand, operator, right operand
+            int priority = ((Operator) node.item).getPriority();
+            // operand of unary operator and unary operator as operand are always within brackets
+            push(stack, node.right, isOperator(node.right) && (node.left == null || node.right.left == null || getPriority(node.right) <= priority));
+            stack.push(node.item);
+            if (node.left != null)
+                push(stack, node.left, isOperator(node.left) && (node.left.left == null || getPriority(node.left) < priority));
+        }
+    }
+
+    private static void push(ArrayDeque<Object> stack, Node node, boolean withinBrackets) {
+        if (withinBrackets)
+            stack.push(Bracket.CLOSE);
+        stack.push(node);
+        if (withinBrackets)
+            stack.push(Bracket.OPEN);
+    }
+
+    private static boolean isOperator(Node node) {
+        return node.item instanceof Operator;
+    }
+
+    private static int getPriority(Node node) {
+        return ((Operator) node.item).getPriority();
+    }
+
+    private static void add(Object item, CList out) {
+        if (item instanceof Num)
+            out.add((Num) item);
+        else if (item instanceof FunctionData)
+            out.add((FunctionData) item);
+        else if (item instanceof Bracket)
+            out.add((Bracket) item);
+        else
+            out.add((Operator) item);
+    }
+}
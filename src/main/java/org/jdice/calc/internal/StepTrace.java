@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.util.LinkedList;
+
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Step;
+
+/**
+ * Steps of calculation recorded as references to operands, operator and result, in preallocated ring buffer.
+ * <br/>
+ * Nothing is allocated while steps are recorded. Text of {@link Step} is rendered only when steps are read.
+ * When there are more steps than capacity of buffer, only latest steps are kept.
+ * Functions are rendered with current values of their arguments.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ */
+public class StepTrace {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Object[] lefts;
+    private final Value[] leftValues;
+    private final Operator[] operators;
+    private final Object[] rights;
+    private final Value[] rightValues;
+    private final Value[] results;
+    private long count = 0;
+
+    public StepTrace(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity of trace must be positive: " + capacity);
+
+        this.capacity = capacity;
+        this.lefts = new Object[capacity];
+        this.leftValues = new Value[capacity];
+        this.operators = new Operator[capacity];
+        this.rights = new Object[capacity];
+        this.rightValues = new Value[capacity];
+        this.results = new Value[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Start new step
+     * 
+     * @return index of step in buffer
+     */
+    public int begin() {
+        int i = (int) (count++ % capacity);
+        lefts[i] = null;
+        leftValues[i] = null;
+        operators[i] = null;
+        rights[i] = null;
+        rightValues[i] = null;
+        results[i] = null;
+        return i;
+    }
+
+    /**
+     * @param i index of step
+     * @param operand {@link Value} or {@link FunctionData}
+     */
+    public void setLeft(int i, Object operand) {
+        lefts[i] = operand;
+    }
+
+    /**
+     * Calculated value of left operand which is function
+     */
+    public void setLeftValue(int i, Value value) {
+        leftValues[i] = value;
+    }
+
+    public void setOperator(int i, Operator operator) {
+        operators[i] = operator;
+    }
+
+    /**
+     * @param i index of step
+     * @param operand {@link Value} or {@link FunctionData}
+     */
+    public void setRight(int i, Object operand) {
+        rights[i] = operand;
+    }
+
+    /**
+     * Calculated value of right operand which is function
+     */
+    public void setRightValue(int i, Value value) {
+        rightValues[i] = value;
+    }
+
+    public void setResult(int i, Value result) {
+        results[i] = result;
+    }
+
+    /**
+     * Number of steps in buffer
+     * 
+     * @return
+     */
+    public int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /**
+     * Number of steps recorded since trace was cleared, including steps which are not kept in buffer
+     * 
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Render finished steps, from oldest to latest
+     * 
+     * @return
+     */
+    public LinkedList<Step> getSteps() {
+        LinkedList<Step> steps = new LinkedList<Step>();
+        for (long n = count - size(); n < count; n++) {
+            int i = (int) (n % capacity);
+            if (results[i] != null)
+                steps.add(toStep(i));
+        }
+        return steps;
+    }
+
+    /**
+     * Render latest step, which is not finished if calculation failed during that step
+     * 
+     * @return
+     */
+    public Step getLastStep() {
+        if (count == 0)
+            return new Step("", "");
+        return toStep((int) ((count - 1) % capacity));
+    }
+
+    private Step toStep(int i) {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder sbDetail = new StringBuilder();
+
+        if (lefts[i] != null)
+            append(sb, sbDetail, lefts[i], leftValues[i]);
+        if (operators[i] != null)
+            sb.append("\t").append(operators[i].getSymbol()).append("  ");
+        if (rights[i] != null)
+            append(sb, sbDetail, rights[i], rightValues[i]);
+        if (results[i] != null) {
+            sb.append("\t = ");
+            append(sb, sbDetail, results[i]);
+        }
+
+        return new Step(sb.toString(), sbDetail.toString());
+    }
+
+    private void append(StringBuilder sb, StringBuilder sbDetail, Object operand, Value value) {
+        append(sb, sbDetail, operand);
+        if (value != null) {
+            sb.append(":");
+            append(sb, sbDetail, value);
+        }
+    }
+
+    private void append(StringBuilder sb, StringBuilder sbDetail, Object o) {
+        if (o instanceof Value) {
+            Num d = ((Value) o).toNum();
+            sbDetail.append("[").append(d.getProperties().toString()).append("] ").append(d.toString());
+            sb.append(d.toString());
+        }
+        else if (o instanceof FunctionData) {
+            FunctionData fd = (FunctionData) o;
+            sbDetail.append(fd.toStringWithDetail());
+            sb.append(fd.toString());
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Num;
+import org.jdice.calc.Operator;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Rounding;
+import org.jdice.calc.extension.DivOperator;
+import org.jdice.calc.extension.MulOperator;
+import org.jdice.calc.extension.PowOperator;
+
+/**
+ * Cheaper calculation of operations with constant operand, prepared once for postfix expression.
+ * <ul>
+ * <li><tt>x / 10^k</tt> is calculated by moving decimal point and rounding to scale of division</li>
+ * <li><tt>x * 10^k</tt> is calculated by moving decimal point</li>
+ * <li><tt>x ^ n</tt> for whole <tt>n</tt> from 1 to 8 is calculated by multiplication</li>
+ * <li><tt>x ^ 0.5</tt> is calculated as square root</li>
+ * </ul>
+ * Result is same as result of operator, except for <tt>x ^ 0.5</tt> where result can differ in last digit
+ * when exact value is close to half of last digit. Power is calculated by multiplication only if result of operator would not be rounded.
+ * <br/>
+ * Prepared operations are valid until value or properties of constant operand are changed, which is detected with modification stamps.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public class StrengthReduction {
+
+    private static final int NONE = 0;
+    private static final int DIVIDE_POWER_OF_TEN = 1;
+    private static final int MULTIPLY_POWER_OF_TEN = 2;
+    private static final int POWER = 3;
+    private static final int SQUARE_ROOT = 4;
+
+    /**
+     * Largest whole exponent calculated by multiplication
+     */
+    private static final int MAX_EXPONENT = 8;
+
+    private static final BigDecimal HALF = new BigDecimal("0.5");
+
+    /**
+     * Stack marker for value which is not constant
+     */
+    private static final Object VARIABLE = new Object();
+
+    private final CList postfix;
+    private final int[] kinds;
+    // power of ten or exponent
+    private final int[] arguments;
+    // TRUE if constant is left operand of multiplication
+    private final boolean[] constantLeft;
+
+    // constant operands, with their stamps at time of preparation
+    private final Num[] sources;
+    private final long[] sourceStamps;
+
+    private StrengthReduction(CList postfix) {
+        this.postfix = postfix;
+
+        int size = postfix.size();
+        kinds = new int[size];
+        arguments = new int[size];
+        constantLeft = new boolean[size];
+
+        ArrayList<Num> nums = new ArrayList<Num>();
+        Object[] stack = new Object[size];
+        int top = 0;
+        int index = -1;
+        Iterator<Object> it = postfix.iterator();
+        while (it.hasNext()) {
+            Object o = it.next();
+            index++;
+            if (!(o instanceof Operator)) {
+                stack[top++] = o instanceof Num ? o : VARIABLE;
+                continue;
+            }
+
+            Object right = top > 0 ? stack[--top] : null;
+            Object left = top > 0 ? stack[--top] : null;
+            stack[top++] = VARIABLE;
+
+            Class<?> c = o.getClass();
+            if (right instanceof Num && prepare(c, index, toBigDecimal((Num) right)))
+                nums.add((Num) right);
+            else if (c == MulOperator.class && left instanceof Num && prepare(c, index, toBigDecimal((Num) left))) {
+                constantLeft[index] = true;
+                nums.add((Num) left);
+            }
+        }
+
+        sources = nums.toArray(new Num[nums.size()]);
+        sourceStamps = new long[sources.length];
+        for (int i = 0; i < sources.length; i++)
+            sourceStamps[i] = sources[i].getStamp();
+    }
+
+    private boolean prepare(Class<?> operator, int index, BigDecimal constant) {
+        if (constant == null)
+            return false;
+
+        if (operator == DivOperator.class && constant.signum() > 0) {
+            BigDecimal stripped = constant.stripTrailingZeros();
+            if (BigInteger.ONE.equals(stripped.unscaledValue()))
+                return set(index, DIVIDE_POWER_OF_TEN, -stripped.scale());
+        }
+        else if (operator == MulOperator.class && constant.signum() > 0) {
+            // product has unscaled value of other operand only if unscaled value of constant is 1
+            if (BigInteger.ONE.equals(constant.unscaledValue()))
+                return set(index, MULTIPLY_POWER_OF_TEN, -constant.scale());
+        }
+        else if (operator == PowOperator.class) {
+            if (constant.compareTo(HALF) == 0)
+                return set(index, SQUARE_ROOT, 0);
+            if (constant.signum() > 0 && constant.compareTo(BigDecimal.valueOf(MAX_EXPONENT)) <= 0 && constant.stripTrailingZeros().scale() <= 0)
+                return set(index, POWER, constant.intValue());
+        }
+        return false;
+    }
+
+    private boolean set(int index, int kind, int argument) {
+        kinds[index] = kind;
+        arguments[index] = argument;
+        return true;
+    }
+
+    private static BigDecimal toBigDecimal(Num num) {
+        try {
+            return Value.of(num).toBigDecimal();
+        }
+        catch (ArithmeticException e) {
+            return null; // reported by calculation
+        }
+    }
+
+    /**
+     * Prepare operations with constant operand in given postfix expression
+     * 
+     * @param postfix
+     * @return
+     */
+    public static StrengthReduction prepare(CList postfix) {
+        return new StrengthReduction(postfix);
+    }
+
+    /**
+     * Check if prepared operations can be used for calculation of given postfix expression
+     * 
+     * @param postfix
+     * @return FALSE if postfix is different, or value or properties of constant operand are changed
+     */
+    public boolean isValid(CList postfix) {
+        if (this.postfix != postfix || kinds.length != postfix.size())
+            return false;
+
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i].getStamp() != sourceStamps[i])
+                return false;
+        }
+        return true;
+    }
+
+    public boolean isReduced(int index) {
+        return kinds[index] != NONE;
+    }
+
+    /**
+     * Calculate operation at given position of postfix expression
+     * 
+     * @param calc
+     * @param index
+     * @param left
+     * @param right
+     * @param scale scale of operation, not used for multiplication
+     * @param roundingMode rounding mode of operation, not used for multiplication
+     * @return result or <tt>null</tt> if operation should be calculated by operator
+     */
+    public Value calc(AbstractCalculator calc, int index, Value left, Value right, int scale, Rounding roundingMode) {
+        switch (kinds[index]) {
+            case DIVIDE_POWER_OF_TEN:
+                return Value.of(left.toBigDecimal().scaleByPowerOfTen(-arguments[index]).setScale(scale, roundingMode.getBigDecimalRound()));
+            case MULTIPLY_POWER_OF_TEN:
+                BigDecimal value = constantLeft[index] ? right.toBigDecimal() : left.toBigDecimal();
+                return Value.of(value.scaleByPowerOfTen(arguments[index]));
+            case POWER:
+                BigDecimal base = left.toBigDecimal();
+                if (base.signum() == 0)
+                    return Value.of(BigDecimal.ZERO);
+                BigDecimal power = PowOperator.powExact(base, arguments[index]);
+                return power != null ? Value.of(power) : null;
+            case SQUARE_ROOT:
+                BigDecimal x = left.toBigDecimal();
+                if (x.signum() < 0)
+                    return null;
+                if (x.signum() == 0)
+                    return Value.of(BigDecimal.ZERO);
+                // fractional exponent is calculated to scale of calculator
+                return Value.of(BigMath.sqrt(x, Properties.getInheritedScale(calc), roundingMode.getRoundingMode()));
+            default:
+                return null;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.jdice.calc.Operator;
 
 /**
  * Class which hold used extension (operators, functions). In global and local scope.
+ * <br/>
+ * Registration replace maps instead of changing them (copy on write), so registered extensions can be read from multiple threads without locking.
  *  
  * @author Davor Sauer <davor.sauer@gmail.com>
  *
@@ -31,23 +33,30 @@ import org.jdice.calc.Operator;
 public class UseExtension {
 
     /** Operators -> operator class */
-    private HashMap<String, Class<? extends Operator>> operatorSymbols = new HashMap<String, Class<? extends Operator>>();
+    private volatile HashMap<String, Class<? extends Operator>> operatorSymbols = new HashMap<String, Class<? extends Operator>>();
 
     /** Operator class -> Operator class instance */
-    private HashMap<Class<? extends Operator>, Operator> operatorCache = new HashMap<Class<? extends Operator>, Operator>();
+    private volatile HashMap<Class<? extends Operator>, Operator> operatorCache = new HashMap<Class<? extends Operator>, Operator>();
 
     /** Function -> function class */
-    private HashMap<String, Class<? extends Function>> functionSymbols = new HashMap<String, Class<? extends Function>>();
+    private volatile HashMap<String, Class<? extends Function>> functionSymbols = new HashMap<String, Class<? extends Function>>();
 
     /** Function class -> function class instance */
-    private HashMap<Class<? extends Function>, Function> functionCache = new HashMap<Class<? extends Function>, Function>();
+    private volatile HashMap<Class<? extends Function>, Function> functionCache = new HashMap<Class<? extends Function>, Function>();
 
-    public void registerOperator(Class<? extends Operator> operatorClass) {
+    public synchronized void registerOperator(Class<? extends Operator> operatorClass) {
         if (!operatorSymbols.containsValue(operatorClass)) {
             if (Operator.class.isAssignableFrom(operatorClass)) {
                 Operator operator = getOperator(operatorClass);
-                operatorSymbols.put(operator.getSymbol(), operatorClass);
-                operatorCache.put(operatorClass, operator);
+
+                HashMap<Class<? extends Operator>, Operator> cache = new HashMap<Class<? extends Operator>, Operator>(operatorCache);
+                cache.put(operatorClass, operator);
+                HashMap<String, Class<? extends Operator>> symbols = new HashMap<String, Class<? extends Operator>>(operatorSymbols);
+                symbols.put(operator.getSymbol(), operatorClass);
+
+                // publish instance before symbol
+                operatorCache = cache;
+                operatorSymbols = symbols;
             }
         }
     }
@@ -90,12 +99,19 @@ public class UseExtension {
         return operatorCache;
     }
 
-    public void registerFunction(Class<? extends Function> functionClass) {
+    public synchronized void registerFunction(Class<? extends Function> functionClass) {
         if (!functionSymbols.containsValue(functionClass)) {
             if (Function.class.isAssignableFrom(functionClass)) {
                 Function function = getFunction(functionClass);
-                functionSymbols.put(function.getSymbol(), functionClass);
-                functionCache.put(functionClass, function);
+
+                HashMap<Class<? extends Function>, Function> cache = new HashMap<Class<? extends Function>, Function>(functionCache);
+                cache.put(functionClass, function);
+                HashMap<String, Class<? extends Function>> symbols = new HashMap<String, Class<? extends Function>>(functionSymbols);
+                symbols.put(function.getSymbol(), functionClass);
+
+                // publish instance before symbol
+                functionCache = cache;
+                functionSymbols = symbols;
             }
         }
     }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import java.math.BigDecimal;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Rounding;
+
+/**
+ * Immutable value used for intermediate results during calculation.
+ * <br/>
+ * Hold only number and reference to properties of {@link Num} from which is created, if that <tt>Num</tt> define properties.
+ * Without properties, default properties are used same as for new {@link Num}.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public final class Value {
+
+    public static final Value ZERO = new Value(BigDecimal.ZERO, null);
+
+    private final BigDecimal value;
+    private final Properties properties;
+
+    private Value(BigDecimal value, Properties properties) {
+        this.value = value;
+        this.properties = properties;
+    }
+
+    public static Value of(BigDecimal value) {
+        return new Value(value, null);
+    }
+
+    /**
+     * Create value with number and properties of given <tt>Num</tt>. Properties are shared, not copied.
+     * 
+     * @param num
+     * @return
+     */
+    public static Value of(Num num) {
+        return new Value(num.toBigDecimal(null, null, false), num.hasProperties() ? num.getProperties() : null);
+    }
+
+    public Integer getScale() {
+        return properties != null ? properties.getScale() : Properties.getDefaultScale();
+    }
+
+    public Rounding getRoundingMode() {
+        return properties != null ? properties.getRoundingMode() : Properties.getDefaultRoundingMode();
+    }
+
+    public boolean hasStripTrailingZeros() {
+        return properties != null ? properties.hasStripTrailingZeros() : Properties.hasDefaultStripTrailingZeros();
+    }
+
+    /**
+     * Scale of this value, or scale of calculator if value don't define scale
+     * 
+     * @param calc
+     * @return
+     * @see Properties#getInheritedScale(AbstractCalculator, Num)
+     */
+    public int getInheritedScale(AbstractCalculator calc) {
+        Integer scale = getScale();
+        if (scale == null) {
+            if (calc != null && calc.getScale() != null)
+                return calc.getScale();
+            else
+                return Properties.DEFAULT_SCALE;
+        }
+        return scale;
+    }
+
+    /**
+     * Rounding mode of this value, or rounding mode of calculator if value don't define rounding mode
+     * 
+     * @param calc
+     * @return
+     * @see Properties#getInheritedRoundingMode(AbstractCalculator, Num)
+     */
+    public Rounding getInheritedRoundingMode(AbstractCalculator calc) {
+        Rounding roundingMode = getRoundingMode();
+        if (roundingMode == null) {
+            if (calc != null && calc.getRoundingMode() != null)
+                return calc.getRoundingMode();
+            else
+                return Properties.getDefaultRoundingMode();
+        }
+        return roundingMode;
+    }
+
+    /**
+     * Number with applied scale, rounding mode and strip trailing zeros. Same as {@link Num#toBigDecimal()}
+     * 
+     * @return
+     */
+    public BigDecimal toBigDecimal() {
+        BigDecimal out = value;
+        Integer scale = getScale();
+        Rounding rounding = getRoundingMode();
+
+        if (scale != null && rounding != null)
+            out = out.setScale(scale, rounding.getBigDecimalRound());
+        else if (scale != null && rounding == null)
+            out = out.setScale(scale);
+
+        if (hasStripTrailingZeros())
+            out = out.stripTrailingZeros();
+
+        return out;
+    }
+
+    /**
+     * Number without applied properties
+     * 
+     * @return
+     */
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    /**
+     * Create new {@link Num} for use outside of calculation, e.g. in custom {@link org.jdice.calc.Operator}
+     * 
+     * @return
+     */
+    public Num toNum() {
+        Num num = new Num(value);
+        if (properties != null)
+            num.setProperties(properties);
+        return num;
+    }
+
+    @Override
+    public String toString() {
+        return toNum().toString();
+    }
+}
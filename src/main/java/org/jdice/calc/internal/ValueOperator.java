@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.internal;
+
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Operator;
+
+/**
+ * Calculation of {@link Operator} with {@link Value} operands, without creating intermediate {@link org.jdice.calc.Num} instances.
+ * Implemented by built in operators.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ *
+ */
+public interface ValueOperator {
+
+    /**
+     * Calculate value for implemented operator
+     * 
+     * @param calc
+     * @param left
+     * @param right
+     * @return
+     */
+    public Value calc(AbstractCalculator calc, Value left, Value right);
+}
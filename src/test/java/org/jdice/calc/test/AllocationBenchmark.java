@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.test;
+
+import java.lang.management.ManagementFactory;
+
+import org.jdice.calc.Calculator;
+import org.jdice.calc.Num;
+
+/**
+ * Compare allocation and time of primitive overloads with <tt>Object</tt> arguments, which box primitive values.
+ * <br/>
+ * Allocation is measured with <tt>com.sun.management.ThreadMXBean</tt>, when JVM support it. Optional argument is number of iterations.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ */
+public class AllocationBenchmark {
+
+    private interface Case {
+        void run(int i);
+    }
+
+    private static final Num num = new Num();
+    private static Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        Case setBoxed = new Case() {
+            public void run(int i) {
+                num.set((Object) (i * 0.25));
+            }
+        };
+        Case setPrimitive = new Case() {
+            public void run(int i) {
+                num.set(i * 0.25);
+            }
+        };
+        Case buildBoxed = new Case() {
+            public void run(int i) {
+                sink = Calculator.builder().val((Object) (long) i).add((Object) (i * 0.25)).mul((Object) 3L);
+            }
+        };
+        Case buildPrimitive = new Case() {
+            public void run(int i) {
+                sink = Calculator.builder().val((long) i).add(i * 0.25).mul(3L);
+            }
+        };
+        Case calculateBoxed = new Case() {
+            public void run(int i) {
+                sink = Calculator.builder().val((Object) (long) i).add((Object) (i * 0.25)).mul((Object) 3L).calculate();
+            }
+        };
+        Case calculatePrimitive = new Case() {
+            public void run(int i) {
+                sink = Calculator.builder().val((long) i).add(i * 0.25).mul(3L).calculate();
+            }
+        };
+
+        System.out.println("bytes per operation / nanoseconds per operation");
+        for (int round = 0; round < 5; round++) {
+            System.out.println("round " + round);
+            print("Num.set          ", setBoxed, setPrimitive, iterations);
+            print("build val/add/mul", buildBoxed, buildPrimitive, iterations);
+            print("build + calculate", calculateBoxed, calculatePrimitive, iterations / 10);
+        }
+    }
+
+    private static void print(String name, Case boxed, Case primitive, int iterations) {
+        long[] b = measure(boxed, iterations);
+        long[] p = measure(primitive, iterations);
+        System.out.printf("%s  Object %6d B %6d ns   primitive %6d B %6d ns%n", name, b[0], b[1], p[0], p[1]);
+    }
+
+    private static long[] measure(Case c, int iterations) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            c.run(i);
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        return new long[] { bytes / iterations, nanos / iterations };
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
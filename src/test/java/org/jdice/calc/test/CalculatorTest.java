@@ -17,14 +17,35 @@
 package org.jdice.calc.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.jdice.calc.AbstractCalculator;
+import org.jdice.calc.Binder;
 import org.jdice.calc.Calculator;
+import org.jdice.calc.CalculatorException;
+import org.jdice.calc.CalculatorPool;
+import org.jdice.calc.ErrorCode;
+import org.jdice.calc.EvaluationException;
 import org.jdice.calc.Num;
+import org.jdice.calc.Properties;
+import org.jdice.calc.Result;
+import org.jdice.calc.Rounding;
 import org.jdice.calc.Step;
+import org.jdice.calc.TraceSampler;
+import org.jdice.calc.TraceSink;
 import org.jdice.calc.TrigCalculator;
+import org.jdice.calc.Validation;
 import org.junit.Test;
 
 public class CalculatorTest {
@@ -165,6 +186,220 @@ public class CalculatorTest {
         assertEquals(test.replace(" ", ""), sb.toString().replace("\t", "").replace(" ", ""));
     }
 
+    @Test
+    public void testTraceCapacity() throws Exception {
+        Num x = new Num("x", 1);
+        Calculator calc = Calculator.builder("x + 1 + 2 + 3", x).setTracingSteps(true).setTraceCapacity(2);
+        calc.calculate();
+        x.set(10);
+        assertEquals(2, calc.getTracedSteps().size());
+        assertEquals("4+3=7", calc.getTracedSteps().getLast().toString().replace("\t", "").replace(" ", ""));
+
+        calc.calculate();
+        assertEquals("13+3=16", calc.getTracedSteps().getLast().toString().replace("\t", "").replace(" ", ""));
+        x.set(20);
+        calc.setTracingSteps(false).calculate();
+        assertEquals(null, calc.getTracedSteps());
+    }
+
+    @Test
+    public void testTraceSampling() throws Exception {
+        final List<String> audit = new ArrayList<String>();
+        TraceSink sink = new TraceSink() {
+            public void accept(AbstractCalculator<?> calc, Num result, List<Step> steps) {
+                audit.add(result + ":" + steps.size());
+            }
+        };
+
+        Num x = new Num("x", 0);
+        Calculator calc = Calculator.builder("x * 2 + 1", x).setTraceSampling(TraceSampler.everyNth(3), sink);
+        for (int i = 0; i < 7; i++) {
+            x.set(i);
+            calc.calculate();
+        }
+        assertEquals(Arrays.asList("1:2", "7:2", "13:2"), audit);
+        assertFalse(calc.isTracingSteps());
+
+        audit.clear();
+        TraceSampler large = new TraceSampler() {
+            public boolean isSampled(AbstractCalculator<?> calc) {
+                return calc.getVariable("x").intValue() > 100;
+            }
+        };
+        calc.setTraceSampling(large, sink).setExactRational(true);
+        x.set(1000);
+        assertEquals("2001", calc.calculate().toString());
+        x.set(5);
+        calc.calculate();
+        assertEquals(Arrays.asList("2001:2"), audit);
+
+        int sampled = 0;
+        TraceSampler rate = TraceSampler.rate(0.25);
+        for (int i = 0; i < 100; i++)
+            if (rate.isSampled(calc))
+                sampled++;
+        assertEquals(25, sampled);
+    }
+
+    @Test
+    public void testEvaluationException() throws Exception {
+        Num y = new Num("y", 0);
+        Calculator calc = Calculator.builder("1 + 2 * 3 / y", y);
+        EvaluationException failure = null;
+        try {
+            calc.calculate();
+            fail("Division by zero");
+        }
+        catch (EvaluationException e) {
+            failure = e;
+        }
+        assertEquals(5, failure.getIndex());
+        assertEquals("/", failure.getOperator().getSymbol());
+        assertEquals("6", failure.getLeft().toString());
+        assertEquals("0", failure.getRight().toString());
+
+        y.set(2);
+        calc.add(1);
+        assertEquals("5", calc.calculate().toString());
+
+        // message is created from expression as it was when operation failed
+        assertTrue(failure.getMessage().startsWith("Error during calculation. Check if expression is correct: 1 + 2 * 3 / 0\n6"));
+
+        Num z = new Num("z", 0);
+        try {
+            Calculator.builder("abs(z - 1) / z", z).calculate();
+            fail("Division by zero");
+        }
+        catch (EvaluationException e) {
+            failure = e;
+        }
+        z.set(3);
+        assertTrue(failure.getMessage(), failure.getMessage().startsWith("Error during calculation. Check if expression is correct: abs(0 - 1) / 0\n"));
+    }
+
+    @Test
+    public void testTryCalculate() throws Exception {
+        Num y = new Num("y", 0);
+        Calculator calc = Calculator.builder("1 + 2 * 3 / y", y);
+        Result result = calc.tryCalculate();
+        assertFalse(result.isSuccess());
+        assertNull(result.getValue());
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getErrorCode());
+        assertEquals("/", result.getOperator());
+        assertEquals(5, result.getIndex());
+        assertNull(result.getCause());
+
+        y.set(2);
+        result = calc.tryCalculate();
+        assertTrue(result.isSuccess());
+        assertEquals("4", result.getValue().toString());
+
+        assertEquals(ErrorCode.MISSING_OPERAND, new Calculator().mul(2).tryCalculate().getErrorCode());
+        assertEquals(ErrorCode.UNDEFINED_VARIABLE, new Calculator().expression("x + 1").tryCalculate().getErrorCode());
+
+        // failed argument is reported with its operator at position of function
+        result = Calculator.builder("2 + abs(1 / 0)").tryCalculate();
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getErrorCode());
+        assertEquals("/", result.getOperator());
+        assertEquals(1, result.getIndex());
+        assertEquals("Division by zero (operator '/' at 1)", result.getMessage());
+
+        result = Calculator.builder("sqrt(-4)").tryCalculate();
+        assertEquals(ErrorCode.ARITHMETIC, result.getErrorCode());
+        assertEquals("sqrt", result.getOperator());
+        assertEquals(0, result.getIndex());
+        assertEquals(-1, result.getMessage().indexOf('\n'));
+
+        Calculator exact = Calculator.builder("1 + 2 / 0");
+        exact.setExactRational(true);
+        result = exact.tryCalculate();
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getErrorCode());
+        assertEquals("/", result.getOperator());
+        assertEquals(3, result.getIndex());
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+        Calculator calc = new Calculator();
+        assertTrue(calc.validate("(r * P) / (1 - (1 + r) ^ N)").isValid());
+        assertTrue(calc.validate("-x + abs(sqrt(4) - 2 * -3)").isValid());
+
+        Validation validation = calc.validate("2 * (3 + )");
+        assertEquals(ErrorCode.MISSING_OPERAND, validation.getErrorCode());
+        assertEquals(9, validation.getPosition());
+        assertEquals(ErrorCode.MISSING_OPERATOR, calc.validate("(1 + 2)(3)").getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_SYMBOL, calc.validate("foo(1)").getErrorCode());
+        assertEquals(ErrorCode.UNKNOWN_SYMBOL, calc.validate("1 # 2").getErrorCode());
+        assertEquals(ErrorCode.INVALID_ARGUMENTS, calc.validate("abs(1, 2)").getErrorCode());
+        assertEquals(ErrorCode.INVALID_ARGUMENTS, calc.validate("abs()").getErrorCode());
+        assertEquals(ErrorCode.INVALID_EXPRESSION, calc.validate("(1 + 2").getErrorCode());
+        assertEquals(ErrorCode.INVALID_EXPRESSION, calc.validate("1 + 2)").getErrorCode());
+        // validation don't change expression
+        assertEquals("", calc.getInfix());
+    }
+
+    @Test
+    public void testParseBracketsAndFunctions() throws Exception {
+        assertEquals("0", Calculator.builder("(1 + 2) - 3").calculate().toString());
+        assertEquals("3", Calculator.builder("abs(sqrt(4) + 1)").calculate().toString());
+        assertEquals("9", Calculator.builder("abs((1 + 2) * 3)").calculate().toString());
+        assertEquals("7", Calculator.builder("1 + abs(1) + abs(2) + abs(3)").calculate().toString());
+
+        try {
+            Calculator.builder("(1 + 2)(3)");
+            fail("Missing operator");
+        }
+        catch (ParseException e) {
+        }
+
+        try {
+            Calculator.builder("(1 + 2");
+            fail("Missing close bracket");
+        }
+        catch (CalculatorException e) {
+        }
+
+        try {
+            Calculator.builder("abs(1, 2)");
+            fail("Too many arguments");
+        }
+        catch (ParseException e) {
+        }
+    }
+
+    @Test
+    public void testLargeExpression() throws Exception {
+        // values without name are paired with variables in order
+        assertEquals("3", Calculator.builder("x - y", 5, 2).calculate().toString());
+        assertEquals("7", Calculator.builder("x - y", new Num("y", 2), 9).calculate().toString());
+        try {
+            Calculator.builder("a + b", new Num("b", 1), new Num("z", 9));
+            fail("Value with other name is not paired with variable");
+        }
+        catch (CalculatorException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("variables: a"));
+        }
+
+        StringBuilder sb = new StringBuilder("0");
+        for (int i = 0; i < 20000; i++)
+            sb.append(" + abs(x - (1 + 2) - 3) * 2");
+        Calculator calc = Calculator.builder(sb.toString(), new Num("x", 10));
+        assertEquals("160000", calc.calculate().toString());
+        assertEquals(ErrorCode.MISSING_OPERATOR, calc.validate(sb.append(" 1").toString()).getErrorCode());
+
+        // expression rejected by validation is not calculated
+        String[] malformed = { "* 2 3", "2 3 +", "(2 3 *)", ")+ 1 1(%", "1 2.5 3 ^(*)-" };
+        for (String expression : malformed) {
+            assertFalse(expression, calc.validate(expression).isValid());
+            try {
+                Calculator.builder(expression).calculate();
+                fail("Malformed expression " + expression);
+            }
+            catch (ParseException e) {
+            }
+        }
+    }
+
     @Test
     public void testexpressions2() throws Exception {
         calculateTest(79.71d, 8310.00d);
@@ -221,4 +456,373 @@ public class CalculatorTest {
         Num num = calc2.calculate();
         assertEquals("15", num.toString());
     }
+
+    @Test
+    public void testSubclassExtensionRegistration() throws Exception {
+        assertEquals("2", Calculator.builder("1 + 1").calculate().toString());
+        // TrigCalculator register own functions, even if Calculator was used first
+        assertEquals("1", TrigCalculator.builder("sin(0) + 1").calculate().toString());
+    }
+
+    @Test
+    public void testFunctionPrecision() throws Exception {
+        assertEquals("3.1415926535897932384626433832795028841972", TrigCalculator.builder("atan(1) * 4").setScale(40).calculate().toString());
+        assertEquals("1.41421356237309504880168872420969807857", Calculator.builder("sqrt(2)").setScale(38).calculate().toString());
+        assertEquals("0.84147098480789650665", TrigCalculator.builder("sin(1)").setScale(20).calculate().toString());
+        assertEquals("0", TrigCalculator.builder("cos(asin(1))").setScale(30).calculate().toString());
+        assertEquals("2.302585093", TrigCalculator.builder("log(10)").setScale(9).calculate().toString());
+    }
+
+    @Test
+    public void testFastMath() throws Exception {
+        TrigCalculator calc = TrigCalculator.builder("sin(x) ^ 2 + cos(x) ^ 2", new Num("x", 0.7));
+        calc.setFastMath(true).setScale(12);
+        assertEquals("1", calc.calculate().toString());
+        assertEquals("2.302585093", TrigCalculator.builder("log(10)").setFastMath(true).setScale(9).calculate().toString());
+    }
+
+    @Test
+    public void testCachedResult() throws Exception {
+        Num x = new Num("x", 2);
+        Calculator calc = Calculator.builder("x * 3 + sqrt(x * 8)", x);
+        Num r1 = calc.calculate();
+        assertEquals("10", r1.toString());
+
+        // result is copy of cached value
+        r1.set(0);
+        assertEquals("10", calc.calculate().toString());
+
+        x.set(8);
+        assertEquals("32", calc.calculate().toString());
+
+        x.setScale(1);
+        calc.setScale(2);
+        assertEquals("32", calc.calculate().toString());
+
+        calc.add(1);
+        assertEquals("33", calc.calculate().toString());
+
+        // replaced properties are used in next calculation
+        Calculator div = Calculator.builder("10 / 3").setScale(2);
+        assertEquals("3.33", div.calculate().toString());
+        div.setProperties(new Properties());
+        assertEquals(new Calculator().val(10).div(3).calculate().toString(), div.calculate().toString());
+
+        Calculator simplified = Calculator.builder("x * 1 + 0", x);
+        assertEquals("8", simplified.calculate().toString());
+        simplified.setSimplify(true);
+        assertEquals("8", simplified.calculate().toString());
+        assertTrue(simplified.getRemovedNodes() > 0);
+    }
+
+    @Test
+    public void testOutputScale() throws Exception {
+        String expression = "(1 / 3 + 2 / 7) * 1000 / 9 - 5 / 11 + 1 / 3 ^ -2";
+        Num full = Calculator.builder(expression).calculate();
+
+        Calculator calc = Calculator.builder(expression).setOutputScale(2);
+        Num result = calc.calculate();
+        assertEquals(full.toBigDecimal().setScale(2, java.math.RoundingMode.HALF_UP), result.toBigDecimal());
+        assertEquals("77.33", result.toString());
+
+        calc.setOutputScale(5);
+        assertEquals("77.32852", calc.calculate().toString());
+
+        // result near rounding tie is calculated with full precision
+        Calculator tie = Calculator.builder("1 / 8 - 1 / 1000000000").setOutputScale(2);
+        assertEquals("0.12", tie.calculate().toString());
+        tie.setAdaptivePrecision(true);
+        assertEquals("0.12", tie.calculate().toString());
+
+        // steps are traced only once
+        Calculator traced = Calculator.builder("1 / 8 + 1").setOutputScale(2).setTracingSteps(true);
+        assertEquals("1.13", traced.calculate().toString());
+        assertEquals(2, traced.getTracedSteps().size());
+        assertEquals("0.125+1=1.125", traced.getTracedSteps().getLast().toString().replace("\t", "").replace(" ", ""));
+    }
+
+    @Test
+    public void testPow() throws Exception {
+        assertEquals("1", Calculator.builder("5 ^ 0").calculate().toString());
+        assertEquals("0.25", Calculator.builder("2 ^ -2").calculate().toString());
+        assertEquals("1024", Calculator.builder("2 ^ 10").calculate().toString());
+        assertEquals("-8", Calculator.builder("(0 - 2) ^ 3").calculate().toString());
+        assertEquals("1.4142135624", Calculator.builder("2 ^ 0.5").setScale(10).calculate().toString());
+        assertEquals("0.1430247258", Calculator.builder("1.0054166667 ^ -360").setScale(10).calculate().toString());
+        // positive whole exponent is exact, digits below scale are used by next operation
+        assertEquals("15241383936", Calculator.builder("1.23456 ^ 2 * 10000000000").setScale(2).calculate().toString());
+
+        try {
+            Calculator.builder("(0 - 2) ^ 0.5").calculate();
+            fail("Fractional power of negative number");
+        }
+        catch (CalculatorException e) {
+        }
+    }
+
+    @Test
+    public void testExactRational() throws Exception {
+        Calculator calc = Calculator.builder("1 / 3 * 3");
+        assertEquals("0.9999999999999999999999999999999999999999999999999999999999999999", calc.calculate().toString());
+
+        calc.setExactRational(true);
+        assertEquals("1", calc.calculate().toString());
+
+        calc = Calculator.builder("6.5 / 100 / 12 * 200000 / (1 - 2 ^ -3)").setExactRational(true).setScale(4);
+        assertEquals("1238.0952", calc.calculate().toString());
+
+        // not supported, standard calculation where 1 / 3 is rounded to 0.33
+        calc = Calculator.builder("1 / 3 * 3 + 2 ^ 0.5").setExactRational(true).setScale(2);
+        assertEquals("2.4", calc.calculate().toString());
+
+        try {
+            Calculator.builder("1 / (2 - 2)").setExactRational(true).calculate();
+            fail("Division by zero");
+        }
+        catch (CalculatorException e) {
+        }
+    }
+
+    @Test
+    public void testAdaptivePrecision() throws Exception {
+        String[] expressions = { "(1.25 * 3.5 + 7) / 3 - 0.5", "1 / 8", "0.1 + 0.2 * 3", "10 / 4 * 0.25", "2 - 1 / 3 / 7" };
+        for (Rounding rounding : new Rounding[] { Rounding.HALF_UP, Rounding.HALF_EVEN, Rounding.DOWN }) {
+            for (String expression : expressions) {
+                Calculator calc = Calculator.builder(expression).setScale(2).setRoundingMode(rounding).setCacheResult(false);
+                Num expected = calc.calculate();
+                Num actual = calc.setAdaptivePrecision(true).calculate();
+                assertEquals(expression, expected.toString(), actual.toString());
+
+                calc.setExactRational(true);
+                Num exactActual = calc.calculate();
+                Num exactExpected = calc.setAdaptivePrecision(false).calculate();
+                assertEquals(expression, exactExpected.toString(), exactActual.toString());
+            }
+        }
+
+        try {
+            Calculator.builder("1 / (2 - 2)").setAdaptivePrecision(true).calculate();
+            fail("Division by zero");
+        }
+        catch (CalculatorException e) {
+        }
+    }
+    @Test
+    public void testOperationScale() throws Exception {
+        Num y = new Num("y", 3);
+        Calculator calc = Calculator.builder("2 / y + 7 % y", y).setScale(4);
+        assertEquals("1.6667", calc.calculate().toString());
+
+        y.setScale(2);
+        assertEquals("1.67", calc.calculate().toString());
+
+        y.setRoundingMode(Rounding.DOWN);
+        assertEquals("1.66", calc.calculate().toString());
+
+        y.setProperties(new Properties());
+        calc.setScale(3);
+        assertEquals("1.667", calc.calculate().toString());
+    }
+    @Test
+    public void testStrengthReduction() throws Exception {
+        Num x = new Num("x", "12.345");
+        assertEquals("0.12", Calculator.builder("x / 100", x).setScale(2).calculate().toString());
+        assertEquals("12345", Calculator.builder("x * 1000", x).calculate().toString());
+        assertEquals("123.45", Calculator.builder("10 * x", x).calculate().toString());
+        assertEquals("152.399025", Calculator.builder("x ^ 2", x).calculate().toString());
+
+        x.set(5);
+        assertEquals("0.01", Calculator.builder("x / 1000", x).setScale(2).setRoundingMode(Rounding.HALF_UP).calculate().toString());
+        assertEquals("-125", Calculator.builder("(0 - x) ^ 3", x).calculate().toString());
+        assertEquals("2.236067977", Calculator.builder("x ^ 0.5", x).setScale(9).calculate().toString());
+        assertEquals("2.236067977", Calculator.builder("sqrt(x)", x).setScale(9).calculate().toString());
+    }
+
+    @Test
+    public void testSimplify() throws Exception {
+        Num x = new Num("x", 3);
+        Num y = new Num("y", 2);
+        Calculator calc = Calculator.builder("(x * 1 + 0) * (1 * y) + 0 * (y - 2)", x, y).setSimplify(true);
+        assertEquals("6", calc.calculate().toString());
+        assertEquals(12, calc.getRemovedNodes());
+
+        Num one = new Num("one", 1);
+        calc = Calculator.builder("0 - (0 - x * one)", x, one).setSimplify(true);
+        assertEquals("3", calc.calculate().toString());
+        assertEquals(6, calc.getRemovedNodes());
+        one.set(2);
+        assertEquals("6", calc.calculate().toString());
+        assertEquals(4, calc.getRemovedNodes());
+
+        // scale of divisor is used for division
+        Num z = new Num("z", "2.50");
+        calc = Calculator.builder("x / (z * 1)", x, z).setSimplify(true);
+        assertEquals("1.2", calc.calculate().toString());
+        assertEquals(0, calc.getRemovedNodes());
+
+        // long and deeply nested expressions are simplified without recursion
+        StringBuilder sb = new StringBuilder("0");
+        for (int i = 0; i < 10000; i++)
+            sb.append(" + x * 1 - 0");
+        calc = Calculator.builder(sb.toString(), x).setSimplify(true);
+        assertEquals("30000", calc.calculate().toString());
+        assertEquals(40002, calc.getRemovedNodes());
+
+        sb = new StringBuilder();
+        for (int i = 0; i < 25000; i++)
+            sb.append("1 * (");
+        sb.append("x");
+        for (int i = 0; i < 25000; i++)
+            sb.append(")");
+        calc = Calculator.builder(sb.toString(), x).setSimplify(true);
+        assertEquals("3", calc.tryCalculate().getValue().toString());
+        assertEquals(50000, calc.getRemovedNodes());
+    }
+
+    @Test
+    public void testSpecialize() throws Exception {
+        Num x = new Num("x", 2);
+        Num r = new Num("r", 1);
+        Calculator calc = Calculator.builder("x * (r + 1) / 12", x, r);
+
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("r", "0.05");
+        Calculator specialized = calc.specialize(values);
+        assertEquals("2 * 1.05 / 12", specialized.getInfix());
+        assertEquals("0.175", specialized.calculate().toString());
+        x.set(4);
+        assertEquals("0.35", specialized.calculate().toString());
+        assertEquals("0.6666666667", calc.setScale(10).calculate().toString());
+
+        specialized = Calculator.builder("(r + 1) ^ 2 * sqrt(x) - x", x, r).specialize(r);
+        assertEquals("4 * sqrt(4) - 4", specialized.getInfix());
+        r.set(5);
+        x.set(9);
+        assertEquals("3", specialized.calculate().toString());
+
+        // long expression is specialized without deep recursion
+        StringBuilder sb = new StringBuilder("0");
+        for (int i = 0; i < 20000; i++)
+            sb.append(" + x * (r + 1) - 1");
+        x.set(2);
+        specialized = Calculator.builder(sb.toString(), x, r).specialize(r);
+        assertTrue(specialized.getInfix().startsWith("0 + 2 * 6 - 1 + 2 * 6 - 1"));
+        assertEquals("220000", specialized.calculate().toString());
+    }
+
+    @Test
+    public void testSlotBinding() throws Exception {
+        Calculator calc = Calculator.builder("P * r / 12 + fee");
+        int p = calc.getSlot("P");
+        int r = calc.getSlot("r");
+        assertEquals(3, calc.getSlotCount());
+        assertEquals(2, calc.getSlot("fee"));
+
+        try {
+            calc.bind(p, 1200).bind(r, 0.05).calculate();
+            fail("Variable fee is not bound");
+        }
+        catch (CalculatorException e) {
+        }
+
+        calc.bind("fee", new BigDecimal("0.5"));
+        assertEquals("5.5", calc.calculate().toString());
+        assertEquals("10.5", calc.bind(p, 2400L).calculate().toString());
+
+        try {
+            calc.getSlot("q");
+            fail("Unknown variable");
+        }
+        catch (CalculatorException e) {
+        }
+    }
+
+    @Test
+    public void testResetAndPool() throws Exception {
+        Num x = new Num("x", 2);
+        Calculator calc = Calculator.builder("x * 10 + 1", x);
+        assertEquals("21", calc.calculate().toString());
+
+        calc.reset().expression("x - 1", x);
+        assertEquals("2 - 1", calc.getInfix());
+        assertEquals("1", calc.calculate().toString());
+
+        calc.reset().val(3).add().expression("4");
+        assertEquals("7", calc.calculate().toString());
+
+        CalculatorPool<Calculator> pool = new CalculatorPool<Calculator>(Calculator.class, 1);
+        Calculator first = pool.acquire();
+        first.expression("1 + 2");
+        assertEquals("3", first.calculate().toString());
+        pool.release(first);
+        assertEquals(1, pool.size());
+
+        Calculator second = pool.acquire();
+        assertTrue(first == second);
+        assertEquals("", second.getInfix());
+        assertEquals("8", second.expression("2 ^ 3").calculate().toString());
+        second.setScale(0).setTracingSteps(true).setOutputScale(1);
+        pool.release(second);
+
+        // configuration of previous user is not kept
+        Calculator third = pool.acquire();
+        assertTrue(second == third);
+        assertNull(third.getScale());
+        assertNull(third.getOutputScale());
+        assertFalse(third.isTracingSteps());
+        assertEquals("2.5", third.expression("10 / 4").calculate().toString());
+        pool.release(third);
+        pool.release(Calculator.builder());
+        assertEquals(1, pool.size());
+    }
+
+    public static class Loan {
+        public long principal;
+        public double rate;
+        public float discount = 0.1f;
+        private BigDecimal fee;
+
+        public Loan(long principal, double rate, String fee) {
+            this.principal = principal;
+            this.rate = rate;
+            this.fee = new BigDecimal(fee);
+        }
+
+        public BigDecimal getFee() {
+            return fee;
+        }
+    }
+
+    @Test
+    public void testBinder() throws Exception {
+        Calculator calc = Calculator.builder("principal * rate / 12 + fee");
+        Binder<Loan> binder = Binder.forBean(calc, Loan.class);
+        List<Num> results = binder.calculate(Arrays.asList(new Loan(1200, 0.05, "0.5"), new Loan(2400, 0.1, "1")));
+        assertEquals("5.5", results.get(0).toString());
+        assertEquals("21", results.get(1).toString());
+
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("principal", 1200);
+        row.put("rate", "0.05");
+        row.put("fee", 0);
+        assertEquals("5", Binder.forMap(calc).calculate(row).toString());
+
+        row.remove("fee");
+        try {
+            Binder.forMap(calc).calculate(row);
+            fail("Missing value");
+        }
+        catch (CalculatorException e) {
+        }
+
+        try {
+            Binder.forBean(Calculator.builder("principal * term"), Loan.class);
+            fail("Missing property");
+        }
+        catch (CalculatorException e) {
+        }
+
+        // float is converted by its decimal representation, not by double value
+        assertEquals("120", Binder.forBean(Calculator.builder("principal * discount"), Loan.class).calculate(new Loan(1200, 0.05, "0")).toString());
+    }
 }
@@ -20,6 +20,9 @@ import org.jdice.calc.AbstractCalculator;
 import org.jdice.calc.Calculator;
 import org.jdice.calc.Function;
 import org.jdice.calc.Num;
+import org.jdice.calc.PureFunction;
+import org.jdice.calc.internal.CacheExtension;
+import org.jdice.calc.internal.MemoCache;
 
 import static org.junit.Assert.*;
 
@@ -45,6 +48,47 @@ public class CustomFunctionTest {
         }
     }
 
+    @PureFunction
+    public static class square implements Function {
+        private static int calls = 0;
+
+        @Override
+        public String getSymbol() {
+            return "square";
+        }
+
+        @Override
+        public int getFunctionAttributes() {
+            return 1;
+        }
+
+        @Override
+        public Num calc(AbstractCalculator calc, Num... values) throws Exception {
+            calls++;
+            return new Num(values[0].toBigDecimal().multiply(values[0].toBigDecimal()));
+        }
+    }
+
+    @Test
+    public void testPureFunction() throws Exception {
+        MemoCache<MemoCache.Key, Num> cache = CacheExtension.getFunctionResultCache();
+        long hits = cache.getHits();
+
+        Calculator c = new Calculator();
+        c.use(square.class);
+        c.expression("square(3) + square(3) + square(4)");
+        assertEquals("34", c.calculate().toString());
+        assertEquals("34", c.calculate().toString());
+        assertEquals(2, square.calls);
+        // second square(3) is cached, second calculation reuse result of first
+        assertEquals(hits + 1, cache.getHits());
+
+        // different scale is different key
+        c.setScale(2);
+        assertEquals("34", c.calculate().toString());
+        assertEquals(4, square.calls);
+    }
+
     @Test
     public void testCustomFunction() throws Exception {
         String e = "test(1-2-5-2, 3)";
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import org.jdice.calc.Num;
+import org.jdice.calc.TrigCalculator;
+import org.jdice.calc.internal.BigMath;
+import org.jdice.calc.internal.CacheExtension;
+import org.jdice.calc.internal.FastMath;
+
+/**
+ * Compare error and throughput of {@link FastMath} with {@link Math}, and calculator in fast math mode with default mode.
+ * <br/>
+ * Error is measured in ulp against result calculated with {@link BigMath}. Optional argument is number of samples for error.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ */
+public class FastMathBenchmark {
+
+    private static final String[] FUNCTIONS = { "sin", "cos", "exp", "log" };
+    private static final MathContext REFERENCE = new MathContext(40);
+
+    public static void main(String[] args) throws Exception {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        System.out.println("Maximum error in ulp, " + samples + " samples");
+        for (String function : FUNCTIONS) {
+            Random random = new Random(1);
+            double maxFast = 0;
+            double maxMath = 0;
+            for (int i = 0; i < samples; i++) {
+                double x = argument(function, random);
+                BigDecimal exact = reference(function, x);
+                double ulp = Math.ulp(exact.doubleValue());
+                if (ulp == 0 || Double.isInfinite(ulp))
+                    continue;
+
+                maxFast = Math.max(maxFast, ulps(fast(function, x), exact, ulp));
+                maxMath = Math.max(maxMath, ulps(math(function, x), exact, ulp));
+            }
+            System.out.printf("%-5s FastMath %.3f   Math %.3f%n", function, maxFast, maxMath);
+        }
+
+        System.out.println();
+        System.out.println("Throughput, million calls per second");
+        for (String function : FUNCTIONS) {
+            double[] xs = new double[1 << 16];
+            Random random = new Random(2);
+            for (int i = 0; i < xs.length; i++)
+                xs[i] = argument(function, random);
+
+            double fast = 0;
+            double math = 0;
+            for (int round = 0; round < 5; round++) {
+                fast = throughput(function, xs, true);
+                math = throughput(function, xs, false);
+            }
+            System.out.printf("%-5s FastMath %8.1f   Math %8.1f%n", function, fast, math);
+        }
+
+        System.out.println();
+        System.out.println("Calculator sin(x) + cos(x), microseconds per calculation");
+        CacheExtension.getFunctionResultCache().setEnabled(false);
+        Num x = new Num("x", 0);
+        TrigCalculator fastCalc = TrigCalculator.builder("sin(x) + cos(x)", x).setFastMath(true);
+        TrigCalculator scaleCalc = TrigCalculator.builder("sin(x) + cos(x)", x).setScale(16);
+        TrigCalculator defaultCalc = TrigCalculator.builder("sin(x) + cos(x)", x);
+        for (int round = 0; round < 5; round++) {
+            System.out.printf("fast math %.2f   scale 16 %.2f   default scale %.2f%n", 
+                    calculate(fastCalc, x, 20000), calculate(scaleCalc, x, 2000), calculate(defaultCalc, x, 500));
+        }
+        CacheExtension.getFunctionResultCache().setEnabled(true);
+    }
+
+    private static double argument(String function, Random random) {
+        if (function.equals("exp"))
+            return (random.nextDouble() - 0.5) * 1400;
+        else if (function.equals("log"))
+            return random.nextBoolean() ? random.nextDouble() * 4 : Math.exp((random.nextDouble() - 0.5) * 1400);
+        else
+            return random.nextBoolean() ? (random.nextDouble() - 0.5) * 20 : (random.nextDouble() - 0.5) * 200000;
+    }
+
+    private static BigDecimal reference(String function, double x) {
+        BigDecimal bx = new BigDecimal(x);
+        if (function.equals("sin"))
+            return BigMath.sin(bx, REFERENCE);
+        else if (function.equals("cos"))
+            return BigMath.cos(bx, REFERENCE);
+        else if (function.equals("exp"))
+            return BigMath.exp(bx, REFERENCE);
+        else
+            return BigMath.ln(bx, REFERENCE);
+    }
+
+    private static double fast(String function, double x) {
+        if (function.equals("sin"))
+            return FastMath.sin(x);
+        else if (function.equals("cos"))
+            return FastMath.cos(x);
+        else if (function.equals("exp"))
+            return FastMath.exp(x);
+        else
+            return FastMath.log(x);
+    }
+
+    private static double math(String function, double x) {
+        if (function.equals("sin"))
+            return Math.sin(x);
+        else if (function.equals("cos"))
+            return Math.cos(x);
+        else if (function.equals("exp"))
+            return Math.exp(x);
+        else
+            return Math.log(x);
+    }
+
+    private static double ulps(double value, BigDecimal exact, double ulp) {
+        return new BigDecimal(value).subtract(exact).abs().divide(new BigDecimal(ulp), MathContext.DECIMAL64).doubleValue();
+    }
+
+    private static double throughput(String function, double[] xs, boolean fast) {
+        int iterations = 40;
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int k = 0; k < iterations; k++) {
+            if (fast) {
+                if (function.equals("sin"))
+                    for (double x : xs) sum += FastMath.sin(x);
+                else if (function.equals("cos"))
+                    for (double x : xs) sum += FastMath.cos(x);
+                else if (function.equals("exp"))
+                    for (double x : xs) sum += FastMath.exp(x);
+                else
+                    for (double x : xs) sum += FastMath.log(x);
+            }
+            else {
+                if (function.equals("sin"))
+                    for (double x : xs) sum += Math.sin(x);
+                else if (function.equals("cos"))
+                    for (double x : xs) sum += Math.cos(x);
+                else if (function.equals("exp"))
+                    for (double x : xs) sum += Math.exp(x);
+                else
+                    for (double x : xs) sum += Math.log(x);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (sum == 42) // keep result used
+            System.out.print("");
+        return (double) iterations * xs.length / nanos * 1000;
+    }
+
+    private static double calculate(TrigCalculator calc, Num x, int iterations) {
+        Random random = new Random(3);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            x.set(random.nextDouble() * 10);
+            calc.calculate();
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+}
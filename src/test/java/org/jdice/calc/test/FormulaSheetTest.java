@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdice.calc.CalculatorException;
+import org.jdice.calc.FormulaSheet;
+import org.jdice.calc.Num;
+import org.junit.Test;
+
+public class FormulaSheetTest {
+
+    @Test
+    public void testRecalculateDependents() throws Exception {
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setValue("A", 6.5);
+        sheet.setValue("P", 200000);
+        sheet.setFormula("r", "A / 100 / 12");
+        sheet.setFormula("c", "(r * P) / (1 - (1 + r) ^ N)");
+
+        assertNull(sheet.getValue("c"));
+        assertFalse(sheet.isDefined("N"));
+
+        sheet.setValue("N", -360);
+        assertEquals("1264.14", sheet.getValue("c").setScale(2).toString());
+
+        sheet.setValue("P", 100000);
+        assertEquals("632.07", sheet.getValue("c").setScale(2).toString());
+
+        assertEquals(Arrays.asList("r", "c"), sheet.getCalculationOrder("A"));
+        assertEquals(Arrays.asList("c"), sheet.getCalculationOrder("P"));
+    }
+
+    @Test
+    public void testNamedNum() throws Exception {
+        Num x = new Num("x", 2);
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setValue(x);
+        sheet.setFormula("y", "x * 10");
+        sheet.setFormula("z", "y + x");
+        assertEquals("22", sheet.getValue("z").toString());
+
+        x.set(3);
+        sheet.recalculate("x");
+        assertEquals("33", sheet.getValue("z").toString());
+    }
+
+    @Test
+    public void testReplaceAndRemoveFormula() throws Exception {
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setValue("a", 1);
+        sheet.setFormula("b", "a + 1");
+        sheet.setFormula("c", "b * 2");
+        assertEquals("4", sheet.getValue("c").toString());
+
+        sheet.setFormula("b", "a + 10");
+        assertEquals("22", sheet.getValue("c").toString());
+
+        sheet.remove("b");
+        assertTrue(sheet.getNames().contains("b"));
+        assertNull(sheet.getValue("c"));
+
+        sheet.setValue("b", 5);
+        assertEquals("10", sheet.getValue("c").toString());
+
+        sheet.remove("c");
+        assertFalse(sheet.getNames().contains("c"));
+        assertTrue(sheet.getDependents("b").isEmpty());
+
+        // formula without dependencies stays in graph when it is no longer used
+        sheet.setFormula("r", "10 / 4");
+        sheet.setFormula("d", "r * 2");
+        sheet.setFormula("d", "2");
+        sheet.getProperties().setScale(0);
+        sheet.recalculate();
+        assertEquals("3", sheet.getValue("r").toString());
+    }
+
+    @Test
+    public void testCircularReference() throws Exception {
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setFormula("a", "b + 1");
+        sheet.setFormula("b", "c + 1");
+
+        try {
+            sheet.setFormula("c", "a + 1");
+            fail("Circular reference");
+        }
+        catch (CalculatorException e) {
+        }
+
+        assertFalse(sheet.isFormula("c"));
+        sheet.setValue("c", 1);
+        assertEquals("3", sheet.getValue("a").toString());
+    }
+
+    @Test
+    public void testCalculationError() throws Exception {
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setValue("a", 0);
+        sheet.setFormula("b", "1 / a");
+        sheet.setFormula("c", "b + 1");
+
+        assertNull(sheet.getValue("b"));
+        assertNotNull(sheet.getError("b"));
+        assertNull(sheet.getValue("c"));
+
+        sheet.setValue("a", 4);
+        assertEquals("1.25", sheet.getValue("c").toString());
+        assertNull(sheet.getError("b"));
+    }
+
+    @Test
+    public void testParallelRecalculate() throws Exception {
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setValue("x", 1);
+        // a[i] = x * i, b[i] = a[i] + b[i - 1]
+        for (int i = 0; i < 20; i++) {
+            char c = (char) ('a' + i);
+            sheet.setFormula("a" + c, "x * " + i);
+            sheet.setFormula("b" + c, "a" + c + " + " + (i == 0 ? "x" : "b" + (char) (c - 1)));
+        }
+        sheet.setFormula("total", "bt + at");
+        assertEquals("210", sheet.getValue("total").toString());
+
+        Num x = new Num("x", 2);
+        sheet.setValue(x);
+        x.set(3);
+        sheet.recalculate(4);
+        assertEquals("630", sheet.getValue("total").toString());
+        assertEquals("57", sheet.getValue("at").toString());
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectedRecalculate() throws Exception {
+        FormulaSheet sheet = new FormulaSheet();
+        sheet.setValue("x", 1);
+        sheet.setFormula("a", "x + 1");
+        sheet.setFormula("b", "a + 1");
+        sheet.setFormula("c", "b + 1");
+
+        // executor accept only first node
+        final AtomicInteger accepted = new AtomicInteger();
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                if (accepted.getAndIncrement() > 0)
+                    throw new RejectedExecutionException("Rejected");
+                new Thread(command).start();
+            }
+        };
+
+        try {
+            sheet.recalculate(executor);
+            fail("Rejected");
+        }
+        catch (RejectedExecutionException e) {
+        }
+    }
+}
@@ -28,7 +28,8 @@ import org.junit.runners.Suite.SuiteClasses;
     PostfixTest.class,
     CustomFunctionTest.class,
     CustomOperatorFunctionTest.class,
-    CalcFactoryTest.class
+    CalcFactoryTest.class,
+    FormulaSheetTest.class
 })
 public class JUnitTestSuite {
 
@@ -36,6 +36,27 @@ import org.junit.Test;
 
 public class NumTest {
 
+    @Test
+    public void testPrimitiveValues() throws Exception {
+        assertEquals(new Num((Object) 0.1f).toBigDecimal(), new Num(0.1f).toBigDecimal());
+        for (double d : new double[] { 3, -2.25, 12345678, 1e-5 })
+            assertEquals(new Num((Object) d).setScale(10).toString(), new Num(d).setScale(10).toString());
+
+        assertEquals(Integer.valueOf(5), new Num(5).getOriginalValue());
+        assertEquals(Long.valueOf(5), new Num(5L).getOriginalValue());
+        assertEquals(Double.valueOf(0.1), new Num(0.1).getOriginalValue());
+        assertEquals(Integer.valueOf(0), new Num((BigDecimal) null).getOriginalValue());
+        assertEquals(Double.valueOf(0.1), new Num(0.1).clone().getOriginalValue());
+
+        assertEquals("7.5", Calculator.builder().val(5L).add(2.5).calculate().toString());
+        try {
+            new Num(Double.NaN);
+            fail("NaN is not supported");
+        }
+        catch (CalculatorException e) {
+        }
+    }
+
     @Test
     public void testIsEqual() throws Exception {
         Num A = new Num(5);
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Davor Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jdice.calc.test;
+
+import java.lang.management.ManagementFactory;
+
+import org.jdice.calc.Calculator;
+import org.jdice.calc.Num;
+
+/**
+ * Time and allocation per token of parsing, conversion to postfix and calculation of generated expressions 
+ * from 10 to 1M tokens. Every size is repeated to process about same number of tokens. 
+ * With linear pipeline values per token stay same for all sizes.
+ * <br/>
+ * Optional argument is maximum number of tokens.
+ * 
+ * @author Davor Sauer <davor.sauer@gmail.com>
+ * 
+ */
+public class ScalingBenchmark {
+
+    // 16 tokens: ( 3 + x ) * 2 - abs ( y - 1 ) / 4 +
+    private static final String PART = "(3 + x) * 2 - abs(y - 1) / 4 + ";
+    private static final int PART_TOKENS = 16;
+
+    private static Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        // warm up
+        run(expression(1000), 200, false);
+
+        System.out.println("tokens    parse ns/token  B/token   postfix ns/token  B/token   calculate ns/token  B/token");
+        for (int tokens = 10; tokens <= max; tokens *= 10) {
+            // about same number of tokens for every size
+            int repeat = Math.max(2, 2000000 / tokens);
+            run(expression(tokens), repeat, true);
+        }
+    }
+
+    private static String expression(int tokens) {
+        StringBuilder sb = new StringBuilder(tokens * 2);
+        int count = 1;
+        while (count + PART_TOKENS <= tokens) {
+            sb.append(PART);
+            count += PART_TOKENS;
+        }
+        // fill to given number of tokens with + 1
+        while (count + 2 <= tokens) {
+            sb.append("1 + ");
+            count += 2;
+        }
+        sb.append("1");
+        return sb.toString();
+    }
+
+    private static void run(String expression, int repeat, boolean print) throws Exception {
+        int tokens = countTokens(expression);
+        // time and allocated bytes of parse, postfix and calculate
+        long[] total = new long[6];
+        for (int r = 0; r < repeat; r++) {
+            Num x = new Num("x", 2);
+            Num y = new Num("y", 5);
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            Calculator calc = new Calculator().expression(expression, x, y);
+            total[0] += System.nanoTime() - start;
+            total[1] += allocatedBytes() - bytes;
+
+            calc.setCacheResult(false);
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            sink = calc.getPostfix();
+            total[2] += System.nanoTime() - start;
+            total[3] += allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            sink = calc.calculate();
+            total[4] += System.nanoTime() - start;
+            total[5] += allocatedBytes() - bytes;
+        }
+
+        long n = (long) tokens * repeat;
+        if (print)
+            System.out.printf("%7d   %14d  %7d   %16d  %7d   %18d  %7d%n", tokens, total[0] / n, total[1] / n, 
+                    total[2] / n, total[3] / n, total[4] / n, total[5] / n);
+    }
+
+    private static int countTokens(String expression) {
+        int count = 0;
+        boolean word = false;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            boolean w = Character.isLetterOrDigit(c);
+            if (w && !word || !w && c != ' ')
+                count++;
+            word = w;
+        }
+        return count;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}